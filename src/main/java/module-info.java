@@ -6,10 +6,15 @@
 module org.basinmc.lavatory {
   exports org.basinmc.lavatory;
   exports org.basinmc.lavatory.asset;
+  exports org.basinmc.lavatory.fetch;
   exports org.basinmc.lavatory.file;
+  exports org.basinmc.lavatory.install;
+  exports org.basinmc.lavatory.intern;
+  exports org.basinmc.lavatory.mirror;
   exports org.basinmc.lavatory.rule;
   exports org.basinmc.lavatory.rule.feature;
   exports org.basinmc.lavatory.rule.system;
+  exports org.basinmc.lavatory.snapshot;
   exports org.basinmc.lavatory.version;
 
   requires static com.github.spotbugs.annotations;
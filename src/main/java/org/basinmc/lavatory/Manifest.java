@@ -34,6 +34,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
+import org.basinmc.lavatory.fetch.RetryPolicy;
 import org.basinmc.lavatory.version.VersionReference;
 
 /**
@@ -109,6 +110,19 @@ public final class Manifest {
     }
   }
 
+  /**
+   * Fetches the current version manifest from the servers while retrying transient failures.
+   *
+   * @param policy a retry policy.
+   * @return a manifest.
+   * @throws IOException when all attempts have failed, a non-retryable error is encountered or
+   * when the data is malformed.
+   */
+  @NonNull
+  public static Manifest fetch(@NonNull RetryPolicy policy) throws IOException {
+    return policy.execute(new URL(MANIFEST_URL), Manifest::read);
+  }
+
   /**
    * Retrieves an excerpt of the latest stable version.
    *
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * Provides the object mapper which decodes all documents unless a custom mapper is selected.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class Mappers {
+
+  /**
+   * Mappers are thread safe once configured and comparatively expensive to construct and are thus
+   * shared between all decoders.
+   */
+  private static final ObjectMapper DEFAULT = new ObjectMapper().findAndRegisterModules();
+
+  private Mappers() {
+  }
+
+  /**
+   * Retrieves the shared default mapper. The returned mapper must not be reconfigured.
+   *
+   * @return a mapper.
+   */
+  @NonNull
+  public static ObjectMapper getDefault() {
+    return DEFAULT;
+  }
+}
@@ -20,6 +20,7 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.Set;
+import java.util.regex.Pattern;
 import org.basinmc.lavatory.rule.feature.Feature;
 import org.basinmc.lavatory.rule.system.OperatingSystem;
 
@@ -58,6 +59,20 @@ public interface ResolverContext {
   @NonNull
   String getOperatingSystemVersion();
 
+  /**
+   * <p>Evaluates whether the operating system version of this context matches the specified
+   * pattern.</p>
+   *
+   * <p>As the version remains constant throughout the lifetime of a context, conditions retain
+   * the result of this evaluation for the context they have last been evaluated against.</p>
+   *
+   * @param pattern a version pattern.
+   * @return true if matching, false otherwise.
+   */
+  default boolean matchesOperatingSystemVersion(@NonNull Pattern pattern) {
+    return pattern.matcher(this.getOperatingSystemVersion()).matches();
+  }
+
   /**
    * Evaluates whether the specified feature is currently enabled within the context.
    *
@@ -66,6 +81,27 @@ public interface ResolverContext {
    */
   boolean isFeatureEnabled(@NonNull Feature feature);
 
+  /**
+   * <p>Retrieves a packed representation of all enabled features in which each feature is
+   * represented by its respective {@link Feature#getMask() bit}.</p>
+   *
+   * <p>Rule conditions may use this mask in order to evaluate multiple features at once.
+   * Implementations are encouraged to compute the mask only once.</p>
+   *
+   * @return a feature mask.
+   */
+  default long getFeatureMask() {
+    long mask = 0;
+
+    for (Feature feature : Feature.values()) {
+      if (this.isFeatureEnabled(feature)) {
+        mask |= feature.getMask();
+      }
+    }
+
+    return mask;
+  }
+
   /**
    * <p>Provides a builder for arbitrary resolver context instances.</p>
    *
@@ -17,7 +17,6 @@
 package org.basinmc.lavatory;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
-import java.util.EnumSet;
 import java.util.Set;
 import org.basinmc.lavatory.rule.feature.Feature;
 import org.basinmc.lavatory.rule.system.OperatingSystem;
@@ -31,7 +30,7 @@ class ResolverContextImpl implements ResolverContext {
 
   private final OperatingSystem operatingSystem;
   private final String operatingSystemVersion;
-  private final Set<Feature> features;
+  private final long featureMask;
 
   ResolverContextImpl(
       @NonNull OperatingSystem operatingSystem,
@@ -39,7 +38,12 @@ class ResolverContextImpl implements ResolverContext {
       @NonNull Set<Feature> features) {
     this.operatingSystem = operatingSystem;
     this.operatingSystemVersion = operatingSystemVersion;
-    this.features = EnumSet.copyOf(features);
+
+    long featureMask = 0;
+    for (Feature feature : features) {
+      featureMask |= feature.getMask();
+    }
+    this.featureMask = featureMask;
   }
 
   /**
@@ -60,11 +64,19 @@ class ResolverContextImpl implements ResolverContext {
     return this.operatingSystemVersion;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public long getFeatureMask() {
+    return this.featureMask;
+  }
+
   /**
    * {@inheritDoc}
    */
   @Override
   public boolean isFeatureEnabled(@NonNull Feature feature) {
-    return this.features.contains(feature);
+    return (this.featureMask & feature.getMask()) != 0;
   }
 }
@@ -18,7 +18,6 @@ package org.basinmc.lavatory.asset;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import java.io.IOException;
 import java.io.InputStream;
@@ -30,6 +29,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import org.basinmc.lavatory.Mappers;
 
 /**
  * Represents an index of resource files.
@@ -71,8 +71,7 @@ public class AssetIndex {
    */
   @NonNull
   public static AssetIndex read(@NonNull InputStream inputStream) throws IOException {
-    ObjectMapper mapper = new ObjectMapper();
-    return mapper.readValue(inputStream, AssetIndex.class);
+    return Mappers.getDefault().readValue(inputStream, AssetIndex.class);
   }
 
   /**
@@ -98,8 +97,7 @@ public class AssetIndex {
    */
   @NonNull
   public static AssetIndex read(@NonNull Reader reader) throws IOException {
-    ObjectMapper mapper = new ObjectMapper();
-    return mapper.readValue(reader, AssetIndex.class);
+    return Mappers.getDefault().readValue(reader, AssetIndex.class);
   }
 
   /**
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.asset;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import org.basinmc.lavatory.fetch.RetryPolicy;
+import org.basinmc.lavatory.file.DigestService;
+import org.basinmc.lavatory.file.Transfer;
+
+/**
+ * <p>Shares decoded asset indices between all versions which reference the same index.</p>
+ *
+ * <p>Indices are identified by their identifier and checksum. Each index is retained via a soft
+ * reference and may thus be reclaimed by the garbage collector when memory becomes scarce (in
+ * which case it is simply retrieved again upon its next use). Concurrent requests for an index
+ * which is not cached are coalesced into a single retrieval.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class AssetIndexCache {
+
+  private final RetryPolicy retryPolicy;
+  private final boolean verification;
+
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, CompletableFuture<AssetIndex>> pending =
+      new ConcurrentHashMap<>();
+  private final ReferenceQueue<AssetIndex> queue = new ReferenceQueue<>();
+
+  private AssetIndexCache(@Nullable RetryPolicy retryPolicy, boolean verification) {
+    this.retryPolicy = retryPolicy;
+    this.verification = verification;
+  }
+
+  /**
+   * Creates a new empty asset index cache factory.
+   *
+   * @return a factory.
+   */
+  @NonNull
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Retrieves the shared copy of the referenced index or retrieves it from the server if it is
+   * not cached.
+   *
+   * @param reference an asset index reference.
+   * @return an asset index.
+   * @throws IOException when retrieving or decoding the index fails.
+   */
+  @NonNull
+  public AssetIndex fetch(@NonNull AssetIndexReference reference) throws IOException {
+    String key = key(reference);
+
+    Optional<AssetIndex> cached = this.get(key);
+    if (cached.isPresent()) {
+      return cached.get();
+    }
+
+    CompletableFuture<AssetIndex> future = new CompletableFuture<>();
+    CompletableFuture<AssetIndex> existing = this.pending.putIfAbsent(key, future);
+
+    if (existing != null) {
+      return await(existing);
+    }
+
+    try {
+      // another thread may have completed the retrieval between the lookup and the registration
+      AssetIndex index = this.get(key).orElse(null);
+
+      if (index == null) {
+        index = this.load(reference);
+        this.expunge();
+        this.entries.put(key, new Entry(key, index, this.queue));
+      }
+
+      future.complete(index);
+      return index;
+    } catch (IOException | RuntimeException ex) {
+      future.completeExceptionally(ex);
+      throw ex;
+    } finally {
+      this.pending.remove(key, future);
+    }
+  }
+
+  /**
+   * Retrieves the shared copy of the referenced index without contacting the server.
+   *
+   * @param reference an asset index reference.
+   * @return an asset index or, if not cached, an empty optional.
+   */
+  @NonNull
+  public Optional<AssetIndex> get(@NonNull AssetIndexReference reference) {
+    return this.get(key(reference));
+  }
+
+  @NonNull
+  private Optional<AssetIndex> get(@NonNull String key) {
+    Entry entry = this.entries.get(key);
+    return Optional.ofNullable(entry == null ? null : entry.get());
+  }
+
+  /**
+   * Retrieves the amount of indices which are currently retained by this cache.
+   *
+   * @return an index count.
+   */
+  public int size() {
+    this.expunge();
+    return (int) this.entries.values().stream()
+        .filter((e) -> e.get() != null)
+        .count();
+  }
+
+  /**
+   * Removes all indices from this cache.
+   */
+  public void clear() {
+    this.entries.clear();
+  }
+
+  /**
+   * Removes all entries whose index has been reclaimed by the garbage collector.
+   */
+  private void expunge() {
+    Object reference;
+
+    while ((reference = this.queue.poll()) != null) {
+      Entry entry = (Entry) reference;
+      this.entries.remove(entry.key, entry);
+    }
+  }
+
+  @NonNull
+  private AssetIndex load(@NonNull AssetIndexReference reference) throws IOException {
+    byte[] document;
+
+    if (this.retryPolicy != null) {
+      document = this.retryPolicy.execute(reference.getUrl(), Transfer::readFully);
+    } else {
+      try (InputStream inputStream = reference.getUrl().openStream()) {
+        document = Transfer.readFully(inputStream);
+      }
+    }
+
+    if (this.verification && (document.length != reference.getSize() || !Arrays
+        .equals(reference.getSha1Bytes(), DigestService.digest(ByteBuffer.wrap(document))))) {
+      throw new IOException("Checksum mismatch for asset index " + reference.getId());
+    }
+
+    return AssetIndex.read(new ByteArrayInputStream(document));
+  }
+
+  @NonNull
+  private static AssetIndex await(@NonNull CompletableFuture<AssetIndex> future)
+      throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while awaiting asset index");
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+
+      if (cause instanceof IOException) {
+        throw new IOException(cause.getMessage(), cause);
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+
+      throw new IOException("Failed to retrieve asset index", cause);
+    }
+  }
+
+  @NonNull
+  private static String key(@NonNull AssetIndexReference reference) {
+    return reference.getId() + ":" + reference.getSha1().toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Retains a softly reachable index along with its cache key.
+   */
+  private static final class Entry extends SoftReference<AssetIndex> {
+
+    private final String key;
+
+    private Entry(@NonNull String key, @NonNull AssetIndex index,
+        @NonNull ReferenceQueue<AssetIndex> queue) {
+      super(index, queue);
+      this.key = key;
+    }
+  }
+
+  /**
+   * Provides a factory for asset index caches.
+   */
+  public static final class Builder {
+
+    private RetryPolicy retryPolicy;
+    private boolean verification = true;
+
+    private Builder() {
+    }
+
+    /**
+     * Constructs a new cache using the configuration within this builder.
+     *
+     * @return a cache.
+     */
+    @NonNull
+    public AssetIndexCache build() {
+      return new AssetIndexCache(this.retryPolicy, this.verification);
+    }
+
+    /**
+     * Selects a policy according to which failed requests are repeated.
+     *
+     * @param retryPolicy a policy or null to fail on the first error.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withRetryPolicy(@Nullable RetryPolicy retryPolicy) {
+      this.retryPolicy = retryPolicy;
+      return this;
+    }
+
+    /**
+     * Selects whether retrieved indices are checked against the size and checksum of their
+     * reference (enabled by default).
+     *
+     * @param verification true if indices are to be verified.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withVerification(boolean verification) {
+      this.verification = verification;
+      return this;
+    }
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.asset;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.basinmc.lavatory.Mappers;
+
+/**
+ * <p>Decodes the objects of an asset index one at a time.</p>
+ *
+ * <p>Unlike {@link AssetIndex#read(InputStream)}, this reader never materializes the complete
+ * object map. Instead, entries are parsed on demand as they are requested by the consumer and thus
+ * the memory footprint remains constant regardless of the size of the index.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class AssetIndexReader implements Iterator<Map.Entry<String, AssetObject>>,
+    Closeable {
+
+  private final JsonParser parser;
+  private Map.Entry<String, AssetObject> next;
+  private boolean done;
+
+  private AssetIndexReader(@NonNull JsonParser parser) {
+    this.parser = parser;
+  }
+
+  /**
+   * Opens a reader for the asset index within the specified input stream.
+   *
+   * @param inputStream an input stream (which is closed along with the reader).
+   * @return a reader.
+   * @throws IOException when reading from the stream fails or the data is malformed.
+   */
+  @NonNull
+  public static AssetIndexReader open(@NonNull InputStream inputStream) throws IOException {
+    JsonFactory factory = Mappers.getDefault().getFactory();
+    JsonParser parser = factory.createParser(inputStream);
+
+    try {
+      seekObjects(parser);
+    } catch (IOException ex) {
+      parser.close();
+      throw ex;
+    }
+
+    return new AssetIndexReader(parser);
+  }
+
+  /**
+   * Opens a reader for the asset index within the specified file.
+   *
+   * @param path a file path.
+   * @return a reader.
+   * @throws IOException when reading from the file fails or the data is malformed.
+   */
+  @NonNull
+  public static AssetIndexReader open(@NonNull Path path) throws IOException {
+    return open(Files.newInputStream(path));
+  }
+
+  /**
+   * Positions the parser on the opening token of the objects map (skipping all other top level
+   * properties).
+   */
+  private static void seekObjects(@NonNull JsonParser parser) throws IOException {
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      throw new IOException("Illegal asset index: Expected object");
+    }
+
+    JsonToken token;
+    while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      token = parser.nextToken();
+
+      if ("objects".equals(name)) {
+        if (token != JsonToken.START_OBJECT) {
+          throw new IOException("Illegal asset index: Expected objects to be an object");
+        }
+
+        return;
+      }
+
+      parser.skipChildren();
+    }
+
+    throw new IOException("Illegal asset index: Missing objects");
+  }
+
+  /**
+   * Decodes the next entry or marks this reader as exhausted.
+   */
+  private void advance() throws IOException {
+    if (this.done || this.next != null) {
+      return;
+    }
+
+    if (this.parser.nextToken() != JsonToken.FIELD_NAME) {
+      this.done = true;
+      return;
+    }
+
+    String name = this.parser.getCurrentName();
+    this.parser.nextToken();
+    AssetObject object = Mappers.getDefault().readValue(this.parser, AssetObject.class);
+
+    this.next = new SimpleImmutableEntry<>(name, object);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws UncheckedIOException when reading from the underlying stream fails.
+   */
+  @Override
+  public boolean hasNext() {
+    try {
+      this.advance();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+
+    return this.next != null;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws UncheckedIOException when reading from the underlying stream fails.
+   */
+  @NonNull
+  @Override
+  public Map.Entry<String, AssetObject> next() {
+    if (!this.hasNext()) {
+      throw new NoSuchElementException();
+    }
+
+    Map.Entry<String, AssetObject> entry = this.next;
+    this.next = null;
+    return entry;
+  }
+
+  /**
+   * Retrieves a sequential stream of the remaining entries which closes this reader when closed.
+   *
+   * @return a stream of entries.
+   */
+  @NonNull
+  public Stream<Map.Entry<String, AssetObject>> stream() {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+        Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.ORDERED), false)
+        .onClose(() -> {
+          try {
+            this.close();
+          } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+          }
+        });
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void close() throws IOException {
+    this.done = true;
+    this.next = null;
+    this.parser.close();
+  }
+}
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.util.Objects;
+import org.basinmc.lavatory.fetch.RetryPolicy;
 import org.basinmc.lavatory.file.Download;
 
 /**
@@ -62,6 +63,19 @@ public class AssetIndexReference extends Download {
     }
   }
 
+  /**
+   * Fetches the full asset index from the server while retrying transient failures.
+   *
+   * @param policy a retry policy.
+   * @return a parsed asset index.
+   * @throws IOException when all attempts have failed, a non-retryable error is encountered or
+   * when the data is malformed.
+   */
+  @NonNull
+  public AssetIndex fetch(@NonNull RetryPolicy policy) throws IOException {
+    return policy.execute(this.getUrl(), AssetIndex::read);
+  }
+
   /**
    * Retrieves a globally unique identifier for this asset index.
    *
@@ -0,0 +1,470 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.asset;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.basinmc.lavatory.file.DigestService;
+
+/**
+ * <p>Stores asset objects within a single append-only pack file instead of one file per
+ * object.</p>
+ *
+ * <p>A pack consists of two files within its directory: The data file contains the raw contents
+ * of all objects back to back while the index file contains a small header followed by one fixed
+ * width record (the packed SHA-1 checksum, offset and length of the object) per object. Object
+ * data is always flushed to disk before its index record is appended and thus records which have
+ * been written partially (or which reference data beyond the end of the data file) are simply
+ * discarded when the pack is opened again.</p>
+ *
+ * <p>Object contents are read via a memory mapping of the data file. As the game expects its
+ * assets at their loose location, packed objects may be exported into a regular object directory
+ * prior to launching.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class AssetPack implements AutoCloseable {
+
+  /**
+   * Defines the name of the data file within a pack directory.
+   */
+  public static final String DATA_FILE = "objects.pack";
+
+  /**
+   * Defines the name of the index file within a pack directory.
+   */
+  public static final String INDEX_FILE = "objects.idx";
+
+  private static final int MAGIC = 0x4C564150; // LVAP
+  private static final short VERSION = 1;
+
+  private static final int HASH_LENGTH = 20;
+  private static final int HEADER_LENGTH = 8;
+  private static final int RECORD_LENGTH = HASH_LENGTH + 8 + 8;
+
+  private final FileChannel data;
+  private final FileChannel index;
+  private final Map<Key, Region> regions = new ConcurrentHashMap<>();
+  private volatile MappedByteBuffer mapping;
+
+  private AssetPack(@NonNull FileChannel data, @NonNull FileChannel index) {
+    this.data = data;
+    this.index = index;
+  }
+
+  /**
+   * Opens (or creates) the pack within the specified directory.
+   *
+   * @param directory a pack directory.
+   * @return an asset pack.
+   * @throws IOException when accessing the pack fails or its index is malformed.
+   */
+  @NonNull
+  public static AssetPack open(@NonNull Path directory) throws IOException {
+    Files.createDirectories(directory);
+
+    FileChannel data = FileChannel.open(directory.resolve(DATA_FILE), StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    FileChannel index;
+
+    try {
+      index = FileChannel.open(directory.resolve(INDEX_FILE), StandardOpenOption.CREATE,
+          StandardOpenOption.READ, StandardOpenOption.WRITE);
+    } catch (IOException ex) {
+      data.close();
+      throw ex;
+    }
+
+    AssetPack pack = new AssetPack(data, index);
+
+    try {
+      pack.load();
+    } catch (IOException ex) {
+      pack.close();
+      throw ex;
+    }
+
+    return pack;
+  }
+
+  /**
+   * Reads all intact records from the index file and discards incomplete trailing records as
+   * well as unreferenced trailing data.
+   */
+  private void load() throws IOException {
+    if (this.index.size() == 0) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+      header.putInt(MAGIC).putShort(VERSION).putShort((short) 0).flip();
+      this.write(this.index, header, 0);
+      this.index.force(true);
+    }
+
+    // the index is read into the heap rather than mapped as it may need to be truncated below
+    // which some platforms refuse to do while a mapping of the file exists
+    if (this.index.size() > Integer.MAX_VALUE) {
+      throw new IOException("Illegal asset pack: Index exceeds maximum size");
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate((int) this.index.size());
+    while (buffer.hasRemaining()) {
+      if (this.index.read(buffer, buffer.position()) == -1) {
+        break;
+      }
+    }
+    buffer.flip();
+    if (buffer.limit() < HEADER_LENGTH || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Illegal asset pack: Invalid magic number");
+    }
+
+    short version = buffer.getShort(4);
+    if (version != VERSION) {
+      throw new IOException("Illegal asset pack: Unsupported format version " + version);
+    }
+
+    long dataSize = this.data.size();
+    long end = 0;
+    int offset = HEADER_LENGTH;
+
+    for (; offset + RECORD_LENGTH <= buffer.limit(); offset += RECORD_LENGTH) {
+      byte[] hash = new byte[HASH_LENGTH];
+      for (int i = 0; i < HASH_LENGTH; ++i) {
+        hash[i] = buffer.get(offset + i);
+      }
+
+      Region region = new Region(buffer.getLong(offset + HASH_LENGTH),
+          buffer.getLong(offset + HASH_LENGTH + 8));
+      if (region.offset < 0 || region.length < 0 || region.offset + region.length > dataSize) {
+        break;
+      }
+
+      this.regions.put(new Key(hash), region);
+      end = Math.max(end, region.offset + region.length);
+    }
+
+    if (offset < this.index.size()) {
+      this.index.truncate(offset);
+    }
+    if (end < dataSize) {
+      this.data.truncate(end);
+    }
+  }
+
+  /**
+   * Evaluates whether the specified object is stored within this pack.
+   *
+   * @param object an asset object.
+   * @return true if present, false otherwise.
+   */
+  public boolean contains(@NonNull AssetObject object) {
+    return this.regions.containsKey(new Key(object.getSha1Bytes()));
+  }
+
+  /**
+   * Retrieves the total amount of objects within this pack.
+   *
+   * @return an object count.
+   */
+  public int size() {
+    return this.regions.size();
+  }
+
+  /**
+   * Appends the contents of a file to this pack (unless the object is already present).
+   *
+   * @param object an asset object.
+   * @param source a file which contains the object contents.
+   * @return true if the object has been added, false if it was already present.
+   * @throws IOException when the file does not match the object or writing to the pack fails.
+   */
+  public synchronized boolean add(@NonNull AssetObject object, @NonNull Path source)
+      throws IOException {
+    Key key = new Key(object.getSha1Bytes());
+    if (this.regions.containsKey(key)) {
+      return false;
+    }
+
+    Region region = this.append(object, source);
+    this.commit(Collections.singletonMap(key, region));
+    return true;
+  }
+
+  /**
+   * Appends all objects of an index which are present within a loose object directory.
+   *
+   * @param assetIndex an asset index.
+   * @param objectDirectory a loose object directory.
+   * @return the amount of added objects.
+   * @throws IOException when a file does not match its object or writing to the pack fails.
+   */
+  public synchronized int addAll(@NonNull AssetIndex assetIndex, @NonNull Path objectDirectory)
+      throws IOException {
+    Map<Key, Region> added = new LinkedHashMap<>();
+
+    for (AssetObject object : assetIndex.getObjects().values()) {
+      Key key = new Key(object.getSha1Bytes());
+      Path source = resolve(objectDirectory, object);
+
+      if (this.regions.containsKey(key) || added.containsKey(key)
+          || !Files.isRegularFile(source)) {
+        continue;
+      }
+
+      try {
+        added.put(key, this.append(object, source));
+      } catch (IOException ex) {
+        // objects which have been appended so far are still committed in order to not waste the
+        // work which has been done up to this point
+        this.commit(added);
+        throw ex;
+      }
+    }
+
+    this.commit(added);
+    return added.size();
+  }
+
+  /**
+   * Appends the contents of a file to the data file without making it visible.
+   */
+  @NonNull
+  private Region append(@NonNull AssetObject object, @NonNull Path source) throws IOException {
+    if (Files.size(source) != object.getSize()) {
+      throw new IOException("Size mismatch for object " + object.getSha1());
+    }
+    if (!Arrays.equals(object.getSha1Bytes(), DigestService.digest(source))) {
+      throw new IOException("Checksum mismatch for object " + object.getSha1());
+    }
+
+    long offset = this.data.size();
+    long length = object.getSize();
+
+    try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+      long position = 0;
+
+      while (position < length) {
+        long transferred = this.data.transferFrom(channel, offset + position, length - position);
+
+        if (transferred <= 0) {
+          throw new IOException("Unexpected end of file for object " + object.getSha1());
+        }
+
+        position += transferred;
+      }
+    } catch (IOException ex) {
+      this.data.truncate(offset);
+      throw ex;
+    }
+
+    return new Region(offset, length);
+  }
+
+  /**
+   * Flushes all pending data to disk and subsequently appends the index records for the
+   * specified regions.
+   */
+  private void commit(@NonNull Map<Key, Region> regions) throws IOException {
+    if (regions.isEmpty()) {
+      return;
+    }
+
+    this.data.force(false);
+
+    ByteBuffer records = ByteBuffer.allocate(regions.size() * RECORD_LENGTH);
+    regions.forEach((k, r) -> records.put(k.hash).putLong(r.offset).putLong(r.length));
+    records.flip();
+
+    this.write(this.index, records, this.index.size());
+    this.index.force(false);
+
+    this.regions.putAll(regions);
+  }
+
+  /**
+   * Retrieves a read-only view of the contents of an object.
+   *
+   * @param object an asset object.
+   * @return a buffer or, if no such object is stored within this pack, an empty optional.
+   * @throws IOException when mapping the pack fails.
+   */
+  @NonNull
+  public Optional<ByteBuffer> read(@NonNull AssetObject object) throws IOException {
+    Region region = this.regions.get(new Key(object.getSha1Bytes()));
+
+    if (region == null) {
+      return Optional.empty();
+    }
+
+    long end = region.offset + region.length;
+    if (end > Integer.MAX_VALUE) {
+      return Optional.of(this.data.map(MapMode.READ_ONLY, region.offset, region.length));
+    }
+
+    MappedByteBuffer mapping = this.mapping;
+    if (mapping == null || mapping.capacity() < end) {
+      synchronized (this) {
+        mapping = this.mapping;
+
+        if (mapping == null || mapping.capacity() < end) {
+          mapping = this.data.map(MapMode.READ_ONLY, 0,
+              Math.min(this.data.size(), Integer.MAX_VALUE));
+          this.mapping = mapping;
+        }
+      }
+    }
+
+    ByteBuffer buffer = mapping.duplicate();
+    buffer.limit((int) end).position((int) region.offset);
+    return Optional.of(buffer.slice());
+  }
+
+  /**
+   * Evaluates whether the packed contents of an object match its checksum.
+   *
+   * @param object an asset object.
+   * @return true if present and intact, false otherwise.
+   * @throws IOException when mapping the pack fails.
+   */
+  public boolean verify(@NonNull AssetObject object) throws IOException {
+    Optional<ByteBuffer> buffer = this.read(object);
+
+    return buffer.isPresent() && buffer.get().remaining() == object.getSize()
+        && Arrays.equals(object.getSha1Bytes(), DigestService.digest(buffer.get()));
+  }
+
+  /**
+   * Writes all packed objects of an index to their loose location within the specified object
+   * directory (objects which already exist at their loose location are skipped).
+   *
+   * @param assetIndex an asset index.
+   * @param objectDirectory a loose object directory.
+   * @return the amount of exported objects.
+   * @throws IOException when writing an object fails.
+   */
+  public int export(@NonNull AssetIndex assetIndex, @NonNull Path objectDirectory)
+      throws IOException {
+    int exported = 0;
+
+    for (AssetObject object : assetIndex.getObjects().values()) {
+      Path target = resolve(objectDirectory, object);
+      if (Files.exists(target)) {
+        continue;
+      }
+
+      Optional<ByteBuffer> buffer = this.read(object);
+      if (!buffer.isPresent()) {
+        continue;
+      }
+
+      Files.createDirectories(target.getParent());
+      Path temporary = Files.createTempFile(target.getParent(), object.getSha1(), ".part");
+
+      try {
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+          this.write(channel, buffer.get(), 0);
+        }
+
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temporary);
+      }
+
+      ++exported;
+    }
+
+    return exported;
+  }
+
+  /**
+   * Closes the underlying pack files (buffers which have previously been returned remain valid
+   * until they are garbage collected).
+   *
+   * @throws IOException when closing fails.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      this.data.close();
+    } finally {
+      this.index.close();
+    }
+  }
+
+  @NonNull
+  private static Path resolve(@NonNull Path objectDirectory, @NonNull AssetObject object) {
+    String hash = object.getSha1();
+    return objectDirectory.resolve(hash.substring(0, 2)).resolve(hash);
+  }
+
+  private void write(@NonNull FileChannel channel, @NonNull ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  /**
+   * Wraps a packed checksum in order to provide value based equality.
+   */
+  private static final class Key {
+
+    private final byte[] hash;
+    private final int hashCode;
+
+    private Key(@NonNull byte[] hash) {
+      this.hash = hash;
+      this.hashCode = Arrays.hashCode(hash);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return this == o || (o instanceof Key && Arrays.equals(this.hash, ((Key) o).hash));
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hashCode;
+    }
+  }
+
+  /**
+   * Identifies the location of an object within the data file.
+   */
+  private static final class Region {
+
+    private final long offset;
+    private final long length;
+
+    private Region(long offset, long length) {
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+}
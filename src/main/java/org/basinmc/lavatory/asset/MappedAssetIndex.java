@@ -0,0 +1,327 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.asset;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * <p>Provides read access to an on-disk representation of an asset index which is accessed via a
+ * memory mapping and thus does not need to be decoded into the heap.</p>
+ *
+ * <p>The index file consists of a small header, a table of fixed width records (sorted by the UTF-8
+ * representation of their respective path) and a blob which contains all asset paths. Each record
+ * consists of the offset and length of its path within the blob, the packed SHA-1 checksum and the
+ * file size of its object. Lookups are thus resolved via a binary search directly within the mapped
+ * file.</p>
+ *
+ * <p>Note that objects within a mapped index are always expected to be available at their default
+ * location (as specified by {@link AssetObject#ASSET_URL_FORMAT}).</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class MappedAssetIndex {
+
+  private static final int MAGIC = 0x4C564149; // LVAI
+  private static final short VERSION = 1;
+
+  private static final int HASH_LENGTH = 20;
+  private static final int HEADER_LENGTH = 12;
+  private static final int RECORD_LENGTH = 4 + 4 + HASH_LENGTH + 8;
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final ByteBuffer buffer;
+  private final int size;
+  private final int blobOffset;
+
+  private MappedAssetIndex(@NonNull ByteBuffer buffer) throws IOException {
+    if (buffer.limit() < HEADER_LENGTH || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Illegal asset index: Invalid magic number");
+    }
+
+    short version = buffer.getShort(4);
+    if (version != VERSION) {
+      throw new IOException("Illegal asset index: Unsupported format version " + version);
+    }
+
+    int size = buffer.getInt(8);
+    long blobOffset = HEADER_LENGTH + (long) size * RECORD_LENGTH;
+
+    if (size < 0 || blobOffset > buffer.limit()) {
+      throw new IOException("Illegal asset index: Record table exceeds file bounds");
+    }
+
+    // every record is validated up front so that lookups never need to check their offsets
+    long blobLength = buffer.limit() - blobOffset;
+    for (int i = 0; i < size; ++i) {
+      int offset = HEADER_LENGTH + i * RECORD_LENGTH;
+      int pathOffset = buffer.getInt(offset);
+      int pathLength = buffer.getInt(offset + 4);
+
+      if (pathOffset < 0 || pathLength < 0 || (long) pathOffset + pathLength > blobLength) {
+        throw new IOException("Illegal asset index: Path of record " + i + " exceeds file bounds");
+      }
+    }
+
+    this.buffer = buffer;
+    this.size = size;
+    this.blobOffset = (int) blobOffset;
+  }
+
+  /**
+   * Opens a previously written asset index file.
+   *
+   * @param path a file path.
+   * @return a mapped asset index.
+   * @throws IOException when mapping the file fails or its contents are malformed.
+   */
+  @NonNull
+  public static MappedAssetIndex open(@NonNull Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+      return new MappedAssetIndex(buffer);
+    }
+  }
+
+  /**
+   * Writes the specified asset index to a file in the mapped index format (the file is replaced
+   * atomically and thus never observed in a partially written state).
+   *
+   * @param index an asset index.
+   * @param path a file path.
+   * @throws IOException when writing to the file fails.
+   * @throws IllegalArgumentException when an object within the index does not carry a valid SHA-1
+   * checksum.
+   */
+  public static void write(@NonNull AssetIndex index, @NonNull Path path) throws IOException {
+    Map<String, AssetObject> objects = index.getObjects();
+    Entry[] entries = new Entry[objects.size()];
+
+    int i = 0;
+    for (Map.Entry<String, AssetObject> object : objects.entrySet()) {
+      entries[i++] = new Entry(object.getKey().getBytes(StandardCharsets.UTF_8),
+          object.getValue());
+    }
+    Arrays.sort(entries, (a, b) -> compare(a.path, b.path));
+
+    Path parent = path.toAbsolutePath().getParent();
+    Path temporary = Files.createTempFile(parent, path.getFileName().toString(), ".part");
+
+    try {
+      writeEntries(entries, temporary);
+      Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  private static void writeEntries(@NonNull Entry[] entries, @NonNull Path path)
+      throws IOException {
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(path)))) {
+      out.writeInt(MAGIC);
+      out.writeShort(VERSION);
+      out.writeShort(0);
+      out.writeInt(entries.length);
+
+      int pathOffset = 0;
+      for (Entry entry : entries) {
+        byte[] hash = entry.object.getSha1Bytes();
+        if (hash.length != HASH_LENGTH) {
+          throw new IllegalArgumentException(
+              "Illegal asset object: Expected SHA-1 checksum but got \"" + entry.object.getSha1()
+                  + "\"");
+        }
+
+        out.writeInt(pathOffset);
+        out.writeInt(entry.path.length);
+        out.write(hash);
+        out.writeLong(entry.object.getSize());
+
+        pathOffset += entry.path.length;
+      }
+
+      for (Entry entry : entries) {
+        out.write(entry.path);
+      }
+    }
+  }
+
+  /**
+   * Retrieves a specific object from the index.
+   *
+   * @param path a relative path.
+   * @return an asset object or, if no such object exists, an empty optional.
+   */
+  @NonNull
+  public Optional<AssetObject> getObject(@NonNull String path) {
+    int record = this.find(path.getBytes(StandardCharsets.UTF_8));
+
+    if (record < 0) {
+      return Optional.empty();
+    }
+
+    return Optional.of(this.readObject(record));
+  }
+
+  /**
+   * Retrieves the total amount of objects within this index.
+   *
+   * @return an object count.
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Decodes the entire contents of this mapped index into a regular heap based asset index.
+   *
+   * @return an asset index.
+   */
+  @NonNull
+  public AssetIndex toAssetIndex() {
+    Map<String, AssetObject> objects = new HashMap<>((int) (this.size / 0.75f) + 1);
+
+    for (int i = 0; i < this.size; ++i) {
+      int offset = HEADER_LENGTH + i * RECORD_LENGTH;
+      byte[] path = new byte[this.buffer.getInt(offset + 4)];
+      int pathOffset = this.blobOffset + this.buffer.getInt(offset);
+
+      for (int j = 0; j < path.length; ++j) {
+        path[j] = this.buffer.get(pathOffset + j);
+      }
+
+      objects.put(new String(path, StandardCharsets.UTF_8), this.readObject(i));
+    }
+
+    return new AssetIndex(objects);
+  }
+
+  /**
+   * Locates the record which matches the specified encoded path via a binary search.
+   *
+   * @return a record index or a negative value if no such record exists.
+   */
+  private int find(@NonNull byte[] path) {
+    int low = 0;
+    int high = this.size - 1;
+
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int result = this.compareRecord(mid, path);
+
+      if (result < 0) {
+        low = mid + 1;
+      } else if (result > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Compares the path of a record with the specified encoded path without copying the record path
+   * out of the mapped buffer (absolute reads are used in order to keep lookups thread safe).
+   */
+  private int compareRecord(int record, @NonNull byte[] path) {
+    int offset = HEADER_LENGTH + record * RECORD_LENGTH;
+    int pathOffset = this.blobOffset + this.buffer.getInt(offset);
+    int pathLength = this.buffer.getInt(offset + 4);
+
+    int length = Math.min(pathLength, path.length);
+    for (int i = 0; i < length; ++i) {
+      int result = (this.buffer.get(pathOffset + i) & 0xFF) - (path[i] & 0xFF);
+
+      if (result != 0) {
+        return result;
+      }
+    }
+
+    return pathLength - path.length;
+  }
+
+  @NonNull
+  private AssetObject readObject(int record) {
+    int offset = HEADER_LENGTH + record * RECORD_LENGTH + 8;
+
+    char[] hash = new char[HASH_LENGTH * 2];
+    for (int i = 0; i < HASH_LENGTH; ++i) {
+      byte b = this.buffer.get(offset + i);
+      hash[i * 2] = HEX[(b >> 4) & 0xF];
+      hash[i * 2 + 1] = HEX[b & 0xF];
+    }
+    String sha1 = new String(hash);
+    long size = this.buffer.getLong(offset + HASH_LENGTH);
+
+    try {
+      return new AssetObject(sha1, size,
+          new URL(String.format(AssetObject.ASSET_URL_FORMAT, sha1.substring(0, 2), sha1)));
+    } catch (MalformedURLException ex) {
+      throw new IllegalStateException("Illegal asset URL format", ex);
+    }
+  }
+
+  private static int compare(@NonNull byte[] a, @NonNull byte[] b) {
+    int length = Math.min(a.length, b.length);
+
+    for (int i = 0; i < length; ++i) {
+      int result = (a[i] & 0xFF) - (b[i] & 0xFF);
+
+      if (result != 0) {
+        return result;
+      }
+    }
+
+    return a.length - b.length;
+  }
+
+  /**
+   * Represents an index entry which is pending to be written.
+   */
+  private static final class Entry {
+
+    private final byte[] path;
+    private final AssetObject object;
+
+    private Entry(@NonNull byte[] path, @NonNull AssetObject object) {
+      this.path = path;
+      this.object = object;
+    }
+  }
+}
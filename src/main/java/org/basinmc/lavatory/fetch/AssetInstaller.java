@@ -0,0 +1,406 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.fetch;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.basinmc.lavatory.asset.AssetIndexReader;
+import org.basinmc.lavatory.asset.AssetObject;
+
+/**
+ * <p>Installs a stream of asset objects into an asset object directory.</p>
+ *
+ * <p>Entries are pulled from their source only when a slot within the bounded in-flight window
+ * becomes available. As a result, the amount of entries held in memory at any given time is
+ * limited by the configured window size regardless of the size of the source index (for instance
+ * when combined with {@link AssetIndexReader}).</p>
+ *
+ * <p>Identical objects which are referenced by multiple names (or requested by concurrent
+ * installations through the same installer) share a single transfer. Only the name which initiated
+ * the transfer is reported as fetched while all others are reported as skipped.</p>
+ *
+ * <p>Progress is reported to an arbitrary number of listeners which are notified (in the order of
+ * their registration) from the executing worker threads and thus need to be thread safe.
+ * Exceptions thrown by listeners are ignored and do not affect the outcome of an object.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class AssetInstaller {
+
+  private final FetchExecutor executor;
+  private final Path objectDirectory;
+  private final int window;
+  private final boolean verifyExisting;
+  private final List<Listener> listeners;
+  private final RetryPolicy retryPolicy;
+  private final SingleFlight<String, Boolean> flights = new SingleFlight<>();
+
+  private AssetInstaller(@NonNull FetchExecutor executor, @NonNull Path objectDirectory,
+      int window, boolean verifyExisting, @NonNull List<Listener> listeners,
+      @Nullable RetryPolicy retryPolicy) {
+    this.executor = executor;
+    this.objectDirectory = objectDirectory;
+    this.window = window;
+    this.verifyExisting = verifyExisting;
+    this.listeners = listeners;
+    this.retryPolicy = retryPolicy;
+  }
+
+  /**
+   * Creates a new factory for installers which write to the specified object directory (e.g.
+   * {@code assets/objects}).
+   *
+   * @param executor an executor through which objects are retrieved.
+   * @param objectDirectory an object directory.
+   * @return a factory.
+   */
+  @NonNull
+  public static Builder builder(@NonNull FetchExecutor executor, @NonNull Path objectDirectory) {
+    return new Builder(executor, objectDirectory);
+  }
+
+  /**
+   * Resolves the location of an asset object within the specified object directory.
+   *
+   * @param objectDirectory an object directory.
+   * @param object an asset object.
+   * @return a file path.
+   */
+  @NonNull
+  public static Path resolve(@NonNull Path objectDirectory, @NonNull AssetObject object) {
+    String hash = object.getSha1();
+    return objectDirectory.resolve(hash.substring(0, 2)).resolve(hash);
+  }
+
+  /**
+   * Installs all objects which are provided by the specified source.
+   *
+   * @param source a source of named asset objects.
+   * @return an installation report.
+   * @throws InterruptedException when the calling thread is interrupted while awaiting a free slot
+   * or the completion of the remaining objects.
+   */
+  @NonNull
+  public Result install(@NonNull Iterator<? extends Map.Entry<String, AssetObject>> source)
+      throws InterruptedException {
+    Semaphore slots = new Semaphore(this.window);
+    Result result = new Result();
+
+    try {
+      while (source.hasNext()) {
+        slots.acquire();
+
+        Map.Entry<String, AssetObject> entry = source.next();
+        String name = entry.getKey();
+        AssetObject object = entry.getValue();
+        Path target = resolve(this.objectDirectory, object);
+
+        AtomicBoolean leader = new AtomicBoolean();
+        this.flights.execute(object.getSha1().toLowerCase(Locale.ROOT), () -> {
+          leader.set(true);
+          return this.executor.submit(object.getUrl(), () -> this.fetch(object, target));
+        }).whenComplete((fetched, ex) -> {
+          // the slot is released regardless of whether the object was installed or discarded by
+          // the executor as we would otherwise never finish awaiting the in-flight objects
+          try {
+            this.report(result, name, object, target,
+                leader.get() && Boolean.TRUE.equals(fetched), ex);
+          } finally {
+            slots.release();
+          }
+        });
+      }
+    } finally {
+      // wait for every in-flight object to either complete or fail before handing back control
+      slots.acquire(this.window);
+    }
+
+    return result;
+  }
+
+  /**
+   * Accounts for the outcome of a single named object and notifies all listeners.
+   */
+  private void report(@NonNull Result result, @NonNull String name, @NonNull AssetObject object,
+      @NonNull Path target, boolean fetched, @Nullable Throwable ex) {
+    if (ex != null) {
+      Throwable cause = ex instanceof CompletionException && ex.getCause() != null
+          ? ex.getCause() : ex;
+      IOException failure = cause instanceof IOException ? (IOException) cause
+          : new IOException("Transfer was discarded: " + object.getUrl(), cause);
+
+      result.failed.incrementAndGet();
+      this.notifyListeners((l) -> l.onFailed(name, object, failure));
+      return;
+    }
+
+    if (fetched) {
+      result.fetched.incrementAndGet();
+      result.transferredBytes.addAndGet(object.getSize());
+      this.notifyListeners((l) -> l.onFetched(name, object, target));
+    } else {
+      result.skipped.incrementAndGet();
+      this.notifyListeners((l) -> l.onSkipped(name, object, target));
+    }
+  }
+
+  /**
+   * Retrieves an object unless an up to date copy is already present at its target location.
+   *
+   * @return true if the object has been retrieved, false if it has been skipped.
+   */
+  private boolean fetch(@NonNull AssetObject object, @NonNull Path target) throws IOException {
+    if (Files.isRegularFile(target) && Files.size(target) == object.getSize() && (
+        !this.verifyExisting || object.verify(target))) {
+      return false;
+    }
+
+    Files.createDirectories(target.getParent());
+
+    // other installers (or processes) may retrieve the same object at the same time and thus every
+    // transfer receives its own temporary file in order to avoid conflicts
+    Path temporary = Files.createTempFile(target.getParent(), object.getSha1(), ".part");
+
+    try {
+      if (this.retryPolicy != null) {
+        object.fetch(temporary, this.retryPolicy);
+      } else {
+        object.fetch(temporary);
+      }
+
+      if (!object.verify(temporary)) {
+        throw new IOException("Checksum mismatch for " + object.getUrl());
+      }
+
+      Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+
+    return true;
+  }
+
+  /**
+   * Notifies all listeners while isolating them from each other (a failing listener must neither
+   * alter the accounting of an object nor prevent the remaining listeners from being notified).
+   */
+  private void notifyListeners(@NonNull Consumer<Listener> notification) {
+    for (Listener listener : this.listeners) {
+      try {
+        notification.accept(listener);
+      } catch (RuntimeException ignore) {
+      }
+    }
+  }
+
+  /**
+   * Provides a factory for asset installers.
+   */
+  public static final class Builder {
+
+    private final FetchExecutor executor;
+    private final Path objectDirectory;
+    private final List<Listener> listeners = new ArrayList<>();
+    private int window = 64;
+    private boolean verifyExisting;
+    private RetryPolicy retryPolicy;
+
+    private Builder(@NonNull FetchExecutor executor, @NonNull Path objectDirectory) {
+      this.executor = executor;
+      this.objectDirectory = objectDirectory;
+    }
+
+    /**
+     * Constructs a new installer using the configuration within this builder.
+     *
+     * @return an installer.
+     */
+    @NonNull
+    public AssetInstaller build() {
+      return new AssetInstaller(this.executor, this.objectDirectory, this.window,
+          this.verifyExisting, Collections.unmodifiableList(new ArrayList<>(this.listeners)),
+          this.retryPolicy);
+    }
+
+    /**
+     * Registers a listener which is notified about the progress of every object.
+     *
+     * @param listener a listener.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withListener(@NonNull Listener listener) {
+      this.listeners.add(listener);
+      return this;
+    }
+
+    /**
+     * Selects a policy according to which failed transfers are repeated.
+     *
+     * @param retryPolicy a policy or null to fail on the first error.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withRetryPolicy(@Nullable RetryPolicy retryPolicy) {
+      this.retryPolicy = retryPolicy;
+      return this;
+    }
+
+    /**
+     * Selects whether existing files are verified against their checksum before they are skipped
+     * (disabled by default).
+     *
+     * @param verifyExisting true if existing files are to be verified.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withVerification(boolean verifyExisting) {
+      this.verifyExisting = verifyExisting;
+      return this;
+    }
+
+    /**
+     * Selects the maximum amount of objects which may be in flight at the same time.
+     *
+     * @param window an object count.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withWindow(int window) {
+      if (window <= 0) {
+        throw new IllegalArgumentException("Illegal window: Must be positive");
+      }
+
+      this.window = window;
+      return this;
+    }
+  }
+
+  /**
+   * Receives progress notifications for individual asset objects.
+   */
+  public interface Listener {
+
+    /**
+     * Handles an object which has been retrieved and written to its target location.
+     *
+     * @param name an object name.
+     * @param object an asset object.
+     * @param target a target file.
+     */
+    default void onFetched(@NonNull String name, @NonNull AssetObject object,
+        @NonNull Path target) {
+    }
+
+    /**
+     * Handles an object which was already present and has thus been skipped.
+     *
+     * @param name an object name.
+     * @param object an asset object.
+     * @param target a target file.
+     */
+    default void onSkipped(@NonNull String name, @NonNull AssetObject object,
+        @NonNull Path target) {
+    }
+
+    /**
+     * Handles an object which could not be retrieved.
+     *
+     * @param name an object name.
+     * @param object an asset object.
+     * @param ex an exception.
+     */
+    default void onFailed(@NonNull String name, @NonNull AssetObject object,
+        @NonNull IOException ex) {
+    }
+  }
+
+  /**
+   * Provides statistics about a completed installation.
+   */
+  public static final class Result {
+
+    private final AtomicLong fetched = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong transferredBytes = new AtomicLong();
+
+    private Result() {
+    }
+
+    /**
+     * Retrieves the amount of objects which have been retrieved.
+     *
+     * @return an object count.
+     */
+    public long getFetched() {
+      return this.fetched.get();
+    }
+
+    /**
+     * Retrieves the amount of objects which were already present.
+     *
+     * @return an object count.
+     */
+    public long getSkipped() {
+      return this.skipped.get();
+    }
+
+    /**
+     * Retrieves the amount of objects which could not be retrieved.
+     *
+     * @return an object count.
+     */
+    public long getFailed() {
+      return this.failed.get();
+    }
+
+    /**
+     * Retrieves the total amount of bytes which have been retrieved.
+     *
+     * @return a byte count.
+     */
+    public long getTransferredBytes() {
+      return this.transferredBytes.get();
+    }
+
+    /**
+     * Evaluates whether all objects have been installed successfully.
+     *
+     * @return true if successful, false otherwise.
+     */
+    public boolean isSuccessful() {
+      return this.failed.get() == 0;
+    }
+  }
+}
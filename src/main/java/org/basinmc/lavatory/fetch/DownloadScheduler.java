@@ -0,0 +1,581 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.fetch;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import org.basinmc.lavatory.file.Download;
+import org.basinmc.lavatory.file.Transfer;
+
+/**
+ * <p>Coordinates the downloads of multiple concurrent installations.</p>
+ *
+ * <p>Every installation opens its own {@link Session} through which it submits its downloads. The
+ * scheduler dispatches a limited amount of downloads at a time by first selecting the highest
+ * priority for which work is pending and subsequently rotating between all sessions which have
+ * pending work of said priority. As a result, files which are required to launch the game are
+ * retrieved before bulk assets and no single installation may starve the others.</p>
+ *
+ * <p>Concurrent requests for files with the same checksum share a single transfer. When a request
+ * of a higher priority joins a transfer which has not been dispatched yet, the transfer is promoted
+ * to said priority. Optionally, the combined bandwidth of all transfers is limited via a shared
+ * token bucket.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class DownloadScheduler {
+
+  private static final int CHUNK_SIZE = 16384;
+
+  private final FetchExecutor executor;
+  private final int concurrency;
+  private final TokenBucket bucket;
+  private final RetryPolicy retryPolicy;
+
+  private final SingleFlight<String, Path> flights = new SingleFlight<>();
+  private final ReentrantLock lock = new ReentrantLock();
+  private final List<Deque<Session>> ready = new ArrayList<>();
+  private final Map<String, Task> queued = new HashMap<>();
+  private int active;
+
+  private DownloadScheduler(@NonNull FetchExecutor executor, int concurrency,
+      @Nullable TokenBucket bucket, @Nullable RetryPolicy retryPolicy) {
+    this.executor = executor;
+    this.concurrency = concurrency;
+    this.bucket = bucket;
+    this.retryPolicy = retryPolicy;
+
+    for (int i = 0; i < Priority.values().length; ++i) {
+      this.ready.add(new ArrayDeque<>());
+    }
+  }
+
+  /**
+   * Creates a new factory for schedulers which execute their downloads within the specified
+   * executor.
+   *
+   * @param executor an executor.
+   * @return a factory.
+   */
+  @NonNull
+  public static Builder builder(@NonNull FetchExecutor executor) {
+    return new Builder(executor);
+  }
+
+  /**
+   * Opens a new session for an installation.
+   *
+   * @param name a descriptive name.
+   * @return a session.
+   */
+  @NonNull
+  public Session openSession(@NonNull String name) {
+    return new Session(name);
+  }
+
+  /**
+   * Dispatches pending tasks until either the concurrency limit is reached or no more tasks
+   * remain.
+   */
+  private void dispatch() {
+    while (true) {
+      Task task;
+
+      this.lock.lock();
+      try {
+        if (this.active >= this.concurrency) {
+          return;
+        }
+
+        task = this.poll();
+        if (task == null) {
+          return;
+        }
+
+        ++this.active;
+      } finally {
+        this.lock.unlock();
+      }
+
+      // tasks which are rejected or discarded by the executor never reach execute and thus need
+      // to be completed (and their slot released) here
+      this.executor.submit(task.download.getUrl(), () -> {
+        this.execute(task);
+        return null;
+      }).whenComplete((r, ex) -> {
+        if (ex != null) {
+          task.future.completeExceptionally(ex);
+          this.complete();
+        }
+      });
+    }
+  }
+
+  /**
+   * Selects the next task from the session which is next in line for the highest pending
+   * priority (must be called while holding the lock).
+   */
+  @Nullable
+  private Task poll() {
+    for (Priority priority : Priority.values()) {
+      Deque<Session> sessions = this.ready.get(priority.ordinal());
+      Session session = sessions.poll();
+
+      if (session == null) {
+        continue;
+      }
+
+      Deque<Task> queue = session.queues.get(priority.ordinal());
+      Task task = queue.poll();
+
+      if (!queue.isEmpty()) {
+        sessions.add(session);
+      }
+
+      this.queued.remove(task.key, task);
+      return task;
+    }
+
+    return null;
+  }
+
+  /**
+   * Raises a queued transfer to the specified priority unless it has already been dispatched or
+   * is queued with an equal or higher priority.
+   */
+  private void promote(@NonNull String key, @NonNull Priority priority) {
+    this.lock.lock();
+    try {
+      Task task = this.queued.get(key);
+
+      if (task == null || task.priority.compareTo(priority) <= 0) {
+        return;
+      }
+
+      Session session = task.session;
+      Deque<Task> queue = session.queues.get(task.priority.ordinal());
+      queue.remove(task);
+      if (queue.isEmpty()) {
+        this.ready.get(task.priority.ordinal()).remove(session);
+      }
+
+      queue = session.queues.get(priority.ordinal());
+      if (queue.isEmpty()) {
+        this.ready.get(priority.ordinal()).add(session);
+      }
+      queue.add(task);
+
+      task.priority = priority;
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  private void complete() {
+    this.lock.lock();
+    try {
+      --this.active;
+    } finally {
+      this.lock.unlock();
+    }
+
+    this.dispatch();
+  }
+
+  private void execute(@NonNull Task task) {
+    try {
+      if (task.future.isDone()) {
+        return;
+      }
+
+      this.transfer(task.download, task.target);
+      task.future.complete(task.target);
+    } catch (Throwable ex) {
+      task.future.completeExceptionally(ex);
+    } finally {
+      this.complete();
+    }
+  }
+
+  /**
+   * Retrieves a file and moves it into place once its checksum has been verified.
+   */
+  private void transfer(@NonNull Download download, @NonNull Path target) throws IOException {
+    Path parent = target.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+    Path temporary = Files.createTempFile(parent, target.getFileName().toString(), ".part");
+
+    try {
+      if (this.retryPolicy != null) {
+        this.retryPolicy.execute(download.getUrl(),
+            (in) -> this.copy(in, temporary, download.getSize()));
+      } else {
+        try (InputStream inputStream = download.getUrl().openStream()) {
+          this.copy(inputStream, temporary, download.getSize());
+        }
+      }
+
+      if (!download.verify(temporary)) {
+        throw new IOException("Checksum mismatch for " + download.getUrl());
+      }
+
+      Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /**
+   * Copies a previously verified file to another location unless both locations refer to the
+   * same file.
+   */
+  private static void replicate(@NonNull Path source, @NonNull Path target) throws IOException {
+    if (source.toAbsolutePath().normalize().equals(target.toAbsolutePath().normalize())) {
+      return;
+    }
+
+    Path parent = target.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+    Path temporary = Files.createTempFile(parent, target.getFileName().toString(), ".part");
+
+    try {
+      Files.copy(source, temporary, StandardCopyOption.REPLACE_EXISTING);
+      Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  private long copy(@NonNull InputStream inputStream, @NonNull Path target, long size)
+      throws IOException {
+    if (this.bucket != null) {
+      inputStream = new ThrottledInputStream(inputStream, this.bucket);
+    }
+
+    return Transfer.copy(inputStream, target, size);
+  }
+
+  /**
+   * Defines the order in which pending downloads are dispatched.
+   */
+  public enum Priority {
+
+    /**
+     * Files which are required in order to launch the game (such as the client archive and its
+     * libraries).
+     */
+    LAUNCH,
+
+    /**
+     * Files which are required during normal operation but do not block the launch (such as
+     * logger configurations).
+     */
+    NORMAL,
+
+    /**
+     * Bulk files which may be retrieved last (such as assets).
+     */
+    BULK
+  }
+
+  /**
+   * Represents the downloads of a single installation.
+   */
+  public final class Session {
+
+    private final String name;
+    private final List<Deque<Task>> queues = new ArrayList<>();
+
+    private Session(@NonNull String name) {
+      this.name = name;
+
+      for (int i = 0; i < Priority.values().length; ++i) {
+        this.queues.add(new ArrayDeque<>());
+      }
+    }
+
+    @NonNull
+    public String getName() {
+      return this.name;
+    }
+
+    /**
+     * <p>Schedules the retrieval of a file.</p>
+     *
+     * <p>When a file with the same checksum is already being retrieved (by any session of this
+     * scheduler), no additional transfer is scheduled. Instead, the returned future completes
+     * along with the pending transfer and the file is copied to the specified target if it
+     * differs from the target of the pending transfer. If the pending transfer has not been
+     * dispatched yet and was scheduled with a lower priority, it is promoted to the specified
+     * priority.</p>
+     *
+     * @param download a download.
+     * @param target a target file.
+     * @param priority a priority.
+     * @return a future which completes once the file has been written and verified.
+     */
+    @NonNull
+    public CompletableFuture<Path> submit(@NonNull Download download, @NonNull Path target,
+        @NonNull Priority priority) {
+      String key = download.getSha1().toLowerCase(Locale.ROOT);
+      AtomicBoolean leader = new AtomicBoolean();
+      CompletableFuture<Path> flight = DownloadScheduler.this.flights.execute(key, () -> {
+        leader.set(true);
+        return this.enqueue(key, download, target, priority);
+      });
+
+      if (leader.get()) {
+        return flight;
+      }
+
+      DownloadScheduler.this.promote(key, priority);
+
+      return flight.handle((path, failure) -> {
+        if (failure != null) {
+          Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+
+          // the session which initiated the transfer has been cancelled in the meantime thus the
+          // file is scheduled again on behalf of this session
+          if (cause instanceof CancellationException) {
+            return this.submit(download, target, priority);
+          }
+
+          CompletableFuture<Path> future = new CompletableFuture<>();
+          future.completeExceptionally(cause);
+          return future;
+        }
+
+        CompletableFuture<Path> future = new CompletableFuture<>();
+        try {
+          replicate(path, target);
+          future.complete(target);
+        } catch (IOException ex) {
+          future.completeExceptionally(ex);
+        }
+        return future;
+      }).thenCompose(Function.identity());
+    }
+
+    @NonNull
+    private CompletableFuture<Path> enqueue(@NonNull String key, @NonNull Download download,
+        @NonNull Path target, @NonNull Priority priority) {
+      Task task = new Task(key, this, download, target, priority);
+
+      DownloadScheduler.this.lock.lock();
+      try {
+        Deque<Task> queue = this.queues.get(priority.ordinal());
+
+        if (queue.isEmpty()) {
+          DownloadScheduler.this.ready.get(priority.ordinal()).add(this);
+        }
+
+        queue.add(task);
+        DownloadScheduler.this.queued.put(key, task);
+      } finally {
+        DownloadScheduler.this.lock.unlock();
+      }
+
+      DownloadScheduler.this.dispatch();
+      return task.future;
+    }
+
+    /**
+     * Discards all downloads of this session which have not been dispatched yet.
+     *
+     * @return the amount of discarded downloads.
+     */
+    public int cancel() {
+      List<Task> discarded = new ArrayList<>();
+
+      DownloadScheduler.this.lock.lock();
+      try {
+        for (int i = 0; i < this.queues.size(); ++i) {
+          discarded.addAll(this.queues.get(i));
+          this.queues.get(i).clear();
+          DownloadScheduler.this.ready.get(i).remove(this);
+        }
+
+        discarded.forEach((t) -> DownloadScheduler.this.queued.remove(t.key, t));
+      } finally {
+        DownloadScheduler.this.lock.unlock();
+      }
+
+      discarded.forEach((t) -> t.future
+          .completeExceptionally(new CancellationException("Session " + this.name + " cancelled")));
+      return discarded.size();
+    }
+  }
+
+  /**
+   * Represents a single pending download.
+   */
+  private static final class Task {
+
+    private final String key;
+    private final Session session;
+    private final Download download;
+    private final Path target;
+    private final CompletableFuture<Path> future = new CompletableFuture<>();
+
+    // may be raised by a coalesced request and is thus guarded by the scheduler lock
+    private Priority priority;
+
+    private Task(@NonNull String key, @NonNull Session session, @NonNull Download download,
+        @NonNull Path target, @NonNull Priority priority) {
+      this.key = key;
+      this.session = session;
+      this.download = download;
+      this.target = target;
+      this.priority = priority;
+    }
+  }
+
+  /**
+   * Consumes tokens from a shared bucket for every chunk of data which passes through the stream.
+   */
+  private static final class ThrottledInputStream extends FilterInputStream {
+
+    private final TokenBucket bucket;
+
+    private ThrottledInputStream(@NonNull InputStream in, @NonNull TokenBucket bucket) {
+      super(in);
+      this.bucket = bucket;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int value = super.read();
+
+      if (value != -1) {
+        this.bucket.acquire(1);
+      }
+
+      return value;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int length = super.read(b, off, Math.min(len, CHUNK_SIZE));
+
+      if (length > 0) {
+        this.bucket.acquire(length);
+      }
+
+      return length;
+    }
+  }
+
+  /**
+   * Provides a factory for download schedulers.
+   */
+  public static final class Builder {
+
+    private final FetchExecutor executor;
+    private int concurrency = 16;
+    private long rate;
+    private long burst;
+    private RetryPolicy retryPolicy;
+
+    private Builder(@NonNull FetchExecutor executor) {
+      this.executor = executor;
+    }
+
+    /**
+     * Constructs a new scheduler using the configuration within this builder.
+     *
+     * @return a scheduler.
+     */
+    @NonNull
+    public DownloadScheduler build() {
+      TokenBucket bucket = null;
+      if (this.rate > 0) {
+        bucket = new TokenBucket(this.rate, this.burst);
+      }
+
+      return new DownloadScheduler(this.executor, this.concurrency, bucket, this.retryPolicy);
+    }
+
+    /**
+     * Selects the maximum amount of downloads which are in flight at the same time across all
+     * sessions (defaults to 16).
+     *
+     * @param concurrency a download count.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withConcurrency(int concurrency) {
+      if (concurrency <= 0) {
+        throw new IllegalArgumentException("Illegal concurrency: Must be positive");
+      }
+
+      this.concurrency = concurrency;
+      return this;
+    }
+
+    /**
+     * Selects the maximum combined transfer rate of all downloads.
+     *
+     * @param bytesPerSecond a rate in bytes per second or zero to disable the limit.
+     * @param burst the maximum amount of bytes which may be transferred at once after a period of
+     * inactivity.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withRateLimit(long bytesPerSecond, long burst) {
+      if (bytesPerSecond < 0 || burst < 0) {
+        throw new IllegalArgumentException("Illegal rate: Must not be negative");
+      }
+
+      this.rate = bytesPerSecond;
+      this.burst = burst;
+      return this;
+    }
+
+    /**
+     * Selects a policy according to which failed transfers are repeated.
+     *
+     * @param retryPolicy a policy or null to fail on the first error.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withRetryPolicy(@Nullable RetryPolicy retryPolicy) {
+      this.retryPolicy = retryPolicy;
+      return this;
+    }
+  }
+}
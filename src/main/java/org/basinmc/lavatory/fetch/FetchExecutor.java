@@ -0,0 +1,454 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.fetch;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.basinmc.lavatory.file.Download;
+
+/**
+ * <p>Executes bulk fetch operations with a limited amount of concurrent connections per host.</p>
+ *
+ * <p>When running on a JVM which supports virtual threads (Java 21 and newer), every submitted
+ * task is executed within its own virtual thread and thus thousands of blocking downloads may be
+ * in flight without sizing a platform thread pool. On older JVMs, tasks are executed within a
+ * fixed pool of platform threads instead.</p>
+ *
+ * <p>Per-host limits are enforced via per-host queues. Tasks which exceed the limit of their
+ * host are retained within the queue and are only handed to a thread once a previous task for the
+ * same host has completed. As a result, no thread is ever parked while waiting for a host to
+ * become available and tasks for other hosts are dispatched without delay. The I/O itself is
+ * never performed while holding a lock and thus virtual threads are never pinned to their
+ * carrier.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class FetchExecutor implements AutoCloseable {
+
+  private final ExecutorService executor;
+  private final boolean virtual;
+  private final int hostConcurrency;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition idle = this.lock.newCondition();
+  private final Map<String, Host> hosts = new HashMap<>();
+  private long outstanding;
+  private boolean closed;
+
+  private FetchExecutor(@NonNull ExecutorService executor, boolean virtual, int hostConcurrency) {
+    this.executor = executor;
+    this.virtual = virtual;
+    this.hostConcurrency = hostConcurrency;
+  }
+
+  /**
+   * Creates a new empty fetch executor factory.
+   *
+   * @return a factory.
+   */
+  @NonNull
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Evaluates whether the executing JVM supports virtual threads.
+   *
+   * @return true if supported, false otherwise.
+   */
+  public static boolean isVirtualThreadSupported() {
+    return VirtualThreads.FACTORY != null;
+  }
+
+  /**
+   * Evaluates whether this executor runs its tasks within virtual threads.
+   *
+   * @return true if virtual threads are used, false otherwise.
+   */
+  public boolean isVirtual() {
+    return this.virtual;
+  }
+
+  /**
+   * Retrieves the maximum amount of tasks which may access a single host concurrently.
+   *
+   * @return a permit count.
+   */
+  public int getHostConcurrency() {
+    return this.hostConcurrency;
+  }
+
+  /**
+   * Downloads the specified file to the specified target.
+   *
+   * @param download a download.
+   * @param target a target file.
+   * @return a future which completes once the file has been written.
+   */
+  @NonNull
+  public CompletableFuture<Path> fetch(@NonNull Download download, @NonNull Path target) {
+    return this.submit(download.getUrl(), () -> {
+      download.fetch(target);
+      return target;
+    });
+  }
+
+  /**
+   * Executes an arbitrary task which accesses the specified URL once a permit for its host becomes
+   * available.
+   *
+   * @param url a URL.
+   * @param task a task.
+   * @param <T> a result type.
+   * @return a future which completes with the task result or exceptionally when the task is
+   * rejected or discarded due to the executor being closed.
+   */
+  @NonNull
+  public <T> CompletableFuture<T> submit(@NonNull URL url, @NonNull Callable<T> task) {
+    Submission<T> submission = new Submission<>(task);
+
+    try {
+      this.forUrl(url).execute(submission);
+    } catch (RejectedExecutionException ex) {
+      submission.future.completeExceptionally(ex);
+    }
+
+    return submission.future;
+  }
+
+  /**
+   * <p>Retrieves an executor which runs its tasks within this executor while honoring the
+   * connection limit of the host of the specified URL.</p>
+   *
+   * <p>Tasks are rejected with a {@link RejectedExecutionException} once this executor has been
+   * shut down. Tasks which are still queued when the executor is closed are discarded (similarly
+   * to {@link ExecutorService#shutdownNow()}). Callers which need to be notified of every outcome
+   * should use {@link #submit(URL, Callable)} instead.</p>
+   *
+   * @param url a URL.
+   * @return an executor.
+   */
+  @NonNull
+  public Executor forUrl(@NonNull URL url) {
+    String name = url.getHost().toLowerCase(Locale.ROOT);
+
+    return (task) -> {
+      Host host;
+
+      this.lock.lock();
+      try {
+        if (this.closed) {
+          throw new RejectedExecutionException("Executor has been shut down");
+        }
+
+        host = this.hosts.computeIfAbsent(name, (k) -> new Host());
+        host.queue.add(task);
+        ++this.outstanding;
+      } finally {
+        this.lock.unlock();
+      }
+
+      this.dispatch(host);
+    };
+  }
+
+  /**
+   * Hands queued tasks of the specified host to a thread until its connection limit is reached or
+   * its queue has been drained.
+   */
+  private void dispatch(@NonNull Host host) {
+    while (true) {
+      Runnable task;
+
+      this.lock.lock();
+      try {
+        if (host.active >= this.hostConcurrency) {
+          return;
+        }
+
+        task = host.queue.poll();
+        if (task == null) {
+          return;
+        }
+
+        ++host.active;
+      } finally {
+        this.lock.unlock();
+      }
+
+      try {
+        this.executor.execute(() -> this.run(host, task));
+      } catch (RejectedExecutionException ex) {
+        this.release(host);
+        abandon(task, ex);
+      }
+    }
+  }
+
+  private void run(@NonNull Host host, @NonNull Runnable task) {
+    try {
+      task.run();
+    } finally {
+      this.release(host);
+      this.dispatch(host);
+    }
+  }
+
+  private void release(@NonNull Host host) {
+    this.lock.lock();
+    try {
+      --host.active;
+
+      if (--this.outstanding == 0) {
+        this.idle.signalAll();
+      }
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Notifies a task that it will never be executed (if it provides a way of doing so).
+   */
+  private static void abandon(@NonNull Runnable task, @NonNull Throwable cause) {
+    if (task instanceof Submission) {
+      ((Submission<?>) task).future.completeExceptionally(cause);
+    }
+  }
+
+  /**
+   * Stops accepting new tasks and waits for all pending tasks (including those which are still
+   * queued for their host) to complete.
+   *
+   * @param timeout a maximum amount of time to wait.
+   * @param unit the unit of the timeout.
+   * @return true if all tasks have completed, false if the timeout elapsed.
+   * @throws InterruptedException when the calling thread is interrupted while waiting.
+   */
+  public boolean shutdown(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+    long remaining = unit.toNanos(timeout);
+
+    this.lock.lock();
+    try {
+      this.closed = true;
+
+      while (this.outstanding != 0 && remaining > 0) {
+        remaining = this.idle.awaitNanos(remaining);
+      }
+    } finally {
+      this.lock.unlock();
+    }
+
+    this.executor.shutdown();
+    return this.executor.awaitTermination(Math.max(0, remaining), TimeUnit.NANOSECONDS)
+        && remaining > 0;
+  }
+
+  /**
+   * Stops accepting new tasks, interrupts all running tasks and discards all queued tasks.
+   */
+  @Override
+  public void close() {
+    List<Runnable> discarded = new ArrayList<>();
+
+    this.lock.lock();
+    try {
+      this.closed = true;
+
+      for (Host host : this.hosts.values()) {
+        discarded.addAll(host.queue);
+        host.queue.clear();
+      }
+
+      this.outstanding -= discarded.size();
+      if (this.outstanding == 0) {
+        this.idle.signalAll();
+      }
+    } finally {
+      this.lock.unlock();
+    }
+
+    this.executor.shutdownNow();
+
+    CancellationException cause = new CancellationException("Executor has been closed");
+    discarded.forEach((t) -> abandon(t, cause));
+  }
+
+  /**
+   * Provides a factory for fetch executors.
+   */
+  public static final class Builder {
+
+    private int hostConcurrency = 8;
+    private int platformThreads = 32;
+    private boolean virtualThreads = true;
+
+    private Builder() {
+    }
+
+    /**
+     * Constructs a new fetch executor using the configuration within this builder.
+     *
+     * @return an executor.
+     */
+    @NonNull
+    public FetchExecutor build() {
+      if (this.virtualThreads && VirtualThreads.FACTORY != null) {
+        ExecutorService executor = VirtualThreads.create();
+
+        if (executor != null) {
+          return new FetchExecutor(executor, true, this.hostConcurrency);
+        }
+      }
+
+      AtomicInteger counter = new AtomicInteger();
+      ExecutorService executor = Executors.newFixedThreadPool(this.platformThreads, (r) -> {
+        Thread thread = new Thread(r, "lavatory-fetch-" + counter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+
+      return new FetchExecutor(executor, false, this.hostConcurrency);
+    }
+
+    /**
+     * Selects the maximum amount of concurrent tasks per host.
+     *
+     * @param permits a permit count.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withHostConcurrency(int permits) {
+      if (permits <= 0) {
+        throw new IllegalArgumentException("Illegal host concurrency: Must be positive");
+      }
+
+      this.hostConcurrency = permits;
+      return this;
+    }
+
+    /**
+     * Selects the amount of platform threads which are used when virtual threads are unavailable
+     * or disabled.
+     *
+     * @param threads a thread count.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withPlatformThreads(int threads) {
+      if (threads <= 0) {
+        throw new IllegalArgumentException("Illegal thread count: Must be positive");
+      }
+
+      this.platformThreads = threads;
+      return this;
+    }
+
+    /**
+     * Selects whether virtual threads are to be used when supported by the JVM (enabled by
+     * default).
+     *
+     * @param virtualThreads true if virtual threads are to be used.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withVirtualThreads(boolean virtualThreads) {
+      this.virtualThreads = virtualThreads;
+      return this;
+    }
+  }
+
+  /**
+   * Tracks the queued and running tasks of a single host (guarded by the executor lock).
+   */
+  private static final class Host {
+
+    private final Deque<Runnable> queue = new ArrayDeque<>();
+    private int active;
+  }
+
+  /**
+   * Wraps a task along with the future which represents its outcome.
+   */
+  private static final class Submission<T> implements Runnable {
+
+    private final Callable<T> task;
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+
+    private Submission(@NonNull Callable<T> task) {
+      this.task = task;
+    }
+
+    @Override
+    public void run() {
+      try {
+        this.future.complete(this.task.call());
+      } catch (Throwable ex) {
+        this.future.completeExceptionally(ex);
+      }
+    }
+  }
+
+  /**
+   * Provides reflective access to the virtual thread executor as this library still targets Java
+   * versions which do not provide the API.
+   */
+  private static final class VirtualThreads {
+
+    private static final Method FACTORY = find();
+
+    @Nullable
+    private static Method find() {
+      try {
+        return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      } catch (NoSuchMethodException ex) {
+        return null;
+      }
+    }
+
+    @Nullable
+    static ExecutorService create() {
+      try {
+        return (ExecutorService) FACTORY.invoke(null);
+      } catch (IllegalAccessException | InvocationTargetException ex) {
+        return null;
+      }
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.fetch;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Notifies a caller about a server which responded with an unexpected HTTP status code.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class HttpStatusException extends IOException {
+
+  private final URL url;
+  private final int statusCode;
+
+  public HttpStatusException(@NonNull URL url, int statusCode) {
+    super("Server responded with status " + statusCode + " for " + url);
+    this.url = url;
+    this.statusCode = statusCode;
+  }
+
+  /**
+   * Retrieves the status code which has been sent by the server.
+   *
+   * @return a status code.
+   */
+  public int getStatusCode() {
+    return this.statusCode;
+  }
+
+  /**
+   * Retrieves the URL which has been requested.
+   *
+   * @return a url.
+   */
+  @NonNull
+  public URL getUrl() {
+    return this.url;
+  }
+
+  /**
+   * Evaluates whether the status code indicates a temporary condition (such as server errors or
+   * rate limiting) which may be resolved by repeating the request.
+   *
+   * @return true if transient, false otherwise.
+   */
+  public boolean isTransient() {
+    return this.statusCode >= 500 || this.statusCode == 408 || this.statusCode == 429;
+  }
+
+  /**
+   * Evaluates whether the status code indicates that the requested resource does not exist on
+   * the responding server (while it may still be available from another location).
+   *
+   * @return true if not found, false otherwise.
+   */
+  public boolean isNotFound() {
+    return this.statusCode == 404 || this.statusCode == 410;
+  }
+}
@@ -0,0 +1,411 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.fetch;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.NoRouteToHostException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import org.basinmc.lavatory.mirror.MirrorLayout;
+
+/**
+ * <p>Describes how failed transfers are to be repeated.</p>
+ *
+ * <p>Every failed attempt which is deemed retryable (connection failures, timeouts, truncated
+ * responses as well as server errors and rate limiting) is followed by an exponentially growing
+ * delay which is randomly shortened by the configured jitter factor in order to avoid
+ * synchronized retry storms. Subsequent attempts rotate through the configured mirrors (in the
+ * order of their registration) before returning to the original host.</p>
+ *
+ * <p>When a location reports that the resource does not exist (HTTP status 404 or 410), it is
+ * removed from the rotation and the next location is attempted immediately without consuming an
+ * attempt. The error is only reported once every location has been exhausted.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class RetryPolicy {
+
+  private final int maxAttempts;
+  private final Duration initialDelay;
+  private final Duration maxDelay;
+  private final double multiplier;
+  private final double jitter;
+  private final Duration connectTimeout;
+  private final Duration readTimeout;
+  private final List<URL> mirrors;
+
+  private RetryPolicy(int maxAttempts, @NonNull Duration initialDelay, @NonNull Duration maxDelay,
+      double multiplier, double jitter, @NonNull Duration connectTimeout,
+      @NonNull Duration readTimeout, @NonNull List<URL> mirrors) {
+    this.maxAttempts = maxAttempts;
+    this.initialDelay = initialDelay;
+    this.maxDelay = maxDelay;
+    this.multiplier = multiplier;
+    this.jitter = jitter;
+    this.connectTimeout = connectTimeout;
+    this.readTimeout = readTimeout;
+    this.mirrors = mirrors;
+  }
+
+  /**
+   * Creates a new factory for retry policies.
+   *
+   * @return a factory.
+   */
+  @NonNull
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Evaluates whether the specified exception indicates a transient failure which may be resolved
+   * by repeating the operation.
+   *
+   * @param ex an exception.
+   * @return true if retryable, false otherwise.
+   */
+  public static boolean isRetryable(@NonNull IOException ex) {
+    if (ex instanceof HttpStatusException) {
+      return ((HttpStatusException) ex).isTransient();
+    }
+
+    // socket timeouts are a subtype of InterruptedIOException and thus need to be checked first
+    if (ex instanceof SocketTimeoutException) {
+      return true;
+    }
+    if (ex instanceof InterruptedIOException) {
+      return false;
+    }
+
+    return ex instanceof ConnectException
+        || ex instanceof NoRouteToHostException
+        || ex instanceof UnknownHostException
+        || ex instanceof SocketException
+        || ex instanceof EOFException;
+  }
+
+  /**
+   * Retrieves the list of locations from which the specified resource may be retrieved in the
+   * order in which they are attempted.
+   *
+   * @param url an original URL.
+   * @return a list of candidate URLs.
+   * @throws MalformedURLException when a mirror URL cannot be constructed.
+   */
+  @NonNull
+  public List<URL> getCandidates(@NonNull URL url) throws MalformedURLException {
+    List<URL> candidates = new ArrayList<>(this.mirrors.size() + 1);
+    candidates.add(url);
+
+    for (URL mirror : this.mirrors) {
+      candidates.add(MirrorLayout.rewrite(mirror, url));
+    }
+
+    return candidates;
+  }
+
+  /**
+   * Computes the delay before the specified attempt (including jitter).
+   *
+   * @param attempt an attempt index (where the first retry is attempt one).
+   * @return a delay in milliseconds.
+   */
+  long getDelay(int attempt) {
+    double delay = this.initialDelay.toMillis() * Math.pow(this.multiplier, attempt - 1);
+    delay = Math.min(delay, this.maxDelay.toMillis());
+    delay -= delay * this.jitter * ThreadLocalRandom.current().nextDouble();
+
+    return (long) delay;
+  }
+
+  /**
+   * Opens a connection to the specified location using the configured timeouts.
+   *
+   * @param url a url.
+   * @return an input stream.
+   * @throws HttpStatusException when the server responds with an error code.
+   * @throws IOException when establishing the connection fails.
+   */
+  @NonNull
+  public InputStream open(@NonNull URL url) throws IOException {
+    URLConnection connection = url.openConnection();
+    connection.setConnectTimeout((int) Math.min(Integer.MAX_VALUE, this.connectTimeout.toMillis()));
+    connection.setReadTimeout((int) Math.min(Integer.MAX_VALUE, this.readTimeout.toMillis()));
+
+    if (connection instanceof HttpURLConnection) {
+      HttpURLConnection http = (HttpURLConnection) connection;
+      int statusCode = http.getResponseCode();
+
+      if (statusCode >= 400) {
+        http.disconnect();
+        throw new HttpStatusException(url, statusCode);
+      }
+    }
+
+    return connection.getInputStream();
+  }
+
+  /**
+   * Performs an operation on the contents of the specified resource and repeats it on a mirror
+   * or the original host when it fails with a retryable error or is missing from a location.
+   *
+   * @param url an original URL.
+   * @param operation an operation which consumes the resource contents.
+   * @param <T> a result type.
+   * @return the operation result.
+   * @throws IOException when the operation fails with a non-retryable error, the resource is
+   * missing from all locations or all attempts have been exhausted (in which case the errors of
+   * prior attempts are attached as suppressed exceptions).
+   */
+  public <T> T execute(@NonNull URL url, @NonNull Operation<T> operation) throws IOException {
+    List<URL> candidates = this.getCandidates(url);
+    IOException failure = null;
+    boolean delay = false;
+    int index = 0;
+    int attempt = 0;
+
+    while (attempt < this.maxAttempts && !candidates.isEmpty()) {
+      if (delay) {
+        try {
+          Thread.sleep(this.getDelay(attempt));
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+
+          InterruptedIOException interrupted = new InterruptedIOException(
+              "Interrupted while awaiting retry");
+          interrupted.addSuppressed(failure);
+          throw interrupted;
+        }
+      }
+
+      index %= candidates.size();
+      URL candidate = candidates.get(index);
+
+      try (InputStream inputStream = this.open(candidate)) {
+        return operation.apply(inputStream);
+      } catch (IOException ex) {
+        if (failure != null) {
+          ex.addSuppressed(failure);
+        }
+        failure = ex;
+
+        // a missing resource will not appear by asking the same location again but may very well
+        // be present on another mirror (or the origin) and thus we move on without delay
+        if (ex instanceof HttpStatusException && ((HttpStatusException) ex).isNotFound()) {
+          candidates.remove(index);
+          delay = false;
+          continue;
+        }
+
+        if (!isRetryable(ex)) {
+          throw ex;
+        }
+
+        delay = true;
+        ++attempt;
+        ++index;
+      }
+    }
+
+    throw failure;
+  }
+
+  public int getMaxAttempts() {
+    return this.maxAttempts;
+  }
+
+  @NonNull
+  public Duration getConnectTimeout() {
+    return this.connectTimeout;
+  }
+
+  @NonNull
+  public Duration getReadTimeout() {
+    return this.readTimeout;
+  }
+
+  @NonNull
+  public List<URL> getMirrors() {
+    return this.mirrors;
+  }
+
+  /**
+   * Consumes the contents of a remote resource.
+   *
+   * @param <T> a result type.
+   */
+  @FunctionalInterface
+  public interface Operation<T> {
+
+    /**
+     * Consumes the contents of a remote resource.
+     *
+     * @param inputStream a stream of resource contents.
+     * @return an arbitrary result.
+     * @throws IOException when reading the resource fails.
+     */
+    T apply(@NonNull InputStream inputStream) throws IOException;
+  }
+
+  /**
+   * Provides a factory for retry policies.
+   */
+  public static final class Builder {
+
+    private final List<URL> mirrors = new ArrayList<>();
+    private int maxAttempts = 3;
+    private Duration initialDelay = Duration.ofMillis(250);
+    private Duration maxDelay = Duration.ofSeconds(10);
+    private double multiplier = 2;
+    private double jitter = 0.5;
+    private Duration connectTimeout = Duration.ofSeconds(10);
+    private Duration readTimeout = Duration.ofSeconds(30);
+
+    private Builder() {
+    }
+
+    /**
+     * Constructs a new retry policy using the configuration within this builder.
+     *
+     * @return a policy.
+     */
+    @NonNull
+    public RetryPolicy build() {
+      return new RetryPolicy(this.maxAttempts, this.initialDelay, this.maxDelay, this.multiplier,
+          this.jitter, this.connectTimeout, this.readTimeout,
+          Collections.unmodifiableList(new ArrayList<>(this.mirrors)));
+    }
+
+    /**
+     * Selects the delay before the first retry and the factor by which it grows with every
+     * subsequent retry (defaults to 250 milliseconds and a factor of two).
+     *
+     * @param initialDelay an initial delay.
+     * @param multiplier a growth factor.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withBackoff(@NonNull Duration initialDelay, double multiplier) {
+      if (initialDelay.isNegative()) {
+        throw new IllegalArgumentException("Illegal delay: Must not be negative");
+      }
+      if (multiplier < 1) {
+        throw new IllegalArgumentException("Illegal multiplier: Must be at least one");
+      }
+
+      this.initialDelay = initialDelay;
+      this.multiplier = multiplier;
+      return this;
+    }
+
+    /**
+     * Selects the fraction by which delays are randomly shortened (defaults to 0.5).
+     *
+     * @param jitter a factor between zero and one.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withJitter(double jitter) {
+      if (jitter < 0 || jitter > 1) {
+        throw new IllegalArgumentException("Illegal jitter: Must be between zero and one");
+      }
+
+      this.jitter = jitter;
+      return this;
+    }
+
+    /**
+     * Selects the maximum amount of attempts (including the initial attempt) before giving up
+     * (defaults to three).
+     *
+     * @param maxAttempts an attempt count.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withMaxAttempts(int maxAttempts) {
+      if (maxAttempts <= 0) {
+        throw new IllegalArgumentException("Illegal attempt count: Must be positive");
+      }
+
+      this.maxAttempts = maxAttempts;
+      return this;
+    }
+
+    /**
+     * Selects the upper bound for delays between attempts (defaults to ten seconds).
+     *
+     * @param maxDelay a maximum delay.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withMaxDelay(@NonNull Duration maxDelay) {
+      if (maxDelay.isNegative()) {
+        throw new IllegalArgumentException("Illegal delay: Must not be negative");
+      }
+
+      this.maxDelay = maxDelay;
+      return this;
+    }
+
+    /**
+     * Appends a mirror to which subsequent attempts will fail over. Mirrors are expected to
+     * follow the {@link MirrorLayout} (e.g. as served by a mirror server).
+     *
+     * @param baseUrl a mirror base URL.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withMirror(@NonNull URL baseUrl) {
+      this.mirrors.add(baseUrl);
+      return this;
+    }
+
+    /**
+     * Selects the connect and read timeouts for every attempt (defaults to 10 and 30 seconds
+     * respectively).
+     *
+     * @param connectTimeout a connect timeout.
+     * @param readTimeout a read timeout.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withTimeouts(@NonNull Duration connectTimeout, @NonNull Duration readTimeout) {
+      if (connectTimeout.isNegative() || readTimeout.isNegative()) {
+        throw new IllegalArgumentException("Illegal timeout: Must not be negative");
+      }
+
+      this.connectTimeout = connectTimeout;
+      this.readTimeout = readTimeout;
+      return this;
+    }
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.fetch;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * <p>Coalesces concurrent operations which share the same key into a single operation.</p>
+ *
+ * <p>While an operation is in flight, all callers which pass the same key receive the future of
+ * the original operation instead of starting a new one. Once the operation completes (either
+ * normally or exceptionally), its key is released and subsequent calls start a new
+ * operation.</p>
+ *
+ * @param <K> a key type.
+ * @param <V> a result type.
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class SingleFlight<K, V> {
+
+  private final ConcurrentMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+
+  /**
+   * Retrieves the in-flight operation for the specified key or starts a new operation if none is
+   * currently in flight.
+   *
+   * @param key a key.
+   * @param operation a factory which starts the operation.
+   * @return a future which completes with the result of the shared operation.
+   */
+  @NonNull
+  public CompletableFuture<V> execute(@NonNull K key,
+      @NonNull Supplier<CompletableFuture<V>> operation) {
+    CompletableFuture<V> flight = new CompletableFuture<>();
+    CompletableFuture<V> existing = this.flights.putIfAbsent(key, flight);
+
+    if (existing != null) {
+      return existing;
+    }
+
+    try {
+      operation.get().whenComplete((result, ex) -> {
+        // release the key before notifying dependants so that a failed operation may be retried
+        // by its callers right away
+        this.flights.remove(key, flight);
+
+        if (ex != null) {
+          flight.completeExceptionally(ex);
+        } else {
+          flight.complete(result);
+        }
+      });
+    } catch (RuntimeException ex) {
+      this.flights.remove(key, flight);
+      flight.completeExceptionally(ex);
+    }
+
+    return flight;
+  }
+
+  /**
+   * Evaluates whether an operation for the specified key is currently in flight.
+   *
+   * @param key a key.
+   * @return true if in flight, false otherwise.
+   */
+  public boolean isInFlight(@NonNull K key) {
+    return this.flights.containsKey(key);
+  }
+
+  /**
+   * Retrieves the amount of operations which are currently in flight.
+   *
+   * @return an operation count.
+   */
+  public int size() {
+    return this.flights.size();
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.fetch;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>Limits the rate at which bytes are transferred across an arbitrary amount of threads.</p>
+ *
+ * <p>Tokens are replenished continuously at the configured rate up to the bucket capacity. Callers
+ * may overdraw the bucket in which case they (and all subsequent callers) wait until the debt has
+ * been repaid.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class TokenBucket {
+
+  private final long rate;
+  private final long capacity;
+  private final ReentrantLock lock = new ReentrantLock();
+  private double tokens;
+  private long refillTime;
+
+  /**
+   * Creates a new bucket which is initially full.
+   *
+   * @param rate the amount of tokens which are replenished per second.
+   * @param capacity the maximum amount of tokens which may be accumulated.
+   */
+  public TokenBucket(long rate, long capacity) {
+    if (rate <= 0 || capacity < 0) {
+      throw new IllegalArgumentException("Illegal rate: Must be positive");
+    }
+
+    this.rate = rate;
+    this.capacity = capacity;
+    this.tokens = capacity;
+    this.refillTime = System.nanoTime();
+  }
+
+  /**
+   * Consumes the specified amount of tokens and blocks until the bucket is no longer in debt.
+   *
+   * @param amount a token count.
+   * @throws InterruptedIOException when the calling thread is interrupted while waiting.
+   */
+  public void acquire(long amount) throws InterruptedIOException {
+    long delay;
+
+    this.lock.lock();
+    try {
+      long now = System.nanoTime();
+      this.tokens = Math.min(this.capacity,
+          this.tokens + (now - this.refillTime) * this.rate / 1_000_000_000D);
+      this.refillTime = now;
+      this.tokens -= amount;
+
+      delay = this.tokens < 0 ? (long) (-this.tokens * 1_000_000_000D / this.rate) : 0;
+    } finally {
+      this.lock.unlock();
+    }
+
+    if (delay == 0) {
+      return;
+    }
+
+    try {
+      TimeUnit.NANOSECONDS.sleep(delay);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while awaiting bandwidth");
+    }
+  }
+}
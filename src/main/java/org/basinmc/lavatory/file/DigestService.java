@@ -0,0 +1,434 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.file;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.basinmc.lavatory.fetch.TokenBucket;
+
+/**
+ * <p>Computes and verifies file checksums in bulk.</p>
+ *
+ * <p>Message digests and their read buffers are retained within a small shared pool and are reset
+ * and reused for each file instead of being looked up through the security provider framework
+ * every time. The pool is bounded and does not depend on the calling thread, so callers which
+ * spawn a thread per task (such as virtual thread executors) reuse the same few instances rather
+ * than allocating new ones for every file.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class DigestService implements AutoCloseable {
+
+  private static final int BUFFER_SIZE = 65536;
+
+  /**
+   * Defines the maximum amount of idle hashers which are retained within the pool.
+   */
+  private static final int POOL_CAPACITY = 16;
+
+  private static final Queue<Hasher> pool = new ConcurrentLinkedQueue<>();
+  private static final AtomicInteger idle = new AtomicInteger();
+
+  private final ExecutorService executor;
+
+  private final LongAdder files = new LongAdder();
+  private final LongAdder bytes = new LongAdder();
+  private final LongAdder time = new LongAdder();
+
+  private DigestService(@NonNull ExecutorService executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Creates a new empty digest service factory.
+   *
+   * @return a factory.
+   */
+  @NonNull
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Computes the checksum of the specified file using a pooled digest.
+   *
+   * @param path a file.
+   * @return a checksum.
+   * @throws IOException when reading the file fails.
+   * @throws UnsupportedOperationException when the JVM does not support the checksum algorithm.
+   */
+  @NonNull
+  public static byte[] digest(@NonNull Path path) throws IOException {
+    return digest(path, null);
+  }
+
+  /**
+   * Computes the checksum of the specified file using a pooled digest while limiting the rate at
+   * which the file is read.
+   *
+   * @param path a file.
+   * @param bucket a bucket from which every read block is acquired or null to read at full speed.
+   * @return a checksum.
+   * @throws java.io.InterruptedIOException when the calling thread is interrupted while waiting
+   * for the bucket.
+   * @throws IOException when reading the file fails.
+   * @throws UnsupportedOperationException when the JVM does not support the checksum algorithm.
+   */
+  @NonNull
+  public static byte[] digest(@NonNull Path path, @Nullable TokenBucket bucket)
+      throws IOException {
+    Hasher hasher = acquire();
+
+    try {
+      return hasher.digest(path, bucket);
+    } finally {
+      release(hasher);
+    }
+  }
+
+  /**
+   * Computes the checksum of the remaining contents of the specified buffer using a pooled digest
+   * (the buffer position is not modified).
+   *
+   * @param buffer a buffer.
+   * @return a checksum.
+   * @throws UnsupportedOperationException when the JVM does not support the checksum algorithm.
+   */
+  @NonNull
+  public static byte[] digest(@NonNull ByteBuffer buffer) {
+    Hasher hasher = acquire();
+
+    try {
+      hasher.digest.reset();
+      hasher.digest.update(buffer.duplicate());
+      return hasher.digest.digest();
+    } finally {
+      release(hasher);
+    }
+  }
+
+  /**
+   * Retrieves an idle hasher from the pool or creates a new hasher when the pool is empty.
+   */
+  @NonNull
+  private static Hasher acquire() {
+    Hasher hasher = pool.poll();
+
+    if (hasher == null) {
+      return new Hasher();
+    }
+
+    idle.decrementAndGet();
+    return hasher;
+  }
+
+  /**
+   * Returns a hasher to the pool unless the pool has reached its capacity.
+   */
+  private static void release(@NonNull Hasher hasher) {
+    if (idle.incrementAndGet() > POOL_CAPACITY) {
+      idle.decrementAndGet();
+      return;
+    }
+
+    pool.offer(hasher);
+  }
+
+  /**
+   * Evaluates whether the specified file matches the size and checksum of a download.
+   *
+   * @param download a download.
+   * @param path a file.
+   * @return true if matching, false otherwise.
+   * @throws IOException when reading the file fails.
+   */
+  public boolean verify(@NonNull Download download, @NonNull Path path) throws IOException {
+    long start = System.nanoTime();
+
+    try {
+      if (Files.size(path) != download.getSize()) {
+        return false;
+      }
+
+      boolean result = Arrays.equals(download.getSha1Bytes(), digest(path));
+      this.bytes.add(download.getSize());
+      return result;
+    } finally {
+      this.files.increment();
+      this.time.add(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Verifies all specified files in parallel.
+   *
+   * @param files a map of files and their respective downloads.
+   * @return a future which completes once all files have been checked.
+   */
+  @NonNull
+  public CompletableFuture<Result> verify(@NonNull Map<Path, Download> files) {
+    Result result = new Result();
+    List<CompletableFuture<Void>> futures = new ArrayList<>(files.size());
+
+    files.forEach((path, download) -> futures.add(CompletableFuture.runAsync(
+        () -> this.check(download, path, result), this.executor)));
+
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+        .thenApply((v) -> result);
+  }
+
+  private void check(@NonNull Download download, @NonNull Path path, @NonNull Result result) {
+    try {
+      if (this.verify(download, path)) {
+        result.verified.incrementAndGet();
+      } else {
+        result.mismatches.add(path);
+      }
+    } catch (IOException ex) {
+      result.failures.put(path, ex);
+    }
+  }
+
+  /**
+   * Retrieves a snapshot of the statistics which have been collected by this service so far.
+   *
+   * @return a metrics snapshot.
+   */
+  @NonNull
+  public Metrics getMetrics() {
+    return new Metrics(this.files.sum(), this.bytes.sum(), Duration.ofNanos(this.time.sum()));
+  }
+
+  /**
+   * Stops all worker threads.
+   */
+  @Override
+  public void close() {
+    this.executor.shutdownNow();
+  }
+
+  /**
+   * Retains the state of a pooled digest.
+   */
+  private static final class Hasher {
+
+    private final MessageDigest digest;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    Hasher() {
+      try {
+        this.digest = MessageDigest.getInstance(Download.CHECKSUM_ALGORITHM);
+      } catch (NoSuchAlgorithmException ex) {
+        throw new UnsupportedOperationException(
+            "JVM does not support " + Download.CHECKSUM_ALGORITHM + " digest algorithm");
+      }
+    }
+
+    @NonNull
+    byte[] digest(@NonNull Path path, @Nullable TokenBucket bucket) throws IOException {
+      this.digest.reset();
+      this.buffer.clear();
+
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        int length;
+        while ((length = channel.read(this.buffer)) > 0) {
+          if (bucket != null) {
+            bucket.acquire(length);
+          }
+
+          this.buffer.flip();
+          this.digest.update(this.buffer);
+          this.buffer.clear();
+        }
+      }
+
+      return this.digest.digest();
+    }
+  }
+
+  /**
+   * Provides a factory for digest services.
+   */
+  public static final class Builder {
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private Builder() {
+    }
+
+    /**
+     * Constructs a new digest service using the configuration within this builder.
+     *
+     * @return a digest service.
+     */
+    @NonNull
+    public DigestService build() {
+      AtomicInteger counter = new AtomicInteger();
+      ExecutorService executor = Executors.newFixedThreadPool(this.threads, (r) -> {
+        Thread thread = new Thread(r, "lavatory-digest-" + counter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+
+      return new DigestService(executor);
+    }
+
+    /**
+     * Selects the amount of worker threads.
+     *
+     * @param threads a thread count.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withThreads(int threads) {
+      if (threads <= 0) {
+        throw new IllegalArgumentException("Illegal thread count: Must be positive");
+      }
+
+      this.threads = threads;
+      return this;
+    }
+  }
+
+  /**
+   * Provides a snapshot of the amount of data which has been hashed.
+   */
+  public static final class Metrics {
+
+    private final long files;
+    private final long bytes;
+    private final Duration time;
+
+    private Metrics(long files, long bytes, @NonNull Duration time) {
+      this.files = files;
+      this.bytes = bytes;
+      this.time = time;
+    }
+
+    /**
+     * Retrieves the total amount of checked files.
+     *
+     * @return a file count.
+     */
+    public long getFiles() {
+      return this.files;
+    }
+
+    /**
+     * Retrieves the total amount of hashed bytes.
+     *
+     * @return a byte count.
+     */
+    public long getBytes() {
+      return this.bytes;
+    }
+
+    /**
+     * Retrieves the accumulated time which has been spent checking files across all threads.
+     *
+     * @return a duration.
+     */
+    @NonNull
+    public Duration getTime() {
+      return this.time;
+    }
+
+    /**
+     * Retrieves the average amount of bytes which have been hashed per second and thread.
+     *
+     * @return a throughput (in bytes per second).
+     */
+    public double getThroughput() {
+      long nanos = this.time.toNanos();
+      return nanos == 0 ? 0 : this.bytes * 1_000_000_000d / nanos;
+    }
+  }
+
+  /**
+   * Provides the outcome of a bulk verification.
+   */
+  public static final class Result {
+
+    private final AtomicInteger verified = new AtomicInteger();
+    private final Set<Path> mismatches = ConcurrentHashMap.newKeySet();
+    private final Map<Path, IOException> failures = new ConcurrentHashMap<>();
+
+    private Result() {
+    }
+
+    /**
+     * Retrieves the amount of files which matched their expected checksum.
+     *
+     * @return a file count.
+     */
+    public int getVerified() {
+      return this.verified.get();
+    }
+
+    /**
+     * Retrieves the set of files which did not match their expected size or checksum.
+     *
+     * @return a set of files.
+     */
+    @NonNull
+    public Set<Path> getMismatches() {
+      return Collections.unmodifiableSet(this.mismatches);
+    }
+
+    /**
+     * Retrieves the set of files which could not be read.
+     *
+     * @return a map of files and their respective errors.
+     */
+    @NonNull
+    public Map<Path, IOException> getFailures() {
+      return Collections.unmodifiableMap(this.failures);
+    }
+
+    /**
+     * Evaluates whether all files matched their expected checksum.
+     *
+     * @return true if all files matched, false otherwise.
+     */
+    public boolean isSuccessful() {
+      return this.mismatches.isEmpty() && this.failures.isEmpty();
+    }
+  }
+}
@@ -22,17 +22,11 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
-import java.nio.ByteBuffer;
-import java.nio.channels.Channels;
-import java.nio.channels.FileChannel;
-import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.Objects;
+import org.basinmc.lavatory.fetch.RetryPolicy;
 
 /**
  * Represents a downloadable artifact which identifies its location, size and file checksum.
@@ -68,17 +62,24 @@ public class Download {
    * is interrupted or when writing to the file fails.
    */
   public void fetch(@NonNull Path target) throws IOException {
-    try (FileChannel channel = FileChannel
-        .open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
-            StandardOpenOption.TRUNCATE_EXISTING)) {
-      try (InputStream inputStream = this.url.openStream()) {
-        try (ReadableByteChannel inputChannel = Channels.newChannel(inputStream)) {
-          channel.transferFrom(inputChannel, 0, Long.MAX_VALUE);
-        }
-      }
+    try (InputStream inputStream = this.url.openStream()) {
+      Transfer.copy(inputStream, target, this.size);
     }
   }
 
+  /**
+   * Downloads the file from the server (or one of the mirrors of the specified policy) and writes
+   * it to the specified target file while retrying transient failures.
+   *
+   * @param target a target file.
+   * @param policy a retry policy.
+   * @throws IOException when all attempts have failed, a non-retryable error is encountered or
+   * when writing to the file fails.
+   */
+  public void fetch(@NonNull Path target, @NonNull RetryPolicy policy) throws IOException {
+    policy.execute(this.url, (inputStream) -> Transfer.copy(inputStream, target, this.size));
+  }
+
   /**
    * Retrieves a sha1 checksum for the file in its valid state.
    *
@@ -146,28 +147,9 @@ public class Download {
     }
 
     // if above's check succeeded, we'll actually generate a hash for the file itself and compare it
-    // to the expected checksum to make sure the file contents are equal
-    MessageDigest digest;
-
-    try {
-      digest = MessageDigest.getInstance(CHECKSUM_ALGORITHM);
-    } catch (NoSuchAlgorithmException ex) {
-      throw new UnsupportedOperationException(
-          "JVM does not support " + CHECKSUM_ALGORITHM + " digest algorithm");
-    }
-
-    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
-      ByteBuffer heap = ByteBuffer.allocate(512);
-
-      while (channel.read(heap) > 0) {
-        heap.flip();
-        digest.update(heap);
-        heap.clear();
-      }
-
-      byte[] checksum = digest.digest();
-      return Arrays.equals(this.getSha1Bytes(), checksum);
-    }
+    // to the expected checksum to make sure the file contents are equal (the digest is reused
+    // between calls within the same thread)
+    return Arrays.equals(this.getSha1Bytes(), DigestService.digest(path));
   }
 
   /**
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.file;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Represents a parsed Maven style library coordinate (e.g. {@code
+ * org.lwjgl:lwjgl:3.1.6:natives-linux}).
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class LibraryCoordinate {
+
+  private final String groupId;
+  private final String artifactId;
+  private final String version;
+  private final String classifier;
+  private final String extension;
+
+  public LibraryCoordinate(@NonNull String groupId, @NonNull String artifactId,
+      @NonNull String version, @Nullable String classifier, @Nullable String extension) {
+    this.groupId = groupId;
+    this.artifactId = artifactId;
+    this.version = version;
+    this.classifier = classifier;
+    this.extension = extension;
+  }
+
+  /**
+   * <p>Parses a coordinate in its {@code group:artifact:version[:classifier][@extension]}
+   * notation.</p>
+   *
+   * @param coordinate a coordinate string.
+   * @return a parsed coordinate.
+   * @throws IllegalArgumentException when the coordinate is malformed.
+   */
+  @NonNull
+  public static LibraryCoordinate parse(@NonNull String coordinate) {
+    String extension = null;
+    int extensionIndex = coordinate.indexOf('@');
+
+    if (extensionIndex != -1) {
+      extension = coordinate.substring(extensionIndex + 1);
+      coordinate = coordinate.substring(0, extensionIndex);
+    }
+
+    String[] elements = coordinate.split(":", -1);
+    if (elements.length < 3 || elements.length > 4) {
+      throw new IllegalArgumentException("Illegal coordinate: " + coordinate);
+    }
+    for (String element : elements) {
+      if (element.isEmpty()) {
+        throw new IllegalArgumentException("Illegal coordinate: " + coordinate);
+      }
+    }
+    if (extension != null && extension.isEmpty()) {
+      throw new IllegalArgumentException("Illegal coordinate: Empty extension");
+    }
+
+    return new LibraryCoordinate(elements[0], elements[1], elements[2],
+        elements.length == 4 ? elements[3] : null, extension);
+  }
+
+  /**
+   * Creates a copy of this coordinate which refers to the specified classifier.
+   *
+   * @param classifier a classifier or null to refer to the main artifact.
+   * @return a coordinate.
+   */
+  @NonNull
+  public LibraryCoordinate withClassifier(@Nullable String classifier) {
+    return new LibraryCoordinate(this.groupId, this.artifactId, this.version, classifier,
+        this.extension);
+  }
+
+  /**
+   * Retrieves the identifier of the module (e.g. group and artifact) which this coordinate refers
+   * to regardless of its version.
+   *
+   * @return a module identifier.
+   */
+  @NonNull
+  public String getModule() {
+    return this.groupId + ':' + this.artifactId;
+  }
+
+  @NonNull
+  public String getGroupId() {
+    return this.groupId;
+  }
+
+  @NonNull
+  public String getArtifactId() {
+    return this.artifactId;
+  }
+
+  @NonNull
+  public String getVersion() {
+    return this.version;
+  }
+
+  @NonNull
+  public Optional<String> getClassifier() {
+    return Optional.ofNullable(this.classifier);
+  }
+
+  @NonNull
+  public Optional<String> getExtension() {
+    return Optional.ofNullable(this.extension);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || this.getClass() != o.getClass()) {
+      return false;
+    }
+    LibraryCoordinate that = (LibraryCoordinate) o;
+    return Objects.equals(this.groupId, that.groupId) &&
+        Objects.equals(this.artifactId, that.artifactId) &&
+        Objects.equals(this.version, that.version) &&
+        Objects.equals(this.classifier, that.classifier) &&
+        Objects.equals(this.extension, that.extension);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+    return Objects
+        .hash(this.groupId, this.artifactId, this.version, this.classifier, this.extension);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder(this.getModule()).append(':').append(this.version);
+
+    if (this.classifier != null) {
+      builder.append(':').append(this.classifier);
+    }
+    if (this.extension != null) {
+      builder.append('@').append(this.extension);
+    }
+
+    return builder.toString();
+  }
+}
@@ -132,6 +132,17 @@ public class LibraryReference extends AbstractRuleControlledResource implements
     return this.name;
   }
 
+  /**
+   * Parses the identifier of this library reference.
+   *
+   * @return a coordinate.
+   * @throws IllegalArgumentException when the identifier is not a valid coordinate.
+   */
+  @NonNull
+  public LibraryCoordinate getCoordinate() {
+    return LibraryCoordinate.parse(this.name);
+  }
+
   /**
    * Retrieves the artifact which contains the Linux natives for this particular library.
    *
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.file;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Copies streams into files or memory through a shared pool of transfer buffers.</p>
+ *
+ * <p>Data is read from the source stream directly into a pooled array and written to the target in
+ * large blocks, thus avoiding a fresh allocation per transfer as well as the small intermediate
+ * buffer of a stream channel. Note that the file channel still stages every block within its own
+ * temporary direct buffer.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class Transfer {
+
+  /**
+   * Defines the size of every pooled buffer (in bytes).
+   */
+  public static final int BUFFER_SIZE = 131072;
+
+  /**
+   * Defines the maximum amount of idle buffers which are retained within the pool.
+   */
+  private static final int POOL_CAPACITY = 64;
+
+  private static final Queue<byte[]> pool = new ConcurrentLinkedQueue<>();
+  private static final AtomicInteger idle = new AtomicInteger();
+
+  private Transfer() {
+  }
+
+  /**
+   * Copies the contents of a stream into the specified file (replacing any existing contents).
+   *
+   * @param inputStream a source stream.
+   * @param target a target file.
+   * @param size the expected amount of bytes or a negative value when unknown.
+   * @return the amount of transferred bytes.
+   * @throws EOFException when the stream ends before the expected amount of bytes has been
+   * transferred.
+   * @throws IOException when reading from the stream or writing to the file fails.
+   */
+  public static long copy(@NonNull InputStream inputStream, @NonNull Path target, long size)
+      throws IOException {
+    byte[] buffer = acquire();
+
+    try (FileChannel channel = FileChannel
+        .open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      long position = 0;
+      boolean eof = false;
+
+      while (!eof) {
+        int length = 0;
+        while (length < buffer.length) {
+          int read = inputStream.read(buffer, length, buffer.length - length);
+          if (read == -1) {
+            eof = true;
+            break;
+          }
+
+          length += read;
+        }
+
+        ByteBuffer block = ByteBuffer.wrap(buffer, 0, length);
+        while (block.hasRemaining()) {
+          position += channel.write(block, position);
+        }
+      }
+
+      // connections which are closed prematurely simply end the stream and are thus reported
+      // explicitly in order to permit retry policies to repeat the transfer
+      if (size >= 0 && position < size) {
+        throw new EOFException(
+            "Premature end of stream: Expected " + size + " bytes but received " + position);
+      }
+
+      return position;
+    } finally {
+      release(buffer);
+    }
+  }
+
+  /**
+   * Reads the remaining contents of a stream into memory.
+   *
+   * @param inputStream a source stream.
+   * @return the stream contents.
+   * @throws IOException when reading from the stream fails.
+   */
+  @NonNull
+  public static byte[] readFully(@NonNull InputStream inputStream) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream(65536);
+    byte[] buffer = acquire();
+
+    try {
+      int length;
+      while ((length = inputStream.read(buffer)) != -1) {
+        outputStream.write(buffer, 0, length);
+      }
+    } finally {
+      release(buffer);
+    }
+
+    return outputStream.toByteArray();
+  }
+
+  /**
+   * Retrieves an idle buffer from the pool or allocates a new buffer when the pool is empty.
+   */
+  @NonNull
+  private static byte[] acquire() {
+    byte[] buffer = pool.poll();
+
+    if (buffer == null) {
+      return new byte[BUFFER_SIZE];
+    }
+
+    idle.decrementAndGet();
+    return buffer;
+  }
+
+  /**
+   * Returns a buffer to the pool unless the pool has reached its capacity.
+   */
+  private static void release(@NonNull byte[] buffer) {
+    if (idle.incrementAndGet() > POOL_CAPACITY) {
+      idle.decrementAndGet();
+      return;
+    }
+
+    pool.offer(buffer);
+  }
+}
@@ -0,0 +1,472 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.install;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.basinmc.lavatory.file.Download;
+
+/**
+ * <p>Removes libraries and assets which are no longer referenced by any retained installation
+ * from a launcher directory.</p>
+ *
+ * <p>Collection is performed in two phases: First, the installation plans of all versions which
+ * are to be retained are marked. Marks record the checksums of all referenced files as well as
+ * their locations and are thread safe (thus permitting plans to be marked from an arbitrary
+ * amount of threads). Subsequently, the {@code libraries} and {@code assets} directories are
+ * swept in parallel and all unmarked files are deleted along with any directories which are left
+ * empty. Asset objects are addressed by their checksum and are thus retained when any marked
+ * file shares their contents while all remaining files are retained by their location.</p>
+ *
+ * <p>The {@code versions} directory is never swept as it typically contains user managed files
+ * (such as custom version documents and extracted natives).</p>
+ *
+ * <p>Files which have been modified within the configured grace period before the mark was
+ * created (or at any point afterwards) are never deleted. This permits collection to run
+ * alongside an installation which may add new files while the collector is operating.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class InstallCollector {
+
+  /**
+   * Defines the directories (relative to the launcher directory) which are swept.
+   */
+  private static final List<Path> SCOPES = Collections.unmodifiableList(Arrays.asList(
+      Paths.get("libraries"),
+      Paths.get("assets", "indexes"),
+      Paths.get("assets", "log_configs"),
+      Paths.get("assets", "objects")));
+
+  private static final Path OBJECTS = Paths.get("assets", "objects");
+
+  private final Path root;
+  private final int threads;
+  private final Duration gracePeriod;
+  private final boolean dryRun;
+
+  private InstallCollector(@NonNull Path root, int threads, @NonNull Duration gracePeriod,
+      boolean dryRun) {
+    // walked paths are matched against the absolute locations within the mark and thus have to
+    // be absolute as well regardless of how the launcher directory has been specified
+    this.root = root.toAbsolutePath().normalize();
+    this.threads = threads;
+    this.gracePeriod = gracePeriod;
+    this.dryRun = dryRun;
+  }
+
+  /**
+   * Creates a new factory for collectors which operate on the specified launcher directory.
+   *
+   * @param root a launcher directory.
+   * @return a factory.
+   */
+  @NonNull
+  public static Builder builder(@NonNull Path root) {
+    return new Builder(root);
+  }
+
+  /**
+   * Creates a new empty mark.
+   *
+   * @return a mark.
+   */
+  @NonNull
+  public Mark mark() {
+    return new Mark(this.root);
+  }
+
+  /**
+   * Creates a new mark which retains all files of the specified installation plans.
+   *
+   * @param plans an arbitrary amount of plans.
+   * @return a mark.
+   */
+  @NonNull
+  public Mark mark(@NonNull Iterable<InstallPlan> plans) {
+    Mark mark = this.mark();
+    plans.forEach(mark::retain);
+    return mark;
+  }
+
+  /**
+   * Deletes all libraries and assets which are not retained by the specified mark (or merely
+   * reports them when operating in dry run mode).
+   *
+   * @param mark a mark.
+   * @return a collection report.
+   * @throws IOException when the launcher directory cannot be traversed.
+   * @throws InterruptedException when the calling thread is interrupted while awaiting the sweep.
+   */
+  @NonNull
+  public Result sweep(@NonNull Mark mark) throws IOException, InterruptedException {
+    Instant threshold = mark.time.minus(this.gracePeriod);
+    List<Path> candidates = new ArrayList<>();
+
+    for (Path scope : SCOPES) {
+      Path directory = this.root.resolve(scope);
+      if (!Files.isDirectory(directory)) {
+        continue;
+      }
+
+      try (Stream<Path> stream = Files.walk(directory)) {
+        stream
+            .filter((p) -> !mark.isRetained(p))
+            .filter((p) -> isExpired(p, threshold))
+            .forEach(candidates::add);
+      } catch (UncheckedIOException ex) {
+        throw ex.getCause();
+      }
+    }
+
+    AtomicLong reclaimedBytes = new AtomicLong();
+    Map<Path, IOException> failures = new ConcurrentHashMap<>();
+
+    if (this.dryRun) {
+      for (Path candidate : candidates) {
+        reclaimedBytes.addAndGet(Files.size(candidate));
+      }
+
+      return new Result(candidates, reclaimedBytes.get(), failures, true);
+    }
+
+    ExecutorService executor = this.createExecutor();
+    try {
+      List<CompletableFuture<Void>> futures = new ArrayList<>(candidates.size());
+
+      for (Path candidate : candidates) {
+        futures.add(CompletableFuture.runAsync(() -> {
+          try {
+            long size = Files.size(candidate);
+
+            if (Files.deleteIfExists(candidate)) {
+              reclaimedBytes.addAndGet(size);
+            }
+          } catch (IOException ex) {
+            failures.put(candidate, ex);
+          }
+        }, executor));
+      }
+
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+    } catch (ExecutionException ex) {
+      throw new IOException("Failed to sweep launcher directory", ex.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    for (Path scope : SCOPES) {
+      Path directory = this.root.resolve(scope);
+
+      if (Files.isDirectory(directory)) {
+        compact(directory);
+      }
+    }
+
+    List<Path> deleted = candidates.stream()
+        .filter((p) -> !failures.containsKey(p))
+        .collect(Collectors.toList());
+    return new Result(deleted, reclaimedBytes.get(), failures, false);
+  }
+
+  /**
+   * Removes all empty directories below the specified directory (deepest directories first).
+   */
+  private static void compact(@NonNull Path directory) throws IOException {
+    List<Path> directories;
+    try (Stream<Path> stream = Files.walk(directory)) {
+      directories = stream
+          .filter(Files::isDirectory)
+          .filter((p) -> !p.equals(directory))
+          .sorted(Comparator.reverseOrder())
+          .collect(Collectors.toList());
+    }
+
+    for (Path child : directories) {
+      boolean empty;
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(child)) {
+        empty = !stream.iterator().hasNext();
+      }
+
+      if (empty) {
+        try {
+          Files.deleteIfExists(child);
+        } catch (IOException ignore) {
+          // a concurrent installation may have populated the directory in the meantime
+        }
+      }
+    }
+  }
+
+  /**
+   * Evaluates whether the specified path refers to a regular file which has not been modified
+   * since the specified threshold.
+   */
+  private static boolean isExpired(@NonNull Path path, @NonNull Instant threshold) {
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+      return attributes.isRegularFile()
+          && attributes.lastModifiedTime().toInstant().isBefore(threshold);
+    } catch (IOException ex) {
+      return false;
+    }
+  }
+
+  @NonNull
+  private ExecutorService createExecutor() {
+    AtomicInteger counter = new AtomicInteger();
+    return Executors.newFixedThreadPool(this.threads, (r) -> {
+      Thread thread = new Thread(r, "lavatory-collector-install-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Represents the set of files which are to be retained.
+   */
+  public static final class Mark {
+
+    private final Path root;
+    private final Path objects;
+    private final Instant time = Instant.now();
+    private final Set<String> checksums = ConcurrentHashMap.newKeySet();
+    private final Set<Path> paths = ConcurrentHashMap.newKeySet();
+
+    private Mark(@NonNull Path root) {
+      this.root = root.toAbsolutePath().normalize();
+      this.objects = this.root.resolve(OBJECTS);
+    }
+
+    /**
+     * Retains all files of the specified installation plan.
+     *
+     * @param plan a plan.
+     * @return a reference to this mark.
+     */
+    @NonNull
+    public Mark retain(@NonNull InstallPlan plan) {
+      plan.getEntries().forEach(this::retain);
+      return this;
+    }
+
+    /**
+     * Retains the specified file.
+     *
+     * @param entry a plan entry.
+     * @return a reference to this mark.
+     */
+    @NonNull
+    public Mark retain(@NonNull InstallEntry entry) {
+      this.paths.add(this.root.resolve(entry.getPath()).normalize());
+      return this.retain(entry.getDownload());
+    }
+
+    /**
+     * Retains all asset objects which share the contents of the specified download.
+     *
+     * @param download a download.
+     * @return a reference to this mark.
+     */
+    @NonNull
+    public Mark retain(@NonNull Download download) {
+      this.checksums.add(download.getSha1().toLowerCase(Locale.ROOT));
+      return this;
+    }
+
+    /**
+     * Evaluates whether the specified file is retained.
+     *
+     * @param path a path (relative to the launcher directory or absolute).
+     * @return true if retained, false otherwise.
+     */
+    public boolean isRetained(@NonNull Path path) {
+      Path absolute = this.root.resolve(path).toAbsolutePath().normalize();
+
+      if (this.paths.contains(absolute)) {
+        return true;
+      }
+
+      return absolute.startsWith(this.objects) && this.checksums
+          .contains(absolute.getFileName().toString().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Retrieves the amount of retained checksums.
+     *
+     * @return a checksum count.
+     */
+    public int size() {
+      return this.checksums.size();
+    }
+  }
+
+  /**
+   * Provides a factory for collectors.
+   */
+  public static final class Builder {
+
+    private final Path root;
+    private int threads = 4;
+    private Duration gracePeriod = Duration.ofHours(1);
+    private boolean dryRun;
+
+    private Builder(@NonNull Path root) {
+      this.root = root;
+    }
+
+    /**
+     * Constructs a new collector using the configuration within this builder.
+     *
+     * @return a collector.
+     */
+    @NonNull
+    public InstallCollector build() {
+      return new InstallCollector(this.root, this.threads, this.gracePeriod, this.dryRun);
+    }
+
+    /**
+     * Selects whether unreferenced files are merely reported instead of deleted (disabled by
+     * default).
+     *
+     * @param dryRun true if no files are to be deleted.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withDryRun(boolean dryRun) {
+      this.dryRun = dryRun;
+      return this;
+    }
+
+    /**
+     * Selects the period before the creation of a mark within which modified files are retained
+     * regardless of whether they have been marked (defaults to one hour).
+     *
+     * @param gracePeriod a period.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withGracePeriod(@NonNull Duration gracePeriod) {
+      if (gracePeriod.isNegative()) {
+        throw new IllegalArgumentException("Illegal grace period: Must not be negative");
+      }
+
+      this.gracePeriod = gracePeriod;
+      return this;
+    }
+
+    /**
+     * Selects the amount of threads which are used to sweep the launcher directory.
+     *
+     * @param threads a thread count.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withThreads(int threads) {
+      if (threads <= 0) {
+        throw new IllegalArgumentException("Illegal thread count: Must be positive");
+      }
+
+      this.threads = threads;
+      return this;
+    }
+  }
+
+  /**
+   * Represents the result of a sweep.
+   */
+  public static final class Result {
+
+    private final List<Path> deleted;
+    private final long reclaimedBytes;
+    private final Map<Path, IOException> failures;
+    private final boolean dryRun;
+
+    private Result(@NonNull List<Path> deleted, long reclaimedBytes,
+        @NonNull Map<Path, IOException> failures, boolean dryRun) {
+      this.deleted = Collections.unmodifiableList(deleted);
+      this.reclaimedBytes = reclaimedBytes;
+      this.failures = Collections.unmodifiableMap(failures);
+      this.dryRun = dryRun;
+    }
+
+    /**
+     * Retrieves the list of files which have been deleted (or would have been deleted when
+     * operating in dry run mode).
+     *
+     * @return a list of files.
+     */
+    @NonNull
+    public List<Path> getDeleted() {
+      return this.deleted;
+    }
+
+    /**
+     * Retrieves the amount of bytes which have been reclaimed (or would have been reclaimed when
+     * operating in dry run mode).
+     *
+     * @return a byte count.
+     */
+    public long getReclaimedBytes() {
+      return this.reclaimedBytes;
+    }
+
+    /**
+     * Retrieves a map of files which could not be deleted.
+     *
+     * @return a map of files and their respective errors.
+     */
+    @NonNull
+    public Map<Path, IOException> getFailures() {
+      return this.failures;
+    }
+
+    /**
+     * Evaluates whether this result has been produced by a dry run.
+     *
+     * @return true if no files have been deleted, false otherwise.
+     */
+    public boolean isDryRun() {
+      return this.dryRun;
+    }
+  }
+}
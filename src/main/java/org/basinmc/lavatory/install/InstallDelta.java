@@ -0,0 +1,299 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.install;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.basinmc.lavatory.file.Download;
+
+/**
+ * <p>Represents the difference between two installation plans (typically the plans of the
+ * currently installed version and its successor).</p>
+ *
+ * <p>Entries are matched by their relative path. An entry is kept when both plans expect the same
+ * checksum and size at its path (regardless of the URL it is retrieved from), added when its path
+ * is new or its contents have changed and removed when its path is no longer part of the target
+ * plan. Changed files are thus only reported as added as their path is overwritten by the
+ * update.</p>
+ *
+ * <p>New entries whose contents are already present within the source installation (for instance
+ * when a library has merely been relocated) are matched to the respective kept or removed entry by
+ * their checksum and reported as local copies instead of additions.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class InstallDelta {
+
+  private final InstallPlan source;
+  private final InstallPlan target;
+  private final List<InstallEntry> added;
+  private final List<InstallEntry> removed;
+  private final List<InstallEntry> kept;
+  private final List<Copy> copied;
+
+  private InstallDelta(@NonNull InstallPlan source, @NonNull InstallPlan target,
+      @NonNull List<InstallEntry> added, @NonNull List<InstallEntry> removed,
+      @NonNull List<InstallEntry> kept, @NonNull List<Copy> copied) {
+    this.source = source;
+    this.target = target;
+    this.added = Collections.unmodifiableList(added);
+    this.removed = Collections.unmodifiableList(removed);
+    this.kept = Collections.unmodifiableList(kept);
+    this.copied = Collections.unmodifiableList(copied);
+  }
+
+  /**
+   * Computes the changes which are necessary in order to turn an installation of the source plan
+   * into an installation of the target plan.
+   *
+   * @param source the currently installed plan.
+   * @param target the desired plan.
+   * @return a delta.
+   */
+  @NonNull
+  public static InstallDelta compute(@NonNull InstallPlan source, @NonNull InstallPlan target) {
+    Map<Path, InstallEntry> existing = new LinkedHashMap<>(
+        (int) (source.getEntries().size() / 0.75f) + 1);
+    source.getEntries().forEach((e) -> existing.put(e.getPath(), e));
+
+    List<InstallEntry> changed = new ArrayList<>();
+    List<InstallEntry> kept = new ArrayList<>();
+
+    for (InstallEntry entry : target.getEntries()) {
+      InstallEntry previous = existing.remove(entry.getPath());
+
+      if (previous != null && isSameContent(previous.getDownload(), entry.getDownload())) {
+        kept.add(entry);
+      } else {
+        changed.add(entry);
+      }
+    }
+
+    List<InstallEntry> removed = new ArrayList<>(existing.values());
+
+    // only files which remain untouched until the delta is pruned may serve as the source of a
+    // copy as overwritten paths would otherwise need to be copied in a specific order
+    Map<String, InstallEntry> candidates = new HashMap<>(
+        (int) ((kept.size() + removed.size()) / 0.75f) + 1);
+    kept.forEach((e) -> candidates.putIfAbsent(getKey(e), e));
+    removed.forEach((e) -> candidates.putIfAbsent(getKey(e), e));
+
+    List<InstallEntry> added = new ArrayList<>();
+    List<Copy> copied = new ArrayList<>();
+
+    for (InstallEntry entry : changed) {
+      InstallEntry candidate = candidates.get(getKey(entry));
+
+      if (candidate != null && isSameContent(candidate.getDownload(), entry.getDownload())) {
+        copied.add(new Copy(candidate, entry));
+      } else {
+        added.add(entry);
+      }
+    }
+
+    return new InstallDelta(source, target, added, removed, kept, copied);
+  }
+
+  @NonNull
+  private static String getKey(@NonNull InstallEntry entry) {
+    return entry.getDownload().getSha1().toLowerCase(Locale.ROOT);
+  }
+
+  private static boolean isSameContent(@NonNull Download a, @NonNull Download b) {
+    return a.getSize() == b.getSize() && a.getSha1().equalsIgnoreCase(b.getSha1());
+  }
+
+  /**
+   * Retrieves the plan which was used as the basis of this delta.
+   *
+   * @return a plan.
+   */
+  @NonNull
+  public InstallPlan getSource() {
+    return this.source;
+  }
+
+  /**
+   * Retrieves the plan which is reached by applying this delta.
+   *
+   * @return a plan.
+   */
+  @NonNull
+  public InstallPlan getTarget() {
+    return this.target;
+  }
+
+  /**
+   * Retrieves all entries of the target plan which are new or whose contents have changed and
+   * which cannot be copied from the source installation.
+   *
+   * @return a list of entries.
+   */
+  @NonNull
+  public List<InstallEntry> getAdded() {
+    return this.added;
+  }
+
+  /**
+   * Retrieves all entries of the source plan whose paths are not part of the target plan.
+   *
+   * @return a list of entries.
+   */
+  @NonNull
+  public List<InstallEntry> getRemoved() {
+    return this.removed;
+  }
+
+  /**
+   * Retrieves all entries of the target plan which are unchanged.
+   *
+   * @return a list of entries.
+   */
+  @NonNull
+  public List<InstallEntry> getKept() {
+    return this.kept;
+  }
+
+  /**
+   * Retrieves all entries of the target plan which are new or whose contents have changed but
+   * whose contents are already present elsewhere within the source installation.
+   *
+   * @return a list of copies.
+   */
+  @NonNull
+  public List<Copy> getCopied() {
+    return this.copied;
+  }
+
+  /**
+   * Retrieves the total amount of bytes which need to be retrieved in order to apply this delta.
+   *
+   * @return a size in bytes.
+   */
+  public long getTransferSize() {
+    return this.added.stream()
+        .mapToLong((e) -> e.getDownload().getSize())
+        .sum();
+  }
+
+  /**
+   * Evaluates whether both plans consist of identical files.
+   *
+   * @return true if empty, false otherwise.
+   */
+  public boolean isEmpty() {
+    return this.added.isEmpty() && this.removed.isEmpty() && this.copied.isEmpty();
+  }
+
+  /**
+   * Creates a plan which only retrieves the added entries of this delta (for instance in order to
+   * pass it to an {@link Installer}).
+   *
+   * @return a plan.
+   */
+  @NonNull
+  public InstallPlan toPlan() {
+    return new InstallPlan(this.target.getVersionId(), this.added);
+  }
+
+  /**
+   * Copies all matching files of the source installation to their new location within the
+   * specified launcher directory. This method has to be invoked before the delta is pruned.
+   *
+   * @param root a launcher directory.
+   * @return the amount of copied files.
+   * @throws IOException when a source file is missing or copying it fails.
+   */
+  public int copy(@NonNull Path root) throws IOException {
+    for (Copy copy : this.copied) {
+      Path target = root.resolve(copy.target.getPath());
+      Path parent = target.getParent();
+
+      if (parent != null) {
+        Files.createDirectories(parent);
+      }
+
+      Files.copy(root.resolve(copy.source.getPath()), target,
+          StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    return this.copied.size();
+  }
+
+  /**
+   * Deletes all removed entries from the specified launcher directory.
+   *
+   * @param root a launcher directory.
+   * @return the amount of deleted files.
+   * @throws IOException when deleting a file fails.
+   */
+  public int prune(@NonNull Path root) throws IOException {
+    int deleted = 0;
+
+    for (InstallEntry entry : this.removed) {
+      if (Files.deleteIfExists(root.resolve(entry.getPath()))) {
+        ++deleted;
+      }
+    }
+
+    return deleted;
+  }
+
+  /**
+   * Represents a file of the target plan which is copied from a file of the source installation.
+   */
+  public static final class Copy {
+
+    private final InstallEntry source;
+    private final InstallEntry target;
+
+    private Copy(@NonNull InstallEntry source, @NonNull InstallEntry target) {
+      this.source = source;
+      this.target = target;
+    }
+
+    /**
+     * Retrieves the entry of the source installation from which the file is copied.
+     *
+     * @return an entry.
+     */
+    @NonNull
+    public InstallEntry getSource() {
+      return this.source;
+    }
+
+    /**
+     * Retrieves the entry of the target plan which is produced by the copy.
+     *
+     * @return an entry.
+     */
+    @NonNull
+    public InstallEntry getTarget() {
+      return this.target;
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.install;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.nio.file.Path;
+import java.util.Objects;
+import org.basinmc.lavatory.file.Download;
+
+/**
+ * Represents a single file within an installation plan.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class InstallEntry {
+
+  private final InstallPhase phase;
+  private final Path path;
+  private final Download download;
+
+  public InstallEntry(@NonNull InstallPhase phase, @NonNull Path path,
+      @NonNull Download download) {
+    this.phase = phase;
+    this.path = path;
+    this.download = download;
+  }
+
+  /**
+   * Retrieves the phase within which this file is installed.
+   *
+   * @return a phase.
+   */
+  @NonNull
+  public InstallPhase getPhase() {
+    return this.phase;
+  }
+
+  /**
+   * Retrieves the location of this file relative to the launcher directory.
+   *
+   * @return a relative path.
+   */
+  @NonNull
+  public Path getPath() {
+    return this.path;
+  }
+
+  /**
+   * Retrieves the download from which this file is retrieved.
+   *
+   * @return a download.
+   */
+  @NonNull
+  public Download getDownload() {
+    return this.download;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || this.getClass() != o.getClass()) {
+      return false;
+    }
+    InstallEntry that = (InstallEntry) o;
+    return this.phase == that.phase &&
+        Objects.equals(this.path, that.path) &&
+        Objects.equals(this.download, that.download);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+    return Objects.hash(this.phase, this.path, this.download);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    return this.phase + ":" + this.path;
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.install;
+
+/**
+ * Provides a list of installation phases in the order in which they are executed.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public enum InstallPhase {
+
+  /**
+   * The client archive as well as all of its libraries.
+   */
+  CLIENT(true),
+
+  /**
+   * The native libraries for the target operating system.
+   */
+  NATIVES(true),
+
+  /**
+   * The logger configuration.
+   */
+  LOGGING(false),
+
+  /**
+   * The asset index as well as all of its objects.
+   */
+  ASSETS(false);
+
+  private final boolean critical;
+
+  InstallPhase(boolean critical) {
+    this.critical = critical;
+  }
+
+  /**
+   * Evaluates whether the completion of this phase is required in order to launch the game.
+   *
+   * @return true if critical, false otherwise.
+   */
+  public boolean isCritical() {
+    return this.critical;
+  }
+}
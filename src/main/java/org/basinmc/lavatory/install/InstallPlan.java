@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.install;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents an ordered list of files which make up the installation of a game version.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class InstallPlan {
+
+  private final String versionId;
+  private final List<InstallEntry> entries;
+  private final Map<InstallPhase, List<InstallEntry>> phases = new EnumMap<>(InstallPhase.class);
+
+  public InstallPlan(@NonNull String versionId, @NonNull List<InstallEntry> entries) {
+    this.versionId = versionId;
+
+    List<InstallEntry> ordered = new ArrayList<>(entries);
+    ordered.sort((a, b) -> a.getPhase().compareTo(b.getPhase()));
+    this.entries = Collections.unmodifiableList(ordered);
+
+    for (InstallPhase phase : InstallPhase.values()) {
+      this.phases.put(phase, new ArrayList<>());
+    }
+    ordered.forEach((e) -> this.phases.get(e.getPhase()).add(e));
+  }
+
+  /**
+   * Retrieves the identifier of the version which is installed by this plan.
+   *
+   * @return a version identifier.
+   */
+  @NonNull
+  public String getVersionId() {
+    return this.versionId;
+  }
+
+  /**
+   * Retrieves all entries within this plan in the order of their respective phases.
+   *
+   * @return a list of entries.
+   */
+  @NonNull
+  public List<InstallEntry> getEntries() {
+    return this.entries;
+  }
+
+  /**
+   * Retrieves all entries within a given phase in the order in which they are to be installed.
+   *
+   * @param phase a phase.
+   * @return a list of entries.
+   */
+  @NonNull
+  public List<InstallEntry> getEntries(@NonNull InstallPhase phase) {
+    return Collections.unmodifiableList(this.phases.get(phase));
+  }
+
+  /**
+   * Retrieves the total amount of bytes which are retrieved within a given phase.
+   *
+   * @param phase a phase.
+   * @return a size in bytes.
+   */
+  public long getSize(@NonNull InstallPhase phase) {
+    return this.phases.get(phase).stream()
+        .mapToLong((e) -> e.getDownload().getSize())
+        .sum();
+  }
+
+  /**
+   * Retrieves the total amount of bytes which are retrieved by this plan.
+   *
+   * @return a size in bytes.
+   */
+  public long getTotalSize() {
+    return this.entries.stream()
+        .mapToLong((e) -> e.getDownload().getSize())
+        .sum();
+  }
+}
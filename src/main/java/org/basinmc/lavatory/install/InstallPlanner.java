@@ -0,0 +1,222 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.install;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.basinmc.lavatory.ResolverContext;
+import org.basinmc.lavatory.asset.AssetIndex;
+import org.basinmc.lavatory.asset.AssetIndexReference;
+import org.basinmc.lavatory.asset.AssetObject;
+import org.basinmc.lavatory.file.Download;
+import org.basinmc.lavatory.file.LibraryArtifact;
+import org.basinmc.lavatory.file.LibraryReference;
+import org.basinmc.lavatory.file.LoggerConfigurationFile;
+import org.basinmc.lavatory.version.Version;
+
+/**
+ * <p>Creates installation plans for game versions.</p>
+ *
+ * <p>Plans follow the layout of the official launcher directory (e.g. {@code versions/<id>/},
+ * {@code libraries/} and {@code assets/}) and order their files into phases so that all files
+ * which are required to launch the game are retrieved before the remaining files.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class InstallPlanner {
+
+  private final AssetOrder assetOrder;
+
+  private InstallPlanner(@NonNull AssetOrder assetOrder) {
+    this.assetOrder = assetOrder;
+  }
+
+  /**
+   * Creates a new factory for install planners.
+   *
+   * @return a factory.
+   */
+  @NonNull
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Creates an installation plan for the specified version as seen by the specified resolver
+   * context.
+   *
+   * @param version a version.
+   * @param ctx a resolver context which selects the libraries and natives to install.
+   * @param assetIndex an asset index or null if no assets are to be installed.
+   * @return a plan.
+   */
+  @NonNull
+  public InstallPlan plan(@NonNull Version version, @NonNull ResolverContext ctx,
+      @Nullable AssetIndex assetIndex) {
+    Version reduced = version.reduce(ctx);
+    List<InstallEntry> entries = new ArrayList<>();
+    Set<Path> paths = new HashSet<>();
+
+    String id = reduced.getId();
+    add(entries, paths, InstallPhase.CLIENT, Paths.get("versions", id, id + ".jar"),
+        reduced.getClientDownload());
+
+    for (LibraryReference library : reduced.getLibraries()) {
+      library.getDownloads().getArtifact().ifPresent(
+          (a) -> add(entries, paths, InstallPhase.CLIENT,
+              Paths.get("libraries").resolve(a.getPath()), a));
+
+      getNativesArtifact(library, ctx).ifPresent(
+          (a) -> add(entries, paths, InstallPhase.NATIVES,
+              Paths.get("libraries").resolve(a.getPath()), a));
+    }
+
+    reduced.getClientLoggerConfiguration().ifPresent((c) -> {
+      LoggerConfigurationFile file = c.getFile();
+      add(entries, paths, InstallPhase.LOGGING, Paths.get("assets", "log_configs", file.getId()),
+          file);
+    });
+
+    if (assetIndex != null) {
+      AssetIndexReference reference = reduced.getAssetIndex();
+      add(entries, paths, InstallPhase.ASSETS,
+          Paths.get("assets", "indexes", reference.getId() + ".json"), reference);
+
+      List<Map.Entry<String, AssetObject>> objects = new ArrayList<>(
+          assetIndex.getObjects().entrySet());
+      objects.sort(this.assetOrder.comparator);
+
+      for (Map.Entry<String, AssetObject> object : objects) {
+        String hash = object.getValue().getSha1();
+        add(entries, paths, InstallPhase.ASSETS,
+            Paths.get("assets", "objects", hash.substring(0, 2), hash), object.getValue());
+      }
+    }
+
+    return new InstallPlan(id, entries);
+  }
+
+  /**
+   * Appends an entry unless another entry already occupies the same path (such as assets which
+   * share the same contents).
+   */
+  private static void add(@NonNull List<InstallEntry> entries, @NonNull Set<Path> paths,
+      @NonNull InstallPhase phase, @NonNull Path path, @NonNull Download download) {
+    if (paths.add(path)) {
+      entries.add(new InstallEntry(phase, path, download));
+    }
+  }
+
+  @NonNull
+  private static Optional<LibraryArtifact> getNativesArtifact(@NonNull LibraryReference library,
+      @NonNull ResolverContext ctx) {
+    switch (ctx.getOperatingSystem()) {
+      case LINUX:
+        return library.getLinuxNativesArtifact();
+      case MAC_OS:
+        return library.getMacNativesArtifact();
+      case WINDOWS:
+        return library.getWindowsNativesArtifact();
+      default:
+        return Optional.empty();
+    }
+  }
+
+  /**
+   * Provides a list of orders in which assets may be installed.
+   */
+  public enum AssetOrder {
+
+    /**
+     * Installs the smallest objects first thus completing the largest amount of files as early as
+     * possible.
+     */
+    SIZE(Comparator.comparingLong((Map.Entry<String, AssetObject> e) -> e.getValue().getSize())
+        .thenComparing(Map.Entry::getKey)),
+
+    /**
+     * Installs objects by category (languages and textures first, music last) and subsequently
+     * by size.
+     */
+    CATEGORY(Comparator.comparingInt((Map.Entry<String, AssetObject> e) -> rank(e.getKey()))
+        .thenComparingLong((e) -> e.getValue().getSize())
+        .thenComparing(Map.Entry::getKey));
+
+    private final Comparator<Map.Entry<String, AssetObject>> comparator;
+
+    AssetOrder(@NonNull Comparator<Map.Entry<String, AssetObject>> comparator) {
+      this.comparator = comparator;
+    }
+
+    private static int rank(@NonNull String name) {
+      if (name.contains("/lang/") || name.contains("/texts/") || name.contains("/font/")
+          || name.startsWith("icons/")) {
+        return 0;
+      }
+      if (name.contains("/textures/")) {
+        return 1;
+      }
+      if (name.contains("/music/") || name.contains("/records/")) {
+        return 3;
+      }
+
+      return 2;
+    }
+  }
+
+  /**
+   * Provides a factory for install planners.
+   */
+  public static final class Builder {
+
+    private AssetOrder assetOrder = AssetOrder.SIZE;
+
+    private Builder() {
+    }
+
+    /**
+     * Constructs a new planner using the configuration within this builder.
+     *
+     * @return a planner.
+     */
+    @NonNull
+    public InstallPlanner build() {
+      return new InstallPlanner(this.assetOrder);
+    }
+
+    /**
+     * Selects the order in which assets are installed (defaults to {@link AssetOrder#SIZE}).
+     *
+     * @param assetOrder an order.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withAssetOrder(@NonNull AssetOrder assetOrder) {
+      this.assetOrder = assetOrder;
+      return this;
+    }
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.install;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.basinmc.lavatory.fetch.DownloadScheduler;
+import org.basinmc.lavatory.fetch.DownloadScheduler.Priority;
+import org.basinmc.lavatory.fetch.DownloadScheduler.Session;
+import org.basinmc.lavatory.file.Download;
+
+/**
+ * <p>Executes installation plans.</p>
+ *
+ * <p>Files of critical phases are submitted with launch priority while logger configurations and
+ * assets are retrieved once no more critical files are pending. Every file is verified against
+ * its checksum before being moved into place and thus the game may be launched as soon as
+ * {@link Installation#getLaunchable()} completes while assets continue to be retrieved in the
+ * background.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class Installer {
+
+  private final DownloadScheduler scheduler;
+  private final boolean verifyExisting;
+
+  private Installer(@NonNull DownloadScheduler scheduler, boolean verifyExisting) {
+    this.scheduler = scheduler;
+    this.verifyExisting = verifyExisting;
+  }
+
+  /**
+   * Creates a new factory for installers which retrieve their files via the specified scheduler.
+   *
+   * @param scheduler a scheduler.
+   * @return a factory.
+   */
+  @NonNull
+  public static Builder builder(@NonNull DownloadScheduler scheduler) {
+    return new Builder(scheduler);
+  }
+
+  /**
+   * Begins the installation of the specified plan into a launcher directory.
+   *
+   * @param plan a plan.
+   * @param root a launcher directory.
+   * @return a handle which tracks the progress of the installation.
+   */
+  @NonNull
+  public Installation install(@NonNull InstallPlan plan, @NonNull Path root) {
+    Session session = this.scheduler.openSession(plan.getVersionId());
+    Map<InstallPhase, CompletableFuture<Void>> phases = new EnumMap<>(InstallPhase.class);
+
+    for (InstallPhase phase : InstallPhase.values()) {
+      List<CompletableFuture<Path>> futures = new ArrayList<>();
+
+      for (InstallEntry entry : plan.getEntries(phase)) {
+        Path target = root.resolve(entry.getPath());
+
+        if (this.isPresent(entry.getDownload(), target)) {
+          futures.add(CompletableFuture.completedFuture(target));
+        } else {
+          futures.add(session.submit(entry.getDownload(), target, getPriority(phase)));
+        }
+      }
+
+      phases.put(phase, CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])));
+    }
+
+    return new Installation(plan, session, phases);
+  }
+
+  /**
+   * Evaluates whether a valid copy of the specified file is already present.
+   */
+  private boolean isPresent(@NonNull Download download, @NonNull Path target) {
+    try {
+      return Files.isRegularFile(target) && Files.size(target) == download.getSize() && (
+          !this.verifyExisting || download.verify(target));
+    } catch (IOException ex) {
+      return false;
+    }
+  }
+
+  @NonNull
+  private static Priority getPriority(@NonNull InstallPhase phase) {
+    if (phase.isCritical()) {
+      return Priority.LAUNCH;
+    }
+
+    return phase == InstallPhase.ASSETS ? Priority.BULK : Priority.NORMAL;
+  }
+
+  /**
+   * Provides a factory for installers.
+   */
+  public static final class Builder {
+
+    private final DownloadScheduler scheduler;
+    private boolean verifyExisting;
+
+    private Builder(@NonNull DownloadScheduler scheduler) {
+      this.scheduler = scheduler;
+    }
+
+    /**
+     * Constructs a new installer using the configuration within this builder.
+     *
+     * @return an installer.
+     */
+    @NonNull
+    public Installer build() {
+      return new Installer(this.scheduler, this.verifyExisting);
+    }
+
+    /**
+     * Selects whether existing files are verified against their checksum before they are skipped
+     * (disabled by default).
+     *
+     * @param verifyExisting true if existing files are to be verified.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withVerification(boolean verifyExisting) {
+      this.verifyExisting = verifyExisting;
+      return this;
+    }
+  }
+
+  /**
+   * Tracks the progress of a single installation.
+   */
+  public static final class Installation {
+
+    private final InstallPlan plan;
+    private final Session session;
+    private final Map<InstallPhase, CompletableFuture<Void>> phases;
+    private final CompletableFuture<Void> launchable;
+    private final CompletableFuture<Void> completion;
+
+    private Installation(@NonNull InstallPlan plan, @NonNull Session session,
+        @NonNull Map<InstallPhase, CompletableFuture<Void>> phases) {
+      this.plan = plan;
+      this.session = session;
+      this.phases = phases;
+
+      this.launchable = CompletableFuture.allOf(Arrays.stream(InstallPhase.values())
+          .filter(InstallPhase::isCritical)
+          .map(phases::get)
+          .toArray(CompletableFuture[]::new));
+      this.completion = CompletableFuture
+          .allOf(phases.values().toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Discards all files of this installation which have not been retrieved yet.
+     */
+    public void cancel() {
+      this.session.cancel();
+    }
+
+    /**
+     * Retrieves a future which completes once all files of this installation have been installed
+     * and verified.
+     *
+     * @return a future.
+     */
+    @NonNull
+    public CompletableFuture<Void> getCompletion() {
+      return this.completion;
+    }
+
+    /**
+     * Retrieves a future which completes once all files of the critical phases have been installed
+     * and verified and thus the game may be launched.
+     *
+     * @return a future.
+     */
+    @NonNull
+    public CompletableFuture<Void> getLaunchable() {
+      return this.launchable;
+    }
+
+    /**
+     * Retrieves a future which completes once all files of the specified phase have been
+     * installed and verified.
+     *
+     * @param phase a phase.
+     * @return a future.
+     */
+    @NonNull
+    public CompletableFuture<Void> getPhase(@NonNull InstallPhase phase) {
+      return this.phases.get(phase);
+    }
+
+    @NonNull
+    public InstallPlan getPlan() {
+      return this.plan;
+    }
+  }
+}
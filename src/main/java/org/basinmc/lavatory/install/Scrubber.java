@@ -0,0 +1,407 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.install;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.basinmc.lavatory.fetch.RetryPolicy;
+import org.basinmc.lavatory.fetch.TokenBucket;
+import org.basinmc.lavatory.file.DigestService;
+import org.basinmc.lavatory.file.Download;
+
+/**
+ * <p>Re-verifies installed files and repairs corrupted copies.</p>
+ *
+ * <p>Every file of an installation plan is checked against its expected size and checksum while
+ * limiting the rate at which data is read from disk. Files which fail verification are moved to a
+ * quarantine directory (thus preserving them for later inspection) and are subsequently retrieved
+ * again from their original location.</p>
+ *
+ * <p>Scrubbing is a blocking operation which is intended to be executed on a background thread
+ * while the system is otherwise idle.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class Scrubber {
+
+  /**
+   * Defines the amount of bytes which may be read at full speed after an idle period.
+   */
+  private static final int BURST_SIZE = 65536;
+
+  private final TokenBucket bucket;
+  private final Path quarantine;
+  private final boolean repair;
+  private final RetryPolicy retryPolicy;
+  private final List<Listener> listeners;
+
+  private Scrubber(@Nullable TokenBucket bucket, @Nullable Path quarantine, boolean repair,
+      @Nullable RetryPolicy retryPolicy, @NonNull List<Listener> listeners) {
+    this.bucket = bucket;
+    this.quarantine = quarantine;
+    this.repair = repair;
+    this.retryPolicy = retryPolicy;
+    this.listeners = listeners;
+  }
+
+  /**
+   * Creates a new factory for scrubbers.
+   *
+   * @return a factory.
+   */
+  @NonNull
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Verifies all files of the specified plan within the specified launcher directory.
+   *
+   * @param plan an installation plan.
+   * @param root a launcher directory.
+   * @return a scrub report.
+   * @throws InterruptedIOException when the calling thread is interrupted.
+   * @throws IOException when the quarantine directory cannot be created.
+   */
+  @NonNull
+  public Result scrub(@NonNull InstallPlan plan, @NonNull Path root) throws IOException {
+    Path quarantine = this.quarantine != null ? this.quarantine : root.resolve(".quarantine");
+    Result result = new Result();
+
+    for (InstallEntry entry : plan.getEntries()) {
+      if (Thread.currentThread().isInterrupted()) {
+        throw new InterruptedIOException("Interrupted while scrubbing");
+      }
+
+      Path target = root.resolve(entry.getPath());
+      Download download = entry.getDownload();
+
+      try {
+        if (!Files.isRegularFile(target)) {
+          ++result.missing;
+          this.listeners.forEach((l) -> l.onMissing(entry, target));
+        } else if (this.verify(download, target, result)) {
+          ++result.verified;
+          this.listeners.forEach((l) -> l.onVerified(entry, target));
+          continue;
+        } else {
+          Path destination = quarantine.resolve(entry.getPath());
+          Files.createDirectories(destination.getParent());
+          Files.move(target, destination, StandardCopyOption.REPLACE_EXISTING);
+
+          ++result.corrupted;
+          this.listeners.forEach((l) -> l.onCorrupted(entry, target, destination));
+        }
+
+        if (this.repair) {
+          this.fetch(download, target);
+
+          ++result.repaired;
+          this.listeners.forEach((l) -> l.onRepaired(entry, target));
+        }
+      } catch (InterruptedIOException ex) {
+        throw ex;
+      } catch (IOException ex) {
+        result.failures.put(target, ex);
+        this.listeners.forEach((l) -> l.onFailed(entry, target, ex));
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Evaluates whether a file matches the size and checksum of its download while honoring the
+   * configured rate limit.
+   */
+  private boolean verify(@NonNull Download download, @NonNull Path path, @NonNull Result result)
+      throws IOException {
+    if (Files.size(path) != download.getSize()) {
+      return false;
+    }
+
+    byte[] checksum = DigestService.digest(path, this.bucket);
+    result.scannedBytes += download.getSize();
+
+    return Arrays.equals(download.getSha1Bytes(), checksum);
+  }
+
+  /**
+   * Retrieves a fresh copy of a file and moves it into place once its checksum has been
+   * verified.
+   */
+  private void fetch(@NonNull Download download, @NonNull Path target) throws IOException {
+    Files.createDirectories(target.getParent());
+    Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(),
+        ".part");
+
+    try {
+      if (this.retryPolicy != null) {
+        download.fetch(temporary, this.retryPolicy);
+      } else {
+        download.fetch(temporary);
+      }
+
+      if (!download.verify(temporary)) {
+        throw new IOException("Checksum mismatch for " + download.getUrl());
+      }
+
+      Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  /**
+   * Receives progress notifications for individual files.
+   */
+  public interface Listener {
+
+    /**
+     * Handles a file which matches its expected checksum.
+     *
+     * @param entry a plan entry.
+     * @param target a file.
+     */
+    default void onVerified(@NonNull InstallEntry entry, @NonNull Path target) {
+    }
+
+    /**
+     * Handles a file which does not exist.
+     *
+     * @param entry a plan entry.
+     * @param target a file.
+     */
+    default void onMissing(@NonNull InstallEntry entry, @NonNull Path target) {
+    }
+
+    /**
+     * Handles a file which failed verification and has been moved to the quarantine directory.
+     *
+     * @param entry a plan entry.
+     * @param target a file.
+     * @param quarantine the quarantined copy.
+     */
+    default void onCorrupted(@NonNull InstallEntry entry, @NonNull Path target,
+        @NonNull Path quarantine) {
+    }
+
+    /**
+     * Handles a missing or corrupted file which has been retrieved again.
+     *
+     * @param entry a plan entry.
+     * @param target a file.
+     */
+    default void onRepaired(@NonNull InstallEntry entry, @NonNull Path target) {
+    }
+
+    /**
+     * Handles a file which could not be verified or repaired.
+     *
+     * @param entry a plan entry.
+     * @param target a file.
+     * @param ex an exception.
+     */
+    default void onFailed(@NonNull InstallEntry entry, @NonNull Path target,
+        @NonNull IOException ex) {
+    }
+  }
+
+  /**
+   * Provides a factory for scrubbers.
+   */
+  public static final class Builder {
+
+    private final List<Listener> listeners = new ArrayList<>();
+    private long rate;
+    private Path quarantine;
+    private boolean repair = true;
+    private RetryPolicy retryPolicy;
+
+    private Builder() {
+    }
+
+    /**
+     * Constructs a new scrubber using the configuration within this builder.
+     *
+     * @return a scrubber.
+     */
+    @NonNull
+    public Scrubber build() {
+      TokenBucket bucket = this.rate > 0 ? new TokenBucket(this.rate, BURST_SIZE) : null;
+      return new Scrubber(bucket, this.quarantine, this.repair, this.retryPolicy,
+          Collections.unmodifiableList(new ArrayList<>(this.listeners)));
+    }
+
+    /**
+     * Registers a listener which is notified about the progress of every file.
+     *
+     * @param listener a listener.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withListener(@NonNull Listener listener) {
+      this.listeners.add(listener);
+      return this;
+    }
+
+    /**
+     * Selects the directory to which corrupted files are moved (defaults to {@code .quarantine}
+     * within the launcher directory).
+     *
+     * @param quarantine a directory or null to use the default location.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withQuarantine(@Nullable Path quarantine) {
+      this.quarantine = quarantine;
+      return this;
+    }
+
+    /**
+     * Selects the maximum rate at which files are read from disk.
+     *
+     * @param bytesPerSecond a rate in bytes per second or zero to disable the limit.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withRateLimit(long bytesPerSecond) {
+      if (bytesPerSecond < 0) {
+        throw new IllegalArgumentException("Illegal rate: Must not be negative");
+      }
+
+      this.rate = bytesPerSecond;
+      return this;
+    }
+
+    /**
+     * Selects whether missing and corrupted files are retrieved again (enabled by default).
+     *
+     * @param repair true if files are to be repaired.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withRepair(boolean repair) {
+      this.repair = repair;
+      return this;
+    }
+
+    /**
+     * Selects a policy according to which failed transfers are repeated.
+     *
+     * @param retryPolicy a policy or null to fail on the first error.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withRetryPolicy(@Nullable RetryPolicy retryPolicy) {
+      this.retryPolicy = retryPolicy;
+      return this;
+    }
+  }
+
+  /**
+   * Provides statistics about a completed scrub.
+   */
+  public static final class Result {
+
+    private final Map<Path, IOException> failures = new LinkedHashMap<>();
+    private int verified;
+    private int missing;
+    private int corrupted;
+    private int repaired;
+    private long scannedBytes;
+
+    private Result() {
+    }
+
+    /**
+     * Retrieves the amount of files which matched their expected checksum.
+     *
+     * @return a file count.
+     */
+    public int getVerified() {
+      return this.verified;
+    }
+
+    /**
+     * Retrieves the amount of files which did not exist.
+     *
+     * @return a file count.
+     */
+    public int getMissing() {
+      return this.missing;
+    }
+
+    /**
+     * Retrieves the amount of files which failed verification and have been quarantined.
+     *
+     * @return a file count.
+     */
+    public int getCorrupted() {
+      return this.corrupted;
+    }
+
+    /**
+     * Retrieves the amount of files which have been retrieved again.
+     *
+     * @return a file count.
+     */
+    public int getRepaired() {
+      return this.repaired;
+    }
+
+    /**
+     * Retrieves the total amount of bytes which have been read for verification.
+     *
+     * @return a byte count.
+     */
+    public long getScannedBytes() {
+      return this.scannedBytes;
+    }
+
+    /**
+     * Retrieves a map of files which could not be verified or repaired.
+     *
+     * @return a map of files and their respective errors.
+     */
+    @NonNull
+    public Map<Path, IOException> getFailures() {
+      return Collections.unmodifiableMap(this.failures);
+    }
+
+    /**
+     * Evaluates whether all files are intact (or have been repaired).
+     *
+     * @return true if intact, false otherwise.
+     */
+    public boolean isHealthy() {
+      return this.failures.isEmpty() && this.missing + this.corrupted == this.repaired;
+    }
+  }
+}
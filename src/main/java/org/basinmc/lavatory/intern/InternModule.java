@@ -0,0 +1,145 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.intern;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.KeyDeserializer;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerModifier;
+import com.fasterxml.jackson.databind.deser.std.DelegatingDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StringDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.basinmc.lavatory.file.LibraryArtifact;
+import org.basinmc.lavatory.file.LibraryReference;
+import org.basinmc.lavatory.rule.system.OperatingSystemCondition;
+import org.basinmc.lavatory.version.ProgramArgument;
+
+/**
+ * <p>Deduplicates decoded values via an intern pool.</p>
+ *
+ * <p>All strings (including map keys) are replaced with their canonical instances. Additionally,
+ * library references, library artifacts, operating system conditions (along with their version
+ * patterns) and program arguments are canonicalized thus permitting identical definitions to be
+ * shared between all versions which are decoded through the same pool.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class InternModule extends SimpleModule {
+
+  private static final Set<Class<?>> CANONICAL_TYPES = Collections.unmodifiableSet(
+      new HashSet<>(Arrays.asList(LibraryArtifact.class, LibraryReference.class,
+          OperatingSystemCondition.class, ProgramArgument.class)));
+
+  private final InternPool pool;
+
+  public InternModule(@NonNull InternPool pool) {
+    super("lavatory-intern");
+    this.pool = pool;
+
+    this.addDeserializer(String.class, new InterningStringDeserializer(pool));
+    this.addKeyDeserializer(String.class, new InterningKeyDeserializer(pool));
+    this.setDeserializerModifier(new BeanDeserializerModifier() {
+      @Override
+      public JsonDeserializer<?> modifyDeserializer(DeserializationConfig config,
+          BeanDescription beanDesc, JsonDeserializer<?> deserializer) {
+        if (CANONICAL_TYPES.contains(beanDesc.getBeanClass())) {
+          return new InterningDeserializer(pool, deserializer);
+        }
+
+        return deserializer;
+      }
+    });
+  }
+
+  /**
+   * Retrieves the pool which is used by this module.
+   *
+   * @return a pool.
+   */
+  @NonNull
+  public InternPool getPool() {
+    return this.pool;
+  }
+
+  /**
+   * Replaces decoded strings with their canonical instances.
+   */
+  private static final class InterningStringDeserializer extends StdScalarDeserializer<String> {
+
+    private final InternPool pool;
+
+    private InterningStringDeserializer(@NonNull InternPool pool) {
+      super(String.class);
+      this.pool = pool;
+    }
+
+    @Override
+    public String deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+      return this.pool.intern(StringDeserializer.instance.deserialize(p, ctxt));
+    }
+  }
+
+  /**
+   * Replaces decoded map keys with their canonical instances.
+   */
+  private static final class InterningKeyDeserializer extends KeyDeserializer {
+
+    private final InternPool pool;
+
+    private InterningKeyDeserializer(@NonNull InternPool pool) {
+      this.pool = pool;
+    }
+
+    @Override
+    public Object deserializeKey(String key, DeserializationContext ctxt) {
+      return this.pool.intern(key);
+    }
+  }
+
+  /**
+   * Replaces decoded objects with their canonical instances.
+   */
+  private static final class InterningDeserializer extends DelegatingDeserializer {
+
+    private final InternPool pool;
+
+    private InterningDeserializer(@NonNull InternPool pool, @NonNull JsonDeserializer<?> delegate) {
+      super(delegate);
+      this.pool = pool;
+    }
+
+    @Override
+    protected JsonDeserializer<?> newDelegatingInstance(JsonDeserializer<?> newDelegatee) {
+      return new InterningDeserializer(this.pool, newDelegatee);
+    }
+
+    @Override
+    public Object deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+      return this.pool.intern(this._delegatee.deserialize(p, ctxt));
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.intern;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>Provides a bounded pool of canonical object instances.</p>
+ *
+ * <p>The pool is organized as a fixed size table which is divided into sets of four slots. Every
+ * value may occupy any slot within the set which is selected by its hash code. When all slots of
+ * a set are occupied by distinct values, a randomly selected slot is replaced. As a result, the
+ * memory consumed by the pool itself never exceeds its capacity while frequently repeated values
+ * (such as library names, argument placeholders and main classes) are reliably deduplicated even
+ * when their hash codes collide with other values. Lookups are lock free and may be performed
+ * from an arbitrary amount of threads.</p>
+ *
+ * <p>Only immutable values with consistent implementations of {@link Object#equals(Object)} and
+ * {@link Object#hashCode()} may be pooled.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class InternPool {
+
+  private static final int WAYS = 4;
+
+  private final AtomicReferenceArray<Object> slots;
+  private final int mask;
+  private final int ways;
+
+  /**
+   * Creates a new pool with the specified capacity.
+   *
+   * @param capacity a capacity (which is rounded up to the next power of two).
+   */
+  public InternPool(int capacity) {
+    if (capacity <= 0 || capacity > (1 << 30)) {
+      throw new IllegalArgumentException("Illegal capacity: Must be between 1 and 2^30");
+    }
+
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+
+    this.slots = new AtomicReferenceArray<>(size);
+    this.ways = Math.min(WAYS, size);
+    this.mask = (size - 1) & ~(this.ways - 1);
+  }
+
+  /**
+   * Creates a new pool with a capacity of 16384 values.
+   */
+  public InternPool() {
+    this(16384);
+  }
+
+  /**
+   * Retrieves the canonical instance for the specified value.
+   *
+   * @param value a value.
+   * @param <T> a value type.
+   * @return the canonical instance or the value itself if no equal value is pooled.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T intern(@Nullable T value) {
+    if (value == null) {
+      return null;
+    }
+
+    int hash = value.hashCode();
+    int base = (hash ^ (hash >>> 16)) & this.mask;
+    int free = -1;
+
+    for (int i = base; i < base + this.ways; ++i) {
+      Object existing = this.slots.get(i);
+
+      if (existing == null) {
+        if (free == -1) {
+          free = i;
+        }
+      } else if (existing.getClass() == value.getClass() && existing.equals(value)) {
+        return (T) existing;
+      }
+    }
+
+    if (free == -1) {
+      free = base + ThreadLocalRandom.current().nextInt(this.ways);
+    }
+
+    this.slots.lazySet(free, value);
+    return value;
+  }
+
+  /**
+   * Retrieves the amount of values which may be pooled at most.
+   *
+   * @return a capacity.
+   */
+  public int getCapacity() {
+    return this.slots.length();
+  }
+
+  /**
+   * Creates a new object mapper which deduplicates all decoded strings and metadata objects
+   * using this pool.
+   *
+   * @return an object mapper.
+   */
+  @NonNull
+  public ObjectMapper createMapper() {
+    ObjectMapper mapper = new ObjectMapper();
+    mapper.findAndRegisterModules();
+    mapper.registerModule(new InternModule(this));
+    return mapper;
+  }
+}
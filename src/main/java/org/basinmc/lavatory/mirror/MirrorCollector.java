@@ -0,0 +1,509 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.mirror;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.basinmc.lavatory.Manifest;
+import org.basinmc.lavatory.asset.AssetIndex;
+import org.basinmc.lavatory.asset.AssetIndexReference;
+import org.basinmc.lavatory.file.Download;
+import org.basinmc.lavatory.file.LibraryReference;
+import org.basinmc.lavatory.version.Version;
+import org.basinmc.lavatory.version.VersionReference;
+
+/**
+ * <p>Removes files which are no longer referenced from a mirror store.</p>
+ *
+ * <p>Collection is performed in two phases: First, all files which are to be retained are marked
+ * (either individually or by marking an entire manifest along with all of its locally stored
+ * versions and asset indices). Marks are thread safe and may thus be populated from an arbitrary
+ * amount of threads. Subsequently, the store is swept in parallel and all unmarked files are
+ * deleted along with any directories which are left empty.</p>
+ *
+ * <p>Files which have been modified within the configured grace period before the mark was
+ * created (or at any point afterwards) are never deleted. This permits collection to run
+ * alongside a synchronization which may add new files while the collector is operating.</p>
+ *
+ * <p>Local launcher directories are collected via {@link
+ * org.basinmc.lavatory.install.InstallCollector} instead.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class MirrorCollector {
+
+  private final MirrorLayout layout;
+  private final int threads;
+  private final Duration gracePeriod;
+  private final boolean dryRun;
+
+  private MirrorCollector(@NonNull MirrorLayout layout, int threads,
+      @NonNull Duration gracePeriod, boolean dryRun) {
+    this.layout = layout;
+    this.threads = threads;
+    this.gracePeriod = gracePeriod;
+    this.dryRun = dryRun;
+  }
+
+  /**
+   * Creates a new factory for collectors which operate on the specified store.
+   *
+   * @param layout a mirror layout.
+   * @return a factory.
+   */
+  @NonNull
+  public static Builder builder(@NonNull MirrorLayout layout) {
+    return new Builder(layout);
+  }
+
+  /**
+   * Creates a new empty mark.
+   *
+   * @return a mark.
+   */
+  @NonNull
+  public Mark mark() {
+    return new Mark(this.layout);
+  }
+
+  /**
+   * Creates a new mark which retains the specified manifest as well as all of its versions and
+   * their respective files (as far as their documents are present within the store).
+   *
+   * @param manifest a manifest.
+   * @return a mark.
+   * @throws IOException when a stored version or asset index cannot be decoded.
+   * @throws InterruptedException when the calling thread is interrupted while awaiting the mark.
+   */
+  @NonNull
+  public Mark mark(@NonNull Manifest manifest) throws IOException, InterruptedException {
+    Mark mark = this.mark();
+    mark.retain(new URL(Manifest.MANIFEST_URL));
+
+    ExecutorService executor = this.createExecutor("mark");
+    try {
+      List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+      for (VersionReference reference : manifest.getVersions()) {
+        futures.add(CompletableFuture.runAsync(() -> {
+          try {
+            this.markVersion(mark, reference);
+          } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+          }
+        }, executor));
+      }
+
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof UncheckedIOException) {
+        throw ((UncheckedIOException) ex.getCause()).getCause();
+      }
+
+      throw new IOException("Failed to mark manifest", ex.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    return mark;
+  }
+
+  private void markVersion(@NonNull Mark mark, @NonNull VersionReference reference)
+      throws IOException {
+    mark.retain(reference.getUrl());
+
+    Path document = this.layout.resolve(reference.getUrl());
+    if (!Files.isRegularFile(document)) {
+      return;
+    }
+
+    Version version = Version.read(document);
+    mark.retain(version);
+
+    Path index = this.layout.resolve(version.getAssetIndex());
+    if (Files.isRegularFile(index)) {
+      mark.retain(AssetIndex.read(index));
+    }
+  }
+
+  /**
+   * Deletes all files which are not retained by the specified mark (or merely reports them when
+   * operating in dry run mode).
+   *
+   * @param mark a mark.
+   * @return a collection report.
+   * @throws IOException when the store cannot be traversed.
+   * @throws InterruptedException when the calling thread is interrupted while awaiting the sweep.
+   */
+  @NonNull
+  public Result sweep(@NonNull Mark mark) throws IOException, InterruptedException {
+    Instant threshold = mark.time.minus(this.gracePeriod);
+    Path root = this.layout.getRoot();
+
+    List<Path> candidates;
+    try (Stream<Path> stream = Files.walk(root)) {
+      candidates = stream
+          .filter((p) -> !mark.paths.contains(p))
+          .filter((p) -> isExpired(p, threshold))
+          .collect(Collectors.toList());
+    } catch (UncheckedIOException ex) {
+      throw ex.getCause();
+    }
+
+    AtomicLong reclaimedBytes = new AtomicLong();
+    Map<Path, IOException> failures = new ConcurrentHashMap<>();
+
+    if (this.dryRun) {
+      for (Path candidate : candidates) {
+        reclaimedBytes.addAndGet(Files.size(candidate));
+      }
+
+      return new Result(candidates, reclaimedBytes.get(), failures, true);
+    }
+
+    ExecutorService executor = this.createExecutor("sweep");
+    try {
+      List<CompletableFuture<Void>> futures = new ArrayList<>(candidates.size());
+
+      for (Path candidate : candidates) {
+        futures.add(CompletableFuture.runAsync(() -> {
+          try {
+            long size = Files.size(candidate);
+
+            if (Files.deleteIfExists(candidate)) {
+              reclaimedBytes.addAndGet(size);
+            }
+          } catch (IOException ex) {
+            failures.put(candidate, ex);
+          }
+        }, executor));
+      }
+
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+    } catch (ExecutionException ex) {
+      throw new IOException("Failed to sweep store", ex.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    this.compact(root);
+
+    List<Path> deleted = candidates.stream()
+        .filter((p) -> !failures.containsKey(p))
+        .collect(Collectors.toList());
+    return new Result(deleted, reclaimedBytes.get(), failures, false);
+  }
+
+  /**
+   * Removes all empty directories below the specified root (deepest directories first).
+   */
+  private void compact(@NonNull Path root) throws IOException {
+    List<Path> directories;
+    try (Stream<Path> stream = Files.walk(root)) {
+      directories = stream
+          .filter(Files::isDirectory)
+          .filter((p) -> !p.equals(root))
+          .sorted(Comparator.reverseOrder())
+          .collect(Collectors.toList());
+    }
+
+    for (Path directory : directories) {
+      boolean empty;
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+        empty = !stream.iterator().hasNext();
+      }
+
+      if (empty) {
+        try {
+          Files.deleteIfExists(directory);
+        } catch (IOException ignore) {
+          // a concurrent synchronization may have populated the directory in the meantime
+        }
+      }
+    }
+  }
+
+  /**
+   * Evaluates whether the specified path refers to a regular file which has not been modified
+   * since the specified threshold.
+   */
+  private static boolean isExpired(@NonNull Path path, @NonNull Instant threshold) {
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+      return attributes.isRegularFile()
+          && attributes.lastModifiedTime().toInstant().isBefore(threshold);
+    } catch (IOException ex) {
+      return false;
+    }
+  }
+
+  @NonNull
+  private ExecutorService createExecutor(@NonNull String stage) {
+    AtomicInteger counter = new AtomicInteger();
+    return Executors.newFixedThreadPool(this.threads, (r) -> {
+      Thread thread = new Thread(r, "lavatory-collector-" + stage + "-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Represents the set of files which are to be retained.
+   */
+  public static final class Mark {
+
+    private final MirrorLayout layout;
+    private final Instant time = Instant.now();
+    private final Set<Path> paths = ConcurrentHashMap.newKeySet();
+
+    private Mark(@NonNull MirrorLayout layout) {
+      this.layout = layout;
+    }
+
+    /**
+     * Retains the file which is stored for the specified original URL.
+     *
+     * @param url an original URL.
+     * @return a reference to this mark.
+     */
+    @NonNull
+    public Mark retain(@NonNull URL url) {
+      this.paths.add(this.layout.resolve(url));
+      return this;
+    }
+
+    /**
+     * Retains the specified download.
+     *
+     * @param download a download.
+     * @return a reference to this mark.
+     */
+    @NonNull
+    public Mark retain(@NonNull Download download) {
+      return this.retain(download.getUrl());
+    }
+
+    /**
+     * Retains all objects within the specified asset index.
+     *
+     * @param index an asset index.
+     * @return a reference to this mark.
+     */
+    @NonNull
+    public Mark retain(@NonNull AssetIndex index) {
+      index.getObjects().values().forEach(this::retain);
+      return this;
+    }
+
+    /**
+     * Retains all files which are referenced by the specified version (regardless of their
+     * rules) including its asset index (but not the objects within the index).
+     *
+     * @param version a version.
+     * @return a reference to this mark.
+     */
+    @NonNull
+    public Mark retain(@NonNull Version version) {
+      AssetIndexReference assetIndex = version.getAssetIndex();
+
+      this.retain(version.getClientDownload());
+      version.getServerDownload().ifPresent(this::retain);
+      version.getWindowsServerDownload().ifPresent(this::retain);
+      version.getClientLoggerConfiguration().ifPresent((c) -> this.retain(c.getFile()));
+      this.retain((Download) assetIndex);
+
+      for (LibraryReference library : version.getLibraries()) {
+        library.getDownloads().getArtifact().ifPresent(this::retain);
+        library.getDownloads().getClassifiers().values().forEach(this::retain);
+      }
+
+      return this;
+    }
+
+    /**
+     * Evaluates whether the file which is stored for the specified original URL is retained.
+     *
+     * @param url an original URL.
+     * @return true if retained, false otherwise.
+     */
+    public boolean isRetained(@NonNull URL url) {
+      return this.paths.contains(this.layout.resolve(url));
+    }
+
+    /**
+     * Retrieves the amount of retained files.
+     *
+     * @return a file count.
+     */
+    public int size() {
+      return this.paths.size();
+    }
+  }
+
+  /**
+   * Provides a factory for collectors.
+   */
+  public static final class Builder {
+
+    private final MirrorLayout layout;
+    private int threads = 4;
+    private Duration gracePeriod = Duration.ofHours(1);
+    private boolean dryRun;
+
+    private Builder(@NonNull MirrorLayout layout) {
+      this.layout = layout;
+    }
+
+    /**
+     * Constructs a new collector using the configuration within this builder.
+     *
+     * @return a collector.
+     */
+    @NonNull
+    public MirrorCollector build() {
+      return new MirrorCollector(this.layout, this.threads, this.gracePeriod, this.dryRun);
+    }
+
+    /**
+     * Selects whether unreferenced files are merely reported instead of deleted (disabled by
+     * default).
+     *
+     * @param dryRun true if no files are to be deleted.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withDryRun(boolean dryRun) {
+      this.dryRun = dryRun;
+      return this;
+    }
+
+    /**
+     * Selects the period before the creation of a mark within which modified files are retained
+     * regardless of whether they have been marked (defaults to one hour).
+     *
+     * @param gracePeriod a period.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withGracePeriod(@NonNull Duration gracePeriod) {
+      if (gracePeriod.isNegative()) {
+        throw new IllegalArgumentException("Illegal grace period: Must not be negative");
+      }
+
+      this.gracePeriod = gracePeriod;
+      return this;
+    }
+
+    /**
+     * Selects the amount of threads which are used to mark and sweep the store.
+     *
+     * @param threads a thread count.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withThreads(int threads) {
+      if (threads <= 0) {
+        throw new IllegalArgumentException("Illegal thread count: Must be positive");
+      }
+
+      this.threads = threads;
+      return this;
+    }
+  }
+
+  /**
+   * Represents the result of a sweep.
+   */
+  public static final class Result {
+
+    private final List<Path> deleted;
+    private final long reclaimedBytes;
+    private final Map<Path, IOException> failures;
+    private final boolean dryRun;
+
+    private Result(@NonNull List<Path> deleted, long reclaimedBytes,
+        @NonNull Map<Path, IOException> failures, boolean dryRun) {
+      this.deleted = Collections.unmodifiableList(deleted);
+      this.reclaimedBytes = reclaimedBytes;
+      this.failures = Collections.unmodifiableMap(failures);
+      this.dryRun = dryRun;
+    }
+
+    /**
+     * Retrieves the list of files which have been deleted (or would have been deleted when
+     * operating in dry run mode).
+     *
+     * @return a list of files.
+     */
+    @NonNull
+    public List<Path> getDeleted() {
+      return this.deleted;
+    }
+
+    /**
+     * Retrieves the amount of bytes which have been reclaimed (or would have been reclaimed when
+     * operating in dry run mode).
+     *
+     * @return a byte count.
+     */
+    public long getReclaimedBytes() {
+      return this.reclaimedBytes;
+    }
+
+    /**
+     * Retrieves a map of files which could not be deleted.
+     *
+     * @return a map of files and their respective errors.
+     */
+    @NonNull
+    public Map<Path, IOException> getFailures() {
+      return this.failures;
+    }
+
+    /**
+     * Evaluates whether this result has been produced by a dry run.
+     *
+     * @return true if no files have been deleted, false otherwise.
+     */
+    public boolean isDryRun() {
+      return this.dryRun;
+    }
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.mirror;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Optional;
+import org.basinmc.lavatory.file.Download;
+
+/**
+ * <p>Describes the on-disk layout of a local mirror store.</p>
+ *
+ * <p>Mirrored files are stored relative to the mirror root using their original host name and
+ * path. For instance, an asset which is available at
+ * {@code https://resources.download.minecraft.net/d4/d48940...} will be stored within
+ * {@code <root>/resources.download.minecraft.net/d4/d48940...} while the version manifest is
+ * stored within {@code <root>/launchermeta.mojang.com/mc/game/version_manifest.json}.</p>
+ *
+ * <p>The same layout is used when serving the store via HTTP (see {@link MirrorServer}) and thus
+ * any original URL may be translated into its mirror counterpart by prefixing its path with the
+ * original host name (see {@link #rewrite(URL, URL)}).</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class MirrorLayout {
+
+  private final Path root;
+
+  public MirrorLayout(@NonNull Path root) {
+    this.root = root.toAbsolutePath().normalize();
+  }
+
+  /**
+   * Translates an original URL into its respective location on a mirror.
+   *
+   * @param mirrorBase the base URL of the mirror (e.g. {@code http://mirror.local:8080/}).
+   * @param url an original URL.
+   * @return a mirror URL.
+   * @throws MalformedURLException when the resulting URL is malformed.
+   */
+  @NonNull
+  public static URL rewrite(@NonNull URL mirrorBase, @NonNull URL url)
+      throws MalformedURLException {
+    String base = mirrorBase.toExternalForm();
+    if (!base.endsWith("/")) {
+      base += "/";
+    }
+
+    String file = url.getFile();
+    if (!file.startsWith("/")) {
+      file = "/" + file;
+    }
+
+    return new URL(base + url.getHost() + file);
+  }
+
+  /**
+   * Retrieves the root directory of this mirror store.
+   *
+   * @return an absolute path.
+   */
+  @NonNull
+  public Path getRoot() {
+    return this.root;
+  }
+
+  /**
+   * Resolves the location at which a given download is stored within the mirror.
+   *
+   * @param download a download.
+   * @return an absolute path.
+   * @throws IllegalArgumentException when the download URL refers to a location outside of the
+   * mirror root.
+   */
+  @NonNull
+  public Path resolve(@NonNull Download download) {
+    return this.resolve(download.getUrl());
+  }
+
+  /**
+   * Resolves the location at which a file with the given original URL is stored within the
+   * mirror.
+   *
+   * @param url an original URL.
+   * @return an absolute path.
+   * @throws IllegalArgumentException when the URL refers to a location outside of the mirror
+   * root.
+   */
+  @NonNull
+  public Path resolve(@NonNull URL url) {
+    return this.resolve(url.getHost() + url.getPath())
+        .orElseThrow(() -> new IllegalArgumentException("Illegal mirror URL: " + url));
+  }
+
+  /**
+   * Resolves a path (relative to the mirror root) within the mirror store.
+   *
+   * @param path a relative path in the form of {@code <host>/<path>}.
+   * @return an absolute path or, if the path would escape the mirror root, an empty optional.
+   */
+  @NonNull
+  public Optional<Path> resolve(@NonNull String path) {
+    while (path.startsWith("/")) {
+      path = path.substring(1);
+    }
+
+    if (path.isEmpty()) {
+      return Optional.empty();
+    }
+
+    Path resolved = this.root.resolve(path).normalize();
+    if (!resolved.startsWith(this.root) || resolved.equals(this.root)) {
+      return Optional.empty();
+    }
+
+    return Optional.of(resolved);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || this.getClass() != o.getClass()) {
+      return false;
+    }
+    MirrorLayout that = (MirrorLayout) o;
+    return Objects.equals(this.root, that.root);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+    return Objects.hash(this.root);
+  }
+}
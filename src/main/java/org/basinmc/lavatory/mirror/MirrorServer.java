@@ -0,0 +1,598 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.mirror;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Serves the contents of a local mirror store via HTTP using the layout described by {@link
+ * MirrorLayout}.</p>
+ *
+ * <p>This implementation is intentionally minimal: It supports {@code GET} and {@code HEAD}
+ * requests, persistent connections and single byte range requests. File contents are sent via
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)} and thus never
+ * pass through the heap when the platform supports zero-copy transfers.</p>
+ *
+ * <p>Connections which do not deliver a complete request header within the configured idle
+ * timeout (30 seconds by default) are closed. This applies to idle persistent connections as well
+ * and thus clients which retain connections within a keep-alive cache cannot occupy the server's
+ * threads indefinitely.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class MirrorServer implements Closeable {
+
+  /**
+   * Defines the maximum permitted size of a request header (in bytes).
+   */
+  private static final int MAX_HEADER_SIZE = 8192;
+
+  /**
+   * Defines the default amount of time a connection may remain idle before it is closed.
+   */
+  private static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofSeconds(30);
+
+  private final MirrorLayout layout;
+  private final ServerSocketChannel serverChannel;
+  private final ExecutorService executor;
+  private final long idleTimeout;
+  private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+  private final Thread acceptor;
+
+  private MirrorServer(@NonNull MirrorLayout layout, @NonNull ServerSocketChannel serverChannel,
+      int threads, @NonNull Duration idleTimeout) {
+    AtomicInteger counter = new AtomicInteger();
+
+    this.layout = layout;
+    this.serverChannel = serverChannel;
+    this.idleTimeout = idleTimeout.toNanos();
+    this.executor = Executors.newFixedThreadPool(threads, (r) -> {
+      Thread thread = new Thread(r, "lavatory-mirror-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.acceptor = new Thread(this::accept, "lavatory-mirror-acceptor");
+    this.acceptor.setDaemon(true);
+  }
+
+  /**
+   * Binds a new mirror server to the specified address and starts accepting connections.
+   *
+   * @param layout a mirror layout.
+   * @param address a local address (port zero selects an arbitrary free port).
+   * @param threads the maximum amount of concurrently served connections.
+   * @return a running server.
+   * @throws IOException when binding to the specified address fails.
+   */
+  @NonNull
+  public static MirrorServer start(@NonNull MirrorLayout layout,
+      @NonNull InetSocketAddress address, int threads) throws IOException {
+    return start(layout, address, threads, DEFAULT_IDLE_TIMEOUT);
+  }
+
+  /**
+   * Binds a new mirror server to the specified address and starts accepting connections.
+   *
+   * @param layout a mirror layout.
+   * @param address a local address (port zero selects an arbitrary free port).
+   * @param threads the maximum amount of concurrently served connections.
+   * @param idleTimeout the maximum amount of time to wait for a request before a connection is
+   * closed.
+   * @return a running server.
+   * @throws IOException when binding to the specified address fails.
+   */
+  @NonNull
+  public static MirrorServer start(@NonNull MirrorLayout layout,
+      @NonNull InetSocketAddress address, int threads, @NonNull Duration idleTimeout)
+      throws IOException {
+    if (threads <= 0) {
+      throw new IllegalArgumentException("Illegal thread count: Must be positive");
+    }
+    if (idleTimeout.isNegative() || idleTimeout.isZero()) {
+      throw new IllegalArgumentException("Illegal idle timeout: Must be positive");
+    }
+
+    ServerSocketChannel channel = ServerSocketChannel.open();
+
+    try {
+      channel.bind(address);
+    } catch (IOException ex) {
+      channel.close();
+      throw ex;
+    }
+
+    MirrorServer server = new MirrorServer(layout, channel, threads, idleTimeout);
+    server.acceptor.start();
+    return server;
+  }
+
+  /**
+   * Retrieves the local address to which this server is bound.
+   *
+   * @return a socket address.
+   * @throws IOException when the address cannot be retrieved.
+   */
+  @NonNull
+  public InetSocketAddress getAddress() throws IOException {
+    return (InetSocketAddress) this.serverChannel.getLocalAddress();
+  }
+
+  /**
+   * Retrieves the base URL of this mirror (as expected by {@link MirrorLayout#rewrite(URL,
+   * URL)}).
+   *
+   * @return a base URL.
+   * @throws IOException when the local address cannot be retrieved.
+   */
+  @NonNull
+  public URL getBaseUrl() throws IOException {
+    InetSocketAddress address = this.getAddress();
+    InetAddress host = address.getAddress();
+
+    if (host.isAnyLocalAddress()) {
+      host = InetAddress.getLoopbackAddress();
+    }
+
+    String hostName = host.getHostAddress();
+    if (hostName.indexOf(':') != -1) {
+      hostName = "[" + hostName + "]";
+    }
+
+    return new URL("http", hostName, address.getPort(), "/");
+  }
+
+  /**
+   * Retrieves the layout of the store which is served by this server.
+   *
+   * @return a mirror layout.
+   */
+  @NonNull
+  public MirrorLayout getLayout() {
+    return this.layout;
+  }
+
+  /**
+   * Stops accepting new connections and terminates all active connections.
+   *
+   * @throws IOException when closing the server socket fails.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      this.serverChannel.close();
+    } finally {
+      this.executor.shutdownNow();
+
+      for (SocketChannel connection : this.connections) {
+        try {
+          connection.close();
+        } catch (IOException ignore) {
+        }
+      }
+    }
+  }
+
+  private void accept() {
+    while (this.serverChannel.isOpen()) {
+      SocketChannel channel;
+
+      try {
+        channel = this.serverChannel.accept();
+      } catch (ClosedChannelException ex) {
+        return;
+      } catch (IOException ex) {
+        continue;
+      }
+
+      this.connections.add(channel);
+
+      try {
+        this.executor.execute(() -> this.serve(channel));
+      } catch (RejectedExecutionException ex) {
+        this.connections.remove(channel);
+
+        try {
+          channel.close();
+        } catch (IOException ignore) {
+        }
+      }
+    }
+  }
+
+  /**
+   * Serves all requests which are received via a single connection until the client (or server)
+   * decides to terminate the connection.
+   */
+  private void serve(@NonNull SocketChannel channel) {
+    ByteBuffer buffer = ByteBuffer.allocate(MAX_HEADER_SIZE);
+
+    try {
+      // reads on socket channels do not honor SO_TIMEOUT while reads through the socket stream do
+      // and thus request headers are received via the stream instead
+      Socket socket = channel.socket();
+      InputStream inputStream = socket.getInputStream();
+
+      Request request;
+      while ((request = this.readRequest(socket, inputStream, buffer)) != null) {
+        boolean keepAlive;
+
+        try {
+          keepAlive = this.respond(channel, request);
+        } catch (IllegalArgumentException ex) {
+          // request paths which cannot be represented on the local file system (such as those
+          // which contain NUL characters) are rejected by the path API
+          writeStatus(channel, 400, "Bad Request", false);
+          break;
+        } catch (RuntimeException ex) {
+          writeStatus(channel, 500, "Internal Server Error", false);
+          break;
+        }
+
+        if (!keepAlive) {
+          break;
+        }
+      }
+    } catch (IOException ignore) {
+      // the client has most likely gone away or sent garbage - either way there is nothing left to
+      // do for us but to close the connection
+    } finally {
+      this.connections.remove(channel);
+
+      try {
+        channel.close();
+      } catch (IOException ignore) {
+      }
+    }
+  }
+
+  /**
+   * Resolves a request path to a regular file within the mirror store. Symbolic links are
+   * followed as long as their target remains within the store.
+   *
+   * @return a file or, if no such file exists within the store, null.
+   */
+  @Nullable
+  private Path resolve(@NonNull String requestPath) {
+    Path path = this.layout.resolve(requestPath).orElse(null);
+    if (path == null) {
+      return null;
+    }
+
+    try {
+      Path real = path.toRealPath();
+
+      if (!real.startsWith(this.layout.getRoot().toRealPath()) || !Files.isRegularFile(real)) {
+        return null;
+      }
+
+      return real;
+    } catch (IOException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Responds to a single request.
+   *
+   * @return true if the connection is to be kept alive, false otherwise.
+   */
+  private boolean respond(@NonNull SocketChannel channel, @NonNull Request request)
+      throws IOException {
+    if (request.malformed) {
+      writeStatus(channel, 400, "Bad Request", false);
+      return false;
+    }
+
+    boolean keepAlive = request.isKeepAlive();
+    boolean head = "HEAD".equals(request.method);
+
+    if (!head && !"GET".equals(request.method)) {
+      writeStatus(channel, 405, "Method Not Allowed", keepAlive);
+      return keepAlive;
+    }
+
+    Path path = this.resolve(request.path);
+    if (path == null) {
+      writeStatus(channel, 404, "Not Found", keepAlive);
+      return keepAlive;
+    }
+
+    try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = file.size();
+      long start = 0;
+      long end = size - 1;
+      boolean partial = false;
+
+      String range = request.headers.get("range");
+      if (range != null) {
+        long[] bounds = parseRange(range, size);
+
+        if (bounds == null) {
+          writeHeader(channel, 416, "Range Not Satisfiable", keepAlive, 0,
+              "Content-Range: bytes */" + size + "\r\n");
+          return keepAlive;
+        }
+
+        if (bounds.length != 0) {
+          start = bounds[0];
+          end = bounds[1];
+          partial = true;
+        }
+      }
+
+      long length = end - start + 1;
+      if (partial) {
+        writeHeader(channel, 206, "Partial Content", keepAlive, length,
+            "Content-Range: bytes " + start + "-" + end + "/" + size + "\r\n");
+      } else {
+        writeHeader(channel, 200, "OK", keepAlive, size, "");
+      }
+
+      if (!head) {
+        long position = start;
+        long remaining = length;
+
+        while (remaining > 0) {
+          long transferred = file.transferTo(position, remaining, channel);
+
+          if (transferred <= 0) {
+            throw new IOException("Transfer stalled");
+          }
+
+          position += transferred;
+          remaining -= transferred;
+        }
+      }
+    }
+
+    return keepAlive;
+  }
+
+  /**
+   * <p>Parses the value of a range header.</p>
+   *
+   * <p>Only single byte ranges are supported. When a client requests multiple ranges or uses an
+   * unknown unit, the header is ignored and the full file is served instead.</p>
+   *
+   * @return an array containing the first and last byte position, an empty array if the header is
+   * to be ignored or null if the range cannot be satisfied.
+   */
+  @Nullable
+  private static long[] parseRange(@NonNull String value, long size) {
+    value = value.trim();
+
+    if (!value.startsWith("bytes=") || value.indexOf(',') != -1) {
+      return new long[0];
+    }
+
+    String spec = value.substring(6).trim();
+    int separator = spec.indexOf('-');
+    if (separator == -1) {
+      return new long[0];
+    }
+
+    try {
+      String first = spec.substring(0, separator).trim();
+      String last = spec.substring(separator + 1).trim();
+      long start;
+      long end;
+
+      if (first.isEmpty()) {
+        long suffix = Long.parseLong(last);
+        if (suffix <= 0) {
+          return null;
+        }
+
+        start = Math.max(0, size - suffix);
+        end = size - 1;
+      } else {
+        start = Long.parseLong(first);
+        end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+      }
+
+      if (start < 0 || start >= size || end < start) {
+        return null;
+      }
+
+      return new long[]{start, end};
+    } catch (NumberFormatException ex) {
+      return new long[0];
+    }
+  }
+
+  private static void writeStatus(@NonNull SocketChannel channel, int status,
+      @NonNull String reason, boolean keepAlive) throws IOException {
+    writeHeader(channel, status, reason, keepAlive, 0, "");
+  }
+
+  private static void writeHeader(@NonNull SocketChannel channel, int status,
+      @NonNull String reason, boolean keepAlive, long contentLength,
+      @NonNull String additionalHeaders) throws IOException {
+    String header = "HTTP/1.1 " + status + " " + reason + "\r\n"
+        + "Content-Length: " + contentLength + "\r\n"
+        + "Content-Type: application/octet-stream\r\n"
+        + "Accept-Ranges: bytes\r\n"
+        + additionalHeaders
+        + "Connection: " + (keepAlive ? "keep-alive" : "close") + "\r\n"
+        + "\r\n";
+
+    ByteBuffer buffer = ByteBuffer.wrap(header.getBytes(StandardCharsets.US_ASCII));
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  /**
+   * Reads a single request header from the specified socket. Any data which is received past the
+   * end of the header remains within the buffer for the next invocation.
+   *
+   * @return a request or null if the connection has been closed by the client.
+   * @throws SocketTimeoutException when no complete header is received within the idle timeout.
+   */
+  @Nullable
+  private Request readRequest(@NonNull Socket socket, @NonNull InputStream inputStream,
+      @NonNull ByteBuffer buffer) throws IOException {
+    long deadline = System.nanoTime() + this.idleTimeout;
+    int end;
+
+    while ((end = findHeaderEnd(buffer)) == -1) {
+      if (!buffer.hasRemaining()) {
+        return Request.MALFORMED;
+      }
+
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        throw new SocketTimeoutException("Idle timeout elapsed");
+      }
+
+      socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE,
+          Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining))));
+
+      int length = inputStream.read(buffer.array(), buffer.position(), buffer.remaining());
+      if (length == -1) {
+        return null;
+      }
+
+      buffer.position(buffer.position() + length);
+    }
+
+    String header = new String(buffer.array(), 0, end, StandardCharsets.ISO_8859_1);
+
+    // move any pipelined data to the beginning of the buffer
+    int consumed = end + 4;
+    int position = buffer.position();
+    System.arraycopy(buffer.array(), consumed, buffer.array(), 0, position - consumed);
+    buffer.position(position - consumed);
+
+    return Request.parse(header);
+  }
+
+  private static int findHeaderEnd(@NonNull ByteBuffer buffer) {
+    byte[] array = buffer.array();
+
+    for (int i = 0; i + 3 < buffer.position(); ++i) {
+      if (array[i] == '\r' && array[i + 1] == '\n' && array[i + 2] == '\r'
+          && array[i + 3] == '\n') {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Represents a parsed request header.
+   */
+  private static final class Request {
+
+    private static final Request MALFORMED = new Request(null, null, null, null);
+
+    private final String method;
+    private final String path;
+    private final String protocol;
+    private final Map<String, String> headers;
+    private final boolean malformed;
+
+    private Request(@Nullable String method, @Nullable String path, @Nullable String protocol,
+        @Nullable Map<String, String> headers) {
+      this.method = method;
+      this.path = path;
+      this.protocol = protocol;
+      this.headers = headers;
+      this.malformed = method == null;
+    }
+
+    @NonNull
+    static Request parse(@NonNull String header) {
+      String[] lines = header.split("\r\n");
+      String[] requestLine = lines[0].split(" ");
+
+      if (requestLine.length != 3) {
+        return MALFORMED;
+      }
+
+      String path;
+      try {
+        path = new URI(requestLine[1]).getPath();
+      } catch (URISyntaxException ex) {
+        return MALFORMED;
+      }
+
+      if (path == null) {
+        return MALFORMED;
+      }
+
+      Map<String, String> headers = new HashMap<>();
+      for (int i = 1; i < lines.length; ++i) {
+        int separator = lines[i].indexOf(':');
+
+        if (separator == -1) {
+          return MALFORMED;
+        }
+
+        headers.put(lines[i].substring(0, separator).trim().toLowerCase(Locale.ROOT),
+            lines[i].substring(separator + 1).trim());
+      }
+
+      return new Request(requestLine[0], path, requestLine[2], headers);
+    }
+
+    boolean isKeepAlive() {
+      String connection = Optional.ofNullable(this.headers.get("connection"))
+          .map((c) -> c.toLowerCase(Locale.ROOT))
+          .orElse("");
+
+      if ("HTTP/1.0".equals(this.protocol)) {
+        return "keep-alive".equals(connection);
+      }
+
+      return !"close".equals(connection);
+    }
+  }
+}
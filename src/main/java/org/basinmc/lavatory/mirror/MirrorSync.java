@@ -0,0 +1,552 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.mirror;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.basinmc.lavatory.Manifest;
+import org.basinmc.lavatory.asset.AssetIndex;
+import org.basinmc.lavatory.asset.AssetIndexReference;
+import org.basinmc.lavatory.fetch.FetchExecutor;
+import org.basinmc.lavatory.fetch.RetryPolicy;
+import org.basinmc.lavatory.file.Download;
+import org.basinmc.lavatory.file.LibraryReference;
+import org.basinmc.lavatory.file.Transfer;
+import org.basinmc.lavatory.version.Version;
+import org.basinmc.lavatory.version.VersionReference;
+
+/**
+ * <p>Synchronizes a local mirror store with the contents of a version manifest.</p>
+ *
+ * <p>The synchronization is split into two stages which are backed by their own respective
+ * queues and thread pools: The metadata stage retrieves the version documents as well as their
+ * asset indices while the artifact stage retrieves all remaining files (client and server archives,
+ * libraries, logger configurations and assets). Every download is deduplicated by its location
+ * within the mirror across all versions and files which are already present within the store are
+ * skipped entirely thus permitting cheap incremental updates.</p>
+ *
+ * <p>Version documents do not carry a checksum within the manifest. Instead, the modification time
+ * of each stored document is set to the modification time advertised by the manifest and is
+ * compared on subsequent runs.</p>
+ *
+ * <p>When a {@link FetchExecutor} is configured, artifacts are retrieved through the executor
+ * instead of the artifact thread pool and are thus subject to its per-host connection limits.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class MirrorSync {
+
+  private final MirrorLayout layout;
+  private final int metadataThreads;
+  private final int artifactThreads;
+  private final boolean verifyExisting;
+  private final FetchExecutor executor;
+  private final RetryPolicy retryPolicy;
+
+  private MirrorSync(@NonNull MirrorLayout layout, int metadataThreads, int artifactThreads,
+      boolean verifyExisting, @Nullable FetchExecutor executor,
+      @Nullable RetryPolicy retryPolicy) {
+    this.layout = layout;
+    this.metadataThreads = metadataThreads;
+    this.artifactThreads = artifactThreads;
+    this.verifyExisting = verifyExisting;
+    this.executor = executor;
+    this.retryPolicy = retryPolicy;
+  }
+
+  /**
+   * Creates a new factory for synchronization pipelines which operate on the specified store.
+   *
+   * @param layout a mirror layout.
+   * @return a factory.
+   */
+  @NonNull
+  public static Builder builder(@NonNull MirrorLayout layout) {
+    return new Builder(layout);
+  }
+
+  /**
+   * Retrieves the current version manifest from the servers, stores it within the mirror and
+   * synchronizes all of its versions.
+   *
+   * @return a synchronization report.
+   * @throws IOException when the manifest cannot be retrieved or stored.
+   * @throws InterruptedException when the calling thread is interrupted while awaiting the
+   * pipeline.
+   */
+  @NonNull
+  public Result synchronize() throws IOException, InterruptedException {
+    URL url = new URL(Manifest.MANIFEST_URL);
+    Path target = this.layout.resolve(url);
+
+    this.transfer(url, target);
+    return this.synchronize(Manifest.read(target));
+  }
+
+  /**
+   * Synchronizes all versions which are listed within the specified manifest.
+   *
+   * @param manifest a manifest.
+   * @return a synchronization report.
+   * @throws InterruptedException when the calling thread is interrupted while awaiting the
+   * pipeline.
+   */
+  @NonNull
+  public Result synchronize(@NonNull Manifest manifest) throws InterruptedException {
+    Run run = new Run();
+
+    try {
+      for (VersionReference reference : manifest.getVersions()) {
+        run.submit(run.metadata, () -> this.synchronizeVersion(run, reference));
+      }
+
+      run.await();
+    } finally {
+      run.metadata.shutdownNow();
+      run.artifacts.shutdownNow();
+    }
+
+    return new Result(run);
+  }
+
+  private void synchronizeVersion(@NonNull Run run, @NonNull VersionReference reference) {
+    Version version;
+
+    try {
+      Path target = this.layout.resolve(reference.getUrl());
+      FileTime modificationTime = FileTime.from(reference.getModificationTime().toInstant());
+
+      if (Files.isRegularFile(target) && modificationTime
+          .equals(Files.getLastModifiedTime(target))) {
+        run.skipped.incrementAndGet();
+      } else {
+        run.transferredBytes.addAndGet(this.transfer(reference.getUrl(), target));
+        Files.setLastModifiedTime(target, modificationTime);
+        run.fetched.incrementAndGet();
+      }
+
+      version = Version.read(target);
+    } catch (IOException ex) {
+      run.failures.put(reference.getUrl(), ex);
+      return;
+    }
+
+    AssetIndexReference assetIndex = version.getAssetIndex();
+    if (run.claim(assetIndex)) {
+      run.submit(run.metadata, () -> this.synchronizeAssetIndex(run, assetIndex));
+    }
+
+    this.enqueue(run, version.getClientDownload());
+    version.getServerDownload().ifPresent((d) -> this.enqueue(run, d));
+    version.getWindowsServerDownload().ifPresent((d) -> this.enqueue(run, d));
+    version.getClientLoggerConfiguration().ifPresent((c) -> this.enqueue(run, c.getFile()));
+
+    for (LibraryReference library : version.getLibraries()) {
+      library.getDownloads().getArtifact().ifPresent((d) -> this.enqueue(run, d));
+      library.getDownloads().getClassifiers().values().forEach((d) -> this.enqueue(run, d));
+    }
+  }
+
+  private void synchronizeAssetIndex(@NonNull Run run, @NonNull AssetIndexReference reference) {
+    AssetIndex index;
+
+    try {
+      Path target = this.synchronizeDownload(run, reference);
+      index = AssetIndex.read(target);
+    } catch (IOException ex) {
+      run.failures.put(reference.getUrl(), ex);
+      return;
+    }
+
+    index.getObjects().values().forEach((o) -> this.enqueue(run, o));
+  }
+
+  /**
+   * Schedules a download within the artifact stage unless another download for the same mirror
+   * location has already been scheduled.
+   */
+  private void enqueue(@NonNull Run run, @NonNull Download download) {
+    if (!run.claim(download)) {
+      return;
+    }
+
+    Runnable task = () -> {
+      try {
+        this.synchronizeDownload(run, download);
+      } catch (IOException ex) {
+        run.failures.put(download.getUrl(), ex);
+      }
+    };
+
+    if (this.executor != null) {
+      run.submit(this.executor, download.getUrl(), task);
+    } else {
+      run.submit(run.artifacts, task);
+    }
+  }
+
+  /**
+   * Ensures that the specified download is present within the mirror and matches its expected
+   * checksum.
+   */
+  @NonNull
+  private Path synchronizeDownload(@NonNull Run run, @NonNull Download download)
+      throws IOException {
+    Path target = this.layout.resolve(download);
+
+    if (Files.isRegularFile(target) && Files.size(target) == download.getSize() && (
+        !this.verifyExisting || download.verify(target))) {
+      run.skipped.incrementAndGet();
+      return target;
+    }
+
+    Path temporary = temporaryPath(target);
+
+    try {
+      Files.createDirectories(target.getParent());
+      if (this.retryPolicy != null) {
+        download.fetch(temporary, this.retryPolicy);
+      } else {
+        download.fetch(temporary);
+      }
+
+      if (!download.verify(temporary)) {
+        throw new IOException("Checksum mismatch for " + download.getUrl());
+      }
+
+      Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+
+    run.fetched.incrementAndGet();
+    run.transferredBytes.addAndGet(download.getSize());
+    return target;
+  }
+
+  /**
+   * Copies the contents of a URL into the specified file without leaving partially written files
+   * behind.
+   *
+   * @return the amount of transferred bytes.
+   */
+  private long transfer(@NonNull URL url, @NonNull Path target) throws IOException {
+    Path temporary = temporaryPath(target);
+
+    try {
+      Files.createDirectories(target.getParent());
+
+      long size;
+      if (this.retryPolicy != null) {
+        size = this.retryPolicy.execute(url,
+            (in) -> Transfer.copy(in, temporary, -1));
+      } else {
+        try (InputStream inputStream = url.openStream()) {
+          size = Transfer.copy(inputStream, temporary, -1);
+        }
+      }
+
+      Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      return size;
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  @NonNull
+  private static Path temporaryPath(@NonNull Path target) {
+    return target.resolveSibling(target.getFileName() + ".part");
+  }
+
+  /**
+   * Provides a factory for synchronization pipelines.
+   */
+  public static final class Builder {
+
+    private final MirrorLayout layout;
+    private int metadataThreads = 4;
+    private int artifactThreads = 16;
+    private boolean verifyExisting;
+    private FetchExecutor executor;
+    private RetryPolicy retryPolicy;
+
+    private Builder(@NonNull MirrorLayout layout) {
+      this.layout = layout;
+    }
+
+    /**
+     * Constructs a new synchronization pipeline using the configuration within this builder.
+     *
+     * @return a pipeline.
+     */
+    @NonNull
+    public MirrorSync build() {
+      return new MirrorSync(this.layout, this.metadataThreads, this.artifactThreads,
+          this.verifyExisting, this.executor, this.retryPolicy);
+    }
+
+    /**
+     * Selects the maximum amount of version documents and asset indices which are retrieved in
+     * parallel.
+     *
+     * @param threads a thread count.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withMetadataThreads(int threads) {
+      if (threads <= 0) {
+        throw new IllegalArgumentException("Illegal thread count: Must be positive");
+      }
+
+      this.metadataThreads = threads;
+      return this;
+    }
+
+    /**
+     * Selects the maximum amount of artifacts which are retrieved in parallel.
+     *
+     * @param threads a thread count.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withArtifactThreads(int threads) {
+      if (threads <= 0) {
+        throw new IllegalArgumentException("Illegal thread count: Must be positive");
+      }
+
+      this.artifactThreads = threads;
+      return this;
+    }
+
+    /**
+     * <p>Selects whether files which are already present within the store are to be verified
+     * against their checksum.</p>
+     *
+     * <p>When disabled (the default), files are considered up to date when their size matches
+     * their expected value.</p>
+     *
+     * @param verifyExisting true if existing files are to be verified.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withVerification(boolean verifyExisting) {
+      this.verifyExisting = verifyExisting;
+      return this;
+    }
+
+    /**
+     * Selects a policy according to which failed transfers are repeated.
+     *
+     * @param retryPolicy a policy or null to fail on the first error.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withRetryPolicy(@Nullable RetryPolicy retryPolicy) {
+      this.retryPolicy = retryPolicy;
+      return this;
+    }
+
+    /**
+     * Selects an executor through which artifacts are to be retrieved instead of the artifact
+     * thread pool (the executor remains owned by the caller and is not shut down).
+     *
+     * @param executor an executor or null to use the artifact thread pool.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withExecutor(@Nullable FetchExecutor executor) {
+      this.executor = executor;
+      return this;
+    }
+  }
+
+  /**
+   * Represents the result of a synchronization run.
+   */
+  public static final class Result {
+
+    private final int fetched;
+    private final int skipped;
+    private final long transferredBytes;
+    private final Map<URL, IOException> failures;
+
+    private Result(@NonNull Run run) {
+      this.fetched = run.fetched.get();
+      this.skipped = run.skipped.get();
+      this.transferredBytes = run.transferredBytes.get();
+      this.failures = Collections.unmodifiableMap(run.failures);
+    }
+
+    /**
+     * Retrieves the amount of files which have been retrieved from their origin.
+     *
+     * @return a file count.
+     */
+    public int getFetched() {
+      return this.fetched;
+    }
+
+    /**
+     * Retrieves the amount of files which were already present within the store.
+     *
+     * @return a file count.
+     */
+    public int getSkipped() {
+      return this.skipped;
+    }
+
+    /**
+     * Retrieves the total amount of bytes which have been retrieved from their origin.
+     *
+     * @return a byte count.
+     */
+    public long getTransferredBytes() {
+      return this.transferredBytes;
+    }
+
+    /**
+     * Retrieves a map of all files which could not be synchronized along with their respective
+     * cause.
+     *
+     * @return a map of original URLs and errors.
+     */
+    @NonNull
+    public Map<URL, IOException> getFailures() {
+      return this.failures;
+    }
+
+    /**
+     * Evaluates whether all files have been synchronized successfully.
+     *
+     * @return true if successful, false otherwise.
+     */
+    public boolean isSuccessful() {
+      return this.failures.isEmpty();
+    }
+  }
+
+  /**
+   * Tracks the state of a single synchronization run.
+   */
+  private final class Run {
+
+    private final ExecutorService metadata = createStage(MirrorSync.this.metadataThreads);
+    private final ExecutorService artifacts = createStage(MirrorSync.this.artifactThreads);
+
+    private final Set<Path> claimed = ConcurrentHashMap.newKeySet();
+    private final Map<URL, IOException> failures = new ConcurrentHashMap<>();
+    private final AtomicInteger fetched = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicLong transferredBytes = new AtomicLong();
+
+    private final Object lock = new Object();
+    private long pending;
+
+    /**
+     * Claims a download for this run. Downloads are identified by their location within the
+     * mirror as identical files may be referenced through multiple URLs (each of which needs to
+     * be present within the mirror).
+     *
+     * @return true if the download has not been claimed before, false otherwise.
+     */
+    boolean claim(@NonNull Download download) {
+      return this.claimed.add(MirrorSync.this.layout.resolve(download));
+    }
+
+    void submit(@NonNull Executor stage, @NonNull Runnable task) {
+      synchronized (this.lock) {
+        ++this.pending;
+      }
+
+      try {
+        stage.execute(() -> {
+          try {
+            task.run();
+          } finally {
+            this.release();
+          }
+        });
+      } catch (RejectedExecutionException ex) {
+        this.release();
+        throw ex;
+      }
+    }
+
+    /**
+     * Submits a task to the specified fetch executor. Tasks which are rejected or discarded by the
+     * executor are recorded as failures for their respective URL.
+     */
+    void submit(@NonNull FetchExecutor executor, @NonNull URL url, @NonNull Runnable task) {
+      synchronized (this.lock) {
+        ++this.pending;
+      }
+
+      executor.submit(url, Executors.callable(task))
+          .whenComplete((r, ex) -> {
+            if (ex != null) {
+              this.failures.put(url, new IOException("Transfer was discarded: " + url, ex));
+            }
+
+            this.release();
+          });
+    }
+
+    private void release() {
+      synchronized (this.lock) {
+        if (--this.pending == 0) {
+          this.lock.notifyAll();
+        }
+      }
+    }
+
+    void await() throws InterruptedException {
+      synchronized (this.lock) {
+        while (this.pending != 0) {
+          this.lock.wait();
+        }
+      }
+    }
+
+    @NonNull
+    private ExecutorService createStage(int threads) {
+      return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<>());
+    }
+  }
+}
@@ -56,4 +56,14 @@ public enum Feature {
   public String getKey() {
     return this.key;
   }
+
+  /**
+   * Retrieves the bit which represents this feature within a packed feature mask (as returned by
+   * {@link org.basinmc.lavatory.ResolverContext#getFeatureMask()}).
+   *
+   * @return a single bit mask.
+   */
+  public long getMask() {
+    return 1L << this.ordinal();
+  }
 }
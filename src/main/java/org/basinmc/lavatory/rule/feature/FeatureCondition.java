@@ -36,6 +36,17 @@ public class FeatureCondition implements RuleCondition {
 
   private final Map<Feature, Boolean> featureMap;
 
+  /**
+   * Identifies the features which are checked by this condition.
+   */
+  private final long mask;
+
+  /**
+   * Identifies the features which are expected to be enabled (all remaining features within
+   * {@link #mask} are expected to be disabled).
+   */
+  private final long expected;
+
   @JsonCreator
   public FeatureCondition(@NonNull Map<String, Boolean> values) {
     this.featureMap = values.entrySet().stream()
@@ -45,6 +56,18 @@ public class FeatureCondition implements RuleCondition {
                     () -> new IllegalArgumentException("Unknown feature \"" + e.getKey() + "\"")),
             Entry::getValue
         ));
+
+    long mask = 0;
+    long expected = 0;
+    for (Entry<Feature, Boolean> entry : this.featureMap.entrySet()) {
+      mask |= entry.getKey().getMask();
+
+      if (entry.getValue()) {
+        expected |= entry.getKey().getMask();
+      }
+    }
+    this.mask = mask;
+    this.expected = expected;
   }
 
   /**
@@ -52,8 +75,7 @@ public class FeatureCondition implements RuleCondition {
    */
   @Override
   public boolean evaluate(@NonNull ResolverContext ctx) {
-    return this.featureMap.entrySet().stream()
-        .allMatch((e) -> ctx.isFeatureEnabled(e.getKey()) == e.getValue());
+    return (ctx.getFeatureMask() & this.mask) == this.expected;
   }
 
   @NonNull
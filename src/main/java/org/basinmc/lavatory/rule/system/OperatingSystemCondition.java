@@ -38,6 +38,12 @@ public class OperatingSystemCondition implements RuleCondition {
   private final Pattern version;
   // TODO: Arch is probably a valid property as well?
 
+  /**
+   * Retains the version match of the most recently evaluated context (contexts are typically
+   * reused for every rule of a resolution and the version never changes for a given context).
+   */
+  private volatile VersionMatch versionMatch;
+
   @JsonCreator
   public OperatingSystemCondition(
       @Nullable @JsonProperty("name") String system,
@@ -62,13 +68,28 @@ public class OperatingSystemCondition implements RuleCondition {
       return false;
     }
 
-    if (this.version != null && !this.version.matcher(ctx.getOperatingSystemVersion()).matches()) {
+    if (this.version != null && !this.matchesVersion(ctx)) {
       return false;
     }
 
     return true;
   }
 
+  /**
+   * Evaluates whether the version pattern matches the specified context while re-using the
+   * result of a previous evaluation against the same context.
+   */
+  private boolean matchesVersion(@NonNull ResolverContext ctx) {
+    VersionMatch match = this.versionMatch;
+
+    if (match == null || match.context != ctx) {
+      match = new VersionMatch(ctx, ctx.matchesOperatingSystemVersion(this.version));
+      this.versionMatch = match;
+    }
+
+    return match.result;
+  }
+
   @NonNull
   public Optional<OperatingSystem> getSystem() {
     return Optional.ofNullable(this.system);
@@ -92,7 +113,7 @@ public class OperatingSystemCondition implements RuleCondition {
     }
     OperatingSystemCondition that = (OperatingSystemCondition) o;
     return this.system == that.system &&
-        Objects.equals(this.version, that.version);
+        samePattern(this.version, that.version);
   }
 
   /**
@@ -100,6 +121,35 @@ public class OperatingSystemCondition implements RuleCondition {
    */
   @Override
   public int hashCode() {
-    return Objects.hash(this.system, this.version);
+    return Objects.hash(this.system, this.version == null ? null : this.version.pattern());
+  }
+
+  /**
+   * Compares two patterns by their expression and flags (patterns do not provide their own
+   * equality and would otherwise only ever be considered equal to themselves).
+   */
+  private static boolean samePattern(@Nullable Pattern a, @Nullable Pattern b) {
+    if (a == b) {
+      return true;
+    }
+    if (a == null || b == null) {
+      return false;
+    }
+
+    return a.flags() == b.flags() && a.pattern().equals(b.pattern());
+  }
+
+  /**
+   * Associates the result of a version evaluation with its context.
+   */
+  private static final class VersionMatch {
+
+    private final ResolverContext context;
+    private final boolean result;
+
+    private VersionMatch(@NonNull ResolverContext context, boolean result) {
+      this.context = context;
+      this.result = result;
+    }
   }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.snapshot;
+
+/**
+ * <p>Defines the constants which make up the binary snapshot format.</p>
+ *
+ * <p>Every snapshot starts with a fixed header which consists of the {@link #MAGIC} value, the
+ * format {@link #VERSION} and a single byte which identifies the type of the encoded object. The
+ * header is followed by a table of all strings referenced within the snapshot body (each of which
+ * is encoded as a length prefixed UTF-8 sequence) and the actual body which refers to the table
+ * entries by their index.</p>
+ *
+ * <p>Integers within the string table and body are encoded as variable length integers (seven bits
+ * per byte, least significant group first) while checksums are packed into their raw binary
+ * representation whenever possible.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+final class SnapshotFormat {
+
+  /**
+   * Identifies a binary snapshot ("LVSN").
+   */
+  static final int MAGIC = 0x4C56534E;
+
+  /**
+   * Identifies the revision of the format. This value is incremented whenever the layout of the
+   * snapshot body changes in an incompatible way.
+   */
+  static final short VERSION = 2;
+
+  static final byte TYPE_MANIFEST = 1;
+  static final byte TYPE_VERSION = 2;
+  static final byte TYPE_ASSET_INDEX = 3;
+
+  static final byte CONDITION_FEATURE = 1;
+  static final byte CONDITION_OPERATING_SYSTEM = 2;
+
+  static final byte HASH_PACKED = 0;
+  static final byte HASH_LITERAL = 1;
+
+  static final byte NATIVES_ABSENT = 0;
+  static final byte NATIVES_CLASSIFIER = 1;
+  static final byte NATIVES_INLINE = 2;
+
+  /**
+   * Defines the length of a packed SHA-1 checksum (in bytes).
+   */
+  static final int PACKED_HASH_LENGTH = 20;
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private SnapshotFormat() {
+  }
+
+  /**
+   * Evaluates whether the specified checksum may be stored in its packed form without losing
+   * information (e.g. it is a lower case hexadecimal representation of a SHA-1 checksum).
+   *
+   * @param hash a checksum.
+   * @return true if packable, false otherwise.
+   */
+  static boolean isPackable(String hash) {
+    if (hash.length() != PACKED_HASH_LENGTH * 2) {
+      return false;
+    }
+
+    for (int i = 0; i < hash.length(); ++i) {
+      char c = hash.charAt(i);
+
+      if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Converts a packed checksum back into its hexadecimal representation.
+   *
+   * @param bytes a packed checksum.
+   * @return a lower case hexadecimal string.
+   */
+  static String toHex(byte[] bytes) {
+    char[] chars = new char[bytes.length * 2];
+
+    for (int i = 0; i < bytes.length; ++i) {
+      chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+      chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+    }
+
+    return new String(chars);
+  }
+}
@@ -0,0 +1,650 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.snapshot;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.basinmc.lavatory.Manifest;
+import org.basinmc.lavatory.asset.AssetIndex;
+import org.basinmc.lavatory.asset.AssetIndexReference;
+import org.basinmc.lavatory.asset.AssetObject;
+import org.basinmc.lavatory.file.Download;
+import org.basinmc.lavatory.file.LibraryArtifact;
+import org.basinmc.lavatory.file.LibraryReference;
+import org.basinmc.lavatory.file.LibraryReference.DownloadMap;
+import org.basinmc.lavatory.file.LibraryReference.ExtractionConfiguration;
+import org.basinmc.lavatory.file.LoggerConfiguration;
+import org.basinmc.lavatory.file.LoggerConfigurationFile;
+import org.basinmc.lavatory.rule.Rule;
+import org.basinmc.lavatory.rule.Rule.Action;
+import org.basinmc.lavatory.rule.RuleCondition;
+import org.basinmc.lavatory.rule.feature.FeatureCondition;
+import org.basinmc.lavatory.rule.system.OperatingSystemCondition;
+import org.basinmc.lavatory.version.ProgramArgument;
+import org.basinmc.lavatory.version.Version;
+import org.basinmc.lavatory.version.VersionReference;
+import org.basinmc.lavatory.version.VersionType;
+
+/**
+ * <p>Decodes manifests, versions and asset indices from the binary snapshot format.</p>
+ *
+ * <p>Objects are reconstructed directly through their respective constructors and thus do not
+ * require any reflective access or json parsing.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class SnapshotReader {
+
+  private static final Action[] ACTIONS = Action.values();
+  private static final VersionType[] VERSION_TYPES = VersionType.values();
+
+  /**
+   * Defines the maximum amount of elements for which space is allocated ahead of time (larger
+   * collections grow as their elements are decoded).
+   */
+  private static final int MAX_PREALLOCATION = 4096;
+
+  private final LimitedInputStream input;
+  private final DataInputStream in;
+  private String[] strings;
+
+  private SnapshotReader(@NonNull InputStream inputStream, long limit) {
+    this.input = new LimitedInputStream(inputStream, limit);
+    this.in = new DataInputStream(this.input);
+  }
+
+  /**
+   * Decodes a version manifest from the specified input stream.
+   *
+   * @param inputStream an input stream.
+   * @return a version manifest.
+   * @throws IOException when reading from the input stream fails or the snapshot is malformed.
+   */
+  @NonNull
+  public static Manifest readManifest(@NonNull InputStream inputStream) throws IOException {
+    return read(inputStream, Long.MAX_VALUE, SnapshotFormat.TYPE_MANIFEST, (r) -> r.readManifest());
+  }
+
+  /**
+   * Decodes a version manifest from the specified file.
+   *
+   * @param path a file path.
+   * @return a version manifest.
+   * @throws IOException when reading from the file fails or the snapshot is malformed.
+   */
+  @NonNull
+  public static Manifest readManifest(@NonNull Path path) throws IOException {
+    return read(path, SnapshotFormat.TYPE_MANIFEST, (r) -> r.readManifest());
+  }
+
+  /**
+   * Decodes a version from the specified input stream.
+   *
+   * @param inputStream an input stream.
+   * @return a version.
+   * @throws IOException when reading from the input stream fails or the snapshot is malformed.
+   */
+  @NonNull
+  public static Version readVersion(@NonNull InputStream inputStream) throws IOException {
+    return read(inputStream, Long.MAX_VALUE, SnapshotFormat.TYPE_VERSION, (r) -> r.readVersion());
+  }
+
+  /**
+   * Decodes a version from the specified file.
+   *
+   * @param path a file path.
+   * @return a version.
+   * @throws IOException when reading from the file fails or the snapshot is malformed.
+   */
+  @NonNull
+  public static Version readVersion(@NonNull Path path) throws IOException {
+    return read(path, SnapshotFormat.TYPE_VERSION, (r) -> r.readVersion());
+  }
+
+  /**
+   * Decodes an asset index from the specified input stream.
+   *
+   * @param inputStream an input stream.
+   * @return an asset index.
+   * @throws IOException when reading from the input stream fails or the snapshot is malformed.
+   */
+  @NonNull
+  public static AssetIndex readAssetIndex(@NonNull InputStream inputStream) throws IOException {
+    return read(inputStream, Long.MAX_VALUE, SnapshotFormat.TYPE_ASSET_INDEX,
+        (r) -> r.readAssetIndex());
+  }
+
+  /**
+   * Decodes an asset index from the specified file.
+   *
+   * @param path a file path.
+   * @return an asset index.
+   * @throws IOException when reading from the file fails or the snapshot is malformed.
+   */
+  @NonNull
+  public static AssetIndex readAssetIndex(@NonNull Path path) throws IOException {
+    return read(path, SnapshotFormat.TYPE_ASSET_INDEX, (r) -> r.readAssetIndex());
+  }
+
+  @NonNull
+  private static <T> T read(@NonNull Path path, byte type, @NonNull Decoder<T> decoder)
+      throws IOException {
+    try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(path))) {
+      return read(inputStream, Files.size(path), type, decoder);
+    }
+  }
+
+  @NonNull
+  private static <T> T read(@NonNull InputStream inputStream, long limit, byte type,
+      @NonNull Decoder<T> decoder) throws IOException {
+    SnapshotReader reader = new SnapshotReader(inputStream, limit);
+
+    try {
+      reader.readHeader(type);
+      return decoder.decode(reader);
+    } catch (RuntimeException ex) {
+      // constructors reject malformed values (such as unknown operating systems, patterns or
+      // time offsets) with unchecked exceptions which we report as malformed snapshots instead
+      throw new IOException("Illegal snapshot: " + ex.getMessage(), ex);
+    }
+  }
+
+  /**
+   * Validates the snapshot header and decodes the string table.
+   */
+  private void readHeader(byte expectedType) throws IOException {
+    if (this.in.readInt() != SnapshotFormat.MAGIC) {
+      throw new IOException("Illegal snapshot: Invalid magic number");
+    }
+
+    short version = this.in.readShort();
+    if (version != SnapshotFormat.VERSION) {
+      throw new IOException("Illegal snapshot: Unsupported format version " + version);
+    }
+
+    byte type = this.in.readByte();
+    if (type != expectedType) {
+      throw new IOException(
+          "Illegal snapshot: Expected type " + expectedType + " but got " + type);
+    }
+
+    int count = this.readCount();
+    List<String> strings = new ArrayList<>(Math.min(count, MAX_PREALLOCATION));
+    byte[] buffer = new byte[64];
+
+    for (int i = 0; i < count; ++i) {
+      int length = this.readCount();
+      buffer = this.readFully(buffer, length);
+      strings.add(new String(buffer, 0, length, StandardCharsets.UTF_8));
+    }
+
+    this.strings = strings.toArray(new String[0]);
+  }
+
+  /**
+   * Reads the specified amount of bytes into the specified buffer. The buffer is only grown as
+   * data actually arrives and thus a corrupted length cannot cause excessive allocations.
+   *
+   * @return the passed buffer or a replacement buffer if the passed buffer is too small.
+   */
+  @NonNull
+  private byte[] readFully(@NonNull byte[] buffer, int length) throws IOException {
+    int offset = 0;
+
+    while (offset < length) {
+      if (offset == buffer.length) {
+        buffer = Arrays.copyOf(buffer, (int) Math.min(length, buffer.length * 2L));
+      }
+
+      int chunk = Math.min(length, buffer.length) - offset;
+      this.in.readFully(buffer, offset, chunk);
+      offset += chunk;
+    }
+
+    return buffer;
+  }
+
+  @NonNull
+  private Manifest readManifest() throws IOException {
+    String latestStable = this.readString();
+    String latestSnapshot = this.readString();
+
+    int count = this.readCount();
+    Map<String, VersionReference> references = new HashMap<>(capacity(count));
+
+    for (int i = 0; i < count; ++i) {
+      VersionReference reference = new VersionReference(
+          this.readString(),
+          this.readEnum(VERSION_TYPES),
+          this.readTime(),
+          this.readTime(),
+          this.readUrl(),
+          this.readNullableString()
+      );
+      references.put(reference.getId(), reference);
+    }
+
+    VersionReference stable = references.get(latestStable);
+    VersionReference snapshot = references.get(latestSnapshot);
+    if (stable == null || snapshot == null) {
+      throw new IOException("Illegal snapshot: Latest version is not part of the version table");
+    }
+
+    return new Manifest(stable, snapshot, references);
+  }
+
+  @NonNull
+  private Version readVersion() throws IOException {
+    String id = this.readString();
+    int minimumLauncherVersion = this.readVarInt();
+    VersionType type = this.readEnum(VERSION_TYPES);
+    OffsetDateTime releaseTime = this.readTime();
+    OffsetDateTime modificationTime = this.readTime();
+    String mainClass = this.readString();
+    List<ProgramArgument> gameArguments = this.readArguments();
+    List<ProgramArgument> jvmArguments = this.readArguments();
+
+    Download clientDownload = this.readDownload();
+    Download serverDownload = this.readNullableDownload();
+    Download windowsServerDownload = this.readNullableDownload();
+
+    String assets = this.readString();
+    String assetIndexId = this.readString();
+    String assetIndexHash = this.readHash();
+    long assetIndexSize = this.readVarLong();
+    URL assetIndexUrl = this.readUrl();
+    AssetIndexReference assetIndex = new AssetIndexReference(assetIndexId, assetIndexHash,
+        assetIndexSize, assetIndexUrl, this.readVarLong());
+
+    int libraryCount = this.readCount();
+    List<LibraryReference> libraries = new ArrayList<>(
+        Math.min(libraryCount, MAX_PREALLOCATION));
+    for (int i = 0; i < libraryCount; ++i) {
+      libraries.add(this.readLibrary());
+    }
+
+    LoggerConfiguration logger = null;
+    if (this.in.readBoolean()) {
+      String fileId = this.readString();
+      Download file = this.readDownload();
+
+      logger = new LoggerConfiguration(
+          new LoggerConfigurationFile(fileId, file.getSha1(), file.getSize(), file.getUrl()),
+          this.readNullableString(),
+          this.readString()
+      );
+    }
+
+    return new Version(id, minimumLauncherVersion, type, releaseTime, modificationTime,
+        mainClass, gameArguments, jvmArguments, clientDownload, serverDownload,
+        windowsServerDownload, assets, assetIndex, libraries, logger);
+  }
+
+  @NonNull
+  private AssetIndex readAssetIndex() throws IOException {
+    int count = this.readCount();
+    Map<String, AssetObject> objects = new HashMap<>(capacity(count));
+
+    for (int i = 0; i < count; ++i) {
+      String path = this.readString();
+      String hash = this.readHash();
+      long size = this.readVarLong();
+      String url = this.readNullableString();
+
+      if (url == null) {
+        url = String.format(AssetObject.ASSET_URL_FORMAT, hash.substring(0, 2), hash);
+      }
+
+      objects.put(path, new AssetObject(hash, size, new URL(url)));
+    }
+
+    return new AssetIndex(objects);
+  }
+
+  @NonNull
+  private List<ProgramArgument> readArguments() throws IOException {
+    int count = this.readCount();
+    List<ProgramArgument> arguments = new ArrayList<>(Math.min(count, MAX_PREALLOCATION));
+
+    for (int i = 0; i < count; ++i) {
+      int valueCount = this.readCount();
+      List<String> values = new ArrayList<>(Math.min(valueCount, MAX_PREALLOCATION));
+
+      for (int j = 0; j < valueCount; ++j) {
+        values.add(this.readString());
+      }
+
+      arguments.add(new ProgramArgument(values, this.readRules()));
+    }
+
+    return arguments;
+  }
+
+  @NonNull
+  private Set<Rule> readRules() throws IOException {
+    int count = this.readCount();
+    if (count == 0) {
+      return Collections.emptySet();
+    }
+
+    Set<Rule> rules = new HashSet<>(capacity(count));
+    for (int i = 0; i < count; ++i) {
+      Action action = this.readEnum(ACTIONS);
+
+      int conditionCount = this.readCount();
+      Set<RuleCondition> conditions = new HashSet<>(capacity(conditionCount));
+
+      for (int j = 0; j < conditionCount; ++j) {
+        byte type = this.in.readByte();
+
+        switch (type) {
+          case SnapshotFormat.CONDITION_FEATURE:
+            int featureCount = this.readCount();
+            Map<String, Boolean> features = new HashMap<>(capacity(featureCount));
+
+            for (int k = 0; k < featureCount; ++k) {
+              features.put(this.readString(), this.in.readBoolean());
+            }
+
+            conditions.add(new FeatureCondition(features));
+            break;
+          case SnapshotFormat.CONDITION_OPERATING_SYSTEM:
+            String system = this.readNullableString();
+            String version = this.readNullableString();
+
+            conditions.add(new OperatingSystemCondition(system,
+                version == null ? null : Pattern.compile(version)));
+            break;
+          default:
+            throw new IOException("Illegal snapshot: Unknown rule condition type " + type);
+        }
+      }
+
+      rules.add(new Rule(action, conditions));
+    }
+
+    return rules;
+  }
+
+  @NonNull
+  private LibraryReference readLibrary() throws IOException {
+    String name = this.readString();
+    LibraryArtifact artifact = this.in.readBoolean() ? this.readArtifact() : null;
+
+    int classifierCount = this.readCount();
+    Map<String, LibraryArtifact> classifiers = new HashMap<>(capacity(classifierCount));
+    for (int i = 0; i < classifierCount; ++i) {
+      classifiers.put(this.readString(), this.readArtifact());
+    }
+
+    LibraryArtifact linuxNatives = this.readNatives(classifiers);
+    LibraryArtifact macNatives = this.readNatives(classifiers);
+    LibraryArtifact windowsNatives = this.readNatives(classifiers);
+
+    ExtractionConfiguration extraction = null;
+    if (this.in.readBoolean()) {
+      extraction = new ExtractionConfiguration(this.readStrings(), this.readStrings());
+    }
+
+    return new LibraryReference(name, linuxNatives, macNatives, windowsNatives,
+        new DownloadMap(artifact, classifiers), extraction, this.readRules());
+  }
+
+  @Nullable
+  private LibraryArtifact readNatives(@NonNull Map<String, LibraryArtifact> classifiers)
+      throws IOException {
+    byte type = this.in.readByte();
+
+    switch (type) {
+      case SnapshotFormat.NATIVES_ABSENT:
+        return null;
+      case SnapshotFormat.NATIVES_CLASSIFIER:
+        String classifier = this.readString();
+        LibraryArtifact artifact = classifiers.get(classifier);
+
+        if (artifact == null) {
+          throw new IOException("Illegal snapshot: Unknown classifier \"" + classifier + "\"");
+        }
+
+        return artifact;
+      case SnapshotFormat.NATIVES_INLINE:
+        return this.readArtifact();
+      default:
+        throw new IOException("Illegal snapshot: Unknown natives reference type " + type);
+    }
+  }
+
+  @NonNull
+  private LibraryArtifact readArtifact() throws IOException {
+    String hash = this.readHash();
+    long size = this.readVarLong();
+    URL url = this.readUrl();
+
+    return new LibraryArtifact(hash, size, url, Paths.get(this.readString()));
+  }
+
+  @Nullable
+  private Download readNullableDownload() throws IOException {
+    return this.in.readBoolean() ? this.readDownload() : null;
+  }
+
+  @NonNull
+  private Download readDownload() throws IOException {
+    String hash = this.readHash();
+    long size = this.readVarLong();
+
+    return new Download(hash, size, this.readUrl());
+  }
+
+  @NonNull
+  private String readHash() throws IOException {
+    byte type = this.in.readByte();
+
+    switch (type) {
+      case SnapshotFormat.HASH_PACKED:
+        byte[] hash = new byte[SnapshotFormat.PACKED_HASH_LENGTH];
+        this.in.readFully(hash);
+        return SnapshotFormat.toHex(hash);
+      case SnapshotFormat.HASH_LITERAL:
+        return this.readString();
+      default:
+        throw new IOException("Illegal snapshot: Unknown hash encoding " + type);
+    }
+  }
+
+  @NonNull
+  private OffsetDateTime readTime() throws IOException {
+    long epochSecond = this.in.readLong();
+    int nano = this.readVarInt();
+    int offset = this.in.readInt();
+
+    return OffsetDateTime.ofInstant(Instant.ofEpochSecond(epochSecond, nano),
+        ZoneOffset.ofTotalSeconds(offset));
+  }
+
+  @NonNull
+  private URL readUrl() throws IOException {
+    return new URL(this.readString());
+  }
+
+  @NonNull
+  private <E extends Enum<E>> E readEnum(@NonNull E[] values) throws IOException {
+    int ordinal = this.in.readUnsignedByte();
+
+    if (ordinal >= values.length) {
+      throw new IOException("Illegal snapshot: Unknown constant " + ordinal);
+    }
+
+    return values[ordinal];
+  }
+
+  @NonNull
+  private Set<String> readStrings() throws IOException {
+    int count = this.readCount();
+    Set<String> values = new HashSet<>(capacity(count));
+
+    for (int i = 0; i < count; ++i) {
+      values.add(this.readString());
+    }
+
+    return values;
+  }
+
+  @NonNull
+  private String readString() throws IOException {
+    int index = this.readVarInt();
+
+    if (index < 0 || index >= this.strings.length) {
+      throw new IOException("Illegal snapshot: String index " + index + " is out of bounds");
+    }
+
+    return this.strings[index];
+  }
+
+  @Nullable
+  private String readNullableString() throws IOException {
+    int index = this.readVarInt();
+
+    if (index == 0) {
+      return null;
+    }
+    if (index < 0 || index > this.strings.length) {
+      throw new IOException("Illegal snapshot: String index " + index + " is out of bounds");
+    }
+
+    return this.strings[index - 1];
+  }
+
+  /**
+   * Reads an element count and validates it against the remaining input (every element occupies
+   * at least one byte).
+   */
+  private int readCount() throws IOException {
+    long count = this.readVarLong();
+
+    if (count < 0 || count > Integer.MAX_VALUE || count > this.input.remaining) {
+      throw new IOException("Illegal snapshot: Count " + count + " exceeds remaining input");
+    }
+
+    return (int) count;
+  }
+
+  private int readVarInt() throws IOException {
+    return (int) this.readVarLong();
+  }
+
+  private long readVarLong() throws IOException {
+    long value = 0;
+
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = this.in.readUnsignedByte();
+      value |= (long) (b & 0x7F) << shift;
+
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+
+    throw new IOException("Illegal snapshot: Malformed variable length integer");
+  }
+
+  /**
+   * Calculates the initial capacity of a hash based collection which is expected to hold the
+   * specified amount of elements without being resized.
+   */
+  private static int capacity(int elements) {
+    return (int) (Math.min(elements, MAX_PREALLOCATION) / 0.75f) + 1;
+  }
+
+  /**
+   * Decodes an object from a snapshot body.
+   */
+  @FunctionalInterface
+  private interface Decoder<T> {
+
+    T decode(@NonNull SnapshotReader reader) throws IOException;
+  }
+
+  /**
+   * Tracks the amount of bytes which may still be read from the underlying stream.
+   */
+  private static final class LimitedInputStream extends FilterInputStream {
+
+    private long remaining;
+
+    private LimitedInputStream(@NonNull InputStream inputStream, long limit) {
+      super(inputStream);
+      this.remaining = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+
+      if (b != -1) {
+        --this.remaining;
+      }
+
+      return b;
+    }
+
+    @Override
+    public int read(@NonNull byte[] b, int off, int len) throws IOException {
+      int length = super.read(b, off, len);
+
+      if (length > 0) {
+        this.remaining -= length;
+      }
+
+      return length;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      this.remaining -= skipped;
+      return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,445 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.snapshot;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.basinmc.lavatory.Manifest;
+import org.basinmc.lavatory.asset.AssetIndex;
+import org.basinmc.lavatory.asset.AssetIndexReference;
+import org.basinmc.lavatory.asset.AssetObject;
+import org.basinmc.lavatory.file.Download;
+import org.basinmc.lavatory.file.LibraryArtifact;
+import org.basinmc.lavatory.file.LibraryReference;
+import org.basinmc.lavatory.file.LibraryReference.DownloadMap;
+import org.basinmc.lavatory.file.LibraryReference.ExtractionConfiguration;
+import org.basinmc.lavatory.file.LoggerConfiguration;
+import org.basinmc.lavatory.file.LoggerConfigurationFile;
+import org.basinmc.lavatory.rule.Rule;
+import org.basinmc.lavatory.rule.RuleCondition;
+import org.basinmc.lavatory.rule.feature.Feature;
+import org.basinmc.lavatory.rule.feature.FeatureCondition;
+import org.basinmc.lavatory.rule.system.OperatingSystemCondition;
+import org.basinmc.lavatory.version.ProgramArgument;
+import org.basinmc.lavatory.version.Version;
+import org.basinmc.lavatory.version.VersionReference;
+
+/**
+ * <p>Encodes parsed manifests, versions and asset indices into the binary snapshot format.</p>
+ *
+ * <p>Snapshots are intended as a local cache representation of documents which have previously
+ * been retrieved from the launcher metadata servers and may be decoded significantly faster than
+ * their respective json representations (see {@link SnapshotReader}).</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class SnapshotWriter {
+
+  private final Map<String, Integer> strings = new HashMap<>();
+  private final ByteArrayOutputStream stringTable = new ByteArrayOutputStream();
+  private final ByteArrayOutputStream bodyBuffer = new ByteArrayOutputStream();
+  private final DataOutputStream body = new DataOutputStream(this.bodyBuffer);
+
+  private SnapshotWriter() {
+  }
+
+  /**
+   * Encodes a version manifest into the specified output stream.
+   *
+   * @param manifest a manifest.
+   * @param outputStream an output stream.
+   * @throws IOException when writing to the output stream fails.
+   */
+  public static void write(@NonNull Manifest manifest, @NonNull OutputStream outputStream)
+      throws IOException {
+    SnapshotWriter writer = new SnapshotWriter();
+    writer.writeManifest(manifest);
+    writer.finish(SnapshotFormat.TYPE_MANIFEST, outputStream);
+  }
+
+  /**
+   * Encodes a version manifest into the specified file.
+   *
+   * @param manifest a manifest.
+   * @param path a file path.
+   * @throws IOException when writing to the file fails.
+   */
+  public static void write(@NonNull Manifest manifest, @NonNull Path path) throws IOException {
+    try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(path))) {
+      write(manifest, outputStream);
+    }
+  }
+
+  /**
+   * Encodes a version into the specified output stream.
+   *
+   * @param version a version.
+   * @param outputStream an output stream.
+   * @throws IOException when writing to the output stream fails.
+   * @throws IllegalArgumentException when the version contains an unsupported rule condition.
+   */
+  public static void write(@NonNull Version version, @NonNull OutputStream outputStream)
+      throws IOException {
+    SnapshotWriter writer = new SnapshotWriter();
+    writer.writeVersion(version);
+    writer.finish(SnapshotFormat.TYPE_VERSION, outputStream);
+  }
+
+  /**
+   * Encodes a version into the specified file.
+   *
+   * @param version a version.
+   * @param path a file path.
+   * @throws IOException when writing to the file fails.
+   * @throws IllegalArgumentException when the version contains an unsupported rule condition.
+   */
+  public static void write(@NonNull Version version, @NonNull Path path) throws IOException {
+    try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(path))) {
+      write(version, outputStream);
+    }
+  }
+
+  /**
+   * Encodes an asset index into the specified output stream.
+   *
+   * @param index an asset index.
+   * @param outputStream an output stream.
+   * @throws IOException when writing to the output stream fails.
+   */
+  public static void write(@NonNull AssetIndex index, @NonNull OutputStream outputStream)
+      throws IOException {
+    SnapshotWriter writer = new SnapshotWriter();
+    writer.writeAssetIndex(index);
+    writer.finish(SnapshotFormat.TYPE_ASSET_INDEX, outputStream);
+  }
+
+  /**
+   * Encodes an asset index into the specified file.
+   *
+   * @param index an asset index.
+   * @param path a file path.
+   * @throws IOException when writing to the file fails.
+   */
+  public static void write(@NonNull AssetIndex index, @NonNull Path path) throws IOException {
+    try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(path))) {
+      write(index, outputStream);
+    }
+  }
+
+  /**
+   * Writes the snapshot header, string table and previously encoded body to the specified output
+   * stream.
+   */
+  private void finish(byte type, @NonNull OutputStream outputStream) throws IOException {
+    DataOutputStream out = new DataOutputStream(outputStream);
+    out.writeInt(SnapshotFormat.MAGIC);
+    out.writeShort(SnapshotFormat.VERSION);
+    out.writeByte(type);
+
+    writeVarInt(out, this.strings.size());
+    this.stringTable.writeTo(out);
+
+    this.body.flush();
+    this.bodyBuffer.writeTo(out);
+    out.flush();
+  }
+
+  private void writeManifest(@NonNull Manifest manifest) throws IOException {
+    this.writeString(manifest.getLatestStable().getId());
+    this.writeString(manifest.getLatestSnapshot().getId());
+
+    Set<VersionReference> references = manifest.getVersions();
+    writeVarInt(this.body, references.size());
+
+    for (VersionReference reference : references) {
+      this.writeString(reference.getId());
+      this.body.writeByte(reference.getType().ordinal());
+      this.writeTime(reference.getReleaseTime());
+      this.writeTime(reference.getModificationTime());
+      this.writeUrl(reference.getUrl());
+      this.writeNullableString(reference.getSha1().orElse(null));
+    }
+  }
+
+  private void writeVersion(@NonNull Version version) throws IOException {
+    this.writeString(version.getId());
+    writeVarInt(this.body, version.getMinimumLauncherVersion());
+    this.body.writeByte(version.getType().ordinal());
+    this.writeTime(version.getReleaseTime());
+    this.writeTime(version.getModificationTime());
+    this.writeString(version.getMainClass());
+    this.writeArguments(version.getGameArguments());
+    this.writeArguments(version.getJvmArguments());
+
+    this.writeDownload(version.getClientDownload());
+    this.writeNullableDownload(version.getServerDownload().orElse(null));
+    this.writeNullableDownload(version.getWindowsServerDownload().orElse(null));
+
+    this.writeString(version.getAssets());
+    AssetIndexReference assetIndex = version.getAssetIndex();
+    this.writeString(assetIndex.getId());
+    this.writeDownload(assetIndex);
+    writeVarLong(this.body, assetIndex.getTotalSize());
+
+    Set<LibraryReference> libraries = version.getLibraries();
+    writeVarInt(this.body, libraries.size());
+    for (LibraryReference library : libraries) {
+      this.writeLibrary(library);
+    }
+
+    LoggerConfiguration logger = version.getClientLoggerConfiguration().orElse(null);
+    this.body.writeBoolean(logger != null);
+    if (logger != null) {
+      LoggerConfigurationFile file = logger.getFile();
+      this.writeString(file.getId());
+      this.writeDownload(file);
+      this.writeNullableString(logger.getArgument().orElse(null));
+      this.writeString(logger.getType());
+    }
+  }
+
+  private void writeAssetIndex(@NonNull AssetIndex index) throws IOException {
+    Map<String, AssetObject> objects = index.getObjects();
+    writeVarInt(this.body, objects.size());
+
+    for (Map.Entry<String, AssetObject> entry : objects.entrySet()) {
+      AssetObject object = entry.getValue();
+      String defaultUrl = String.format(AssetObject.ASSET_URL_FORMAT,
+          object.getSha1().substring(0, 2), object.getSha1());
+      String url = object.getUrl().toExternalForm();
+
+      this.writeString(entry.getKey());
+      this.writeHash(object.getSha1());
+      writeVarLong(this.body, object.getSize());
+      this.writeNullableString(defaultUrl.equals(url) ? null : url);
+    }
+  }
+
+  private void writeArguments(@NonNull List<ProgramArgument> arguments) throws IOException {
+    writeVarInt(this.body, arguments.size());
+
+    for (ProgramArgument argument : arguments) {
+      List<String> values = argument.getValue();
+      writeVarInt(this.body, values.size());
+
+      for (String value : values) {
+        this.writeString(value);
+      }
+
+      this.writeRules(argument.getRules());
+    }
+  }
+
+  private void writeRules(@NonNull Set<Rule> rules) throws IOException {
+    writeVarInt(this.body, rules.size());
+
+    for (Rule rule : rules) {
+      this.body.writeByte(rule.getAction().ordinal());
+
+      Set<RuleCondition> conditions = rule.getConditions();
+      writeVarInt(this.body, conditions.size());
+
+      for (RuleCondition condition : conditions) {
+        if (condition instanceof FeatureCondition) {
+          Map<Feature, Boolean> features = ((FeatureCondition) condition).getFeatureMap();
+
+          this.body.writeByte(SnapshotFormat.CONDITION_FEATURE);
+          writeVarInt(this.body, features.size());
+
+          for (Map.Entry<Feature, Boolean> feature : features.entrySet()) {
+            this.writeString(feature.getKey().getKey());
+            this.body.writeBoolean(feature.getValue());
+          }
+        } else if (condition instanceof OperatingSystemCondition) {
+          OperatingSystemCondition os = (OperatingSystemCondition) condition;
+
+          this.body.writeByte(SnapshotFormat.CONDITION_OPERATING_SYSTEM);
+          this.writeNullableString(os.getSystem().map((s) -> s.getKey()).orElse(null));
+          this.writeNullableString(os.getVersion().map((p) -> p.pattern()).orElse(null));
+        } else {
+          throw new IllegalArgumentException(
+              "Unsupported rule condition: " + condition.getClass().getName());
+        }
+      }
+    }
+  }
+
+  private void writeLibrary(@NonNull LibraryReference library) throws IOException {
+    this.writeString(library.getName());
+
+    DownloadMap downloads = library.getDownloads();
+    LibraryArtifact artifact = downloads.getArtifact().orElse(null);
+    this.body.writeBoolean(artifact != null);
+    if (artifact != null) {
+      this.writeArtifact(artifact);
+    }
+
+    Map<String, LibraryArtifact> classifiers = downloads.getClassifiers();
+    writeVarInt(this.body, classifiers.size());
+    for (Map.Entry<String, LibraryArtifact> entry : classifiers.entrySet()) {
+      this.writeString(entry.getKey());
+      this.writeArtifact(entry.getValue());
+    }
+
+    this.writeNatives(classifiers, library.getLinuxNativesArtifact().orElse(null));
+    this.writeNatives(classifiers, library.getMacNativesArtifact().orElse(null));
+    this.writeNatives(classifiers, library.getWindowsNativesArtifact().orElse(null));
+
+    ExtractionConfiguration extraction = library.getExtractionConfiguration().orElse(null);
+    this.body.writeBoolean(extraction != null);
+    if (extraction != null) {
+      this.writeStrings(extraction.getExcludes());
+      this.writeStrings(extraction.getIncludes());
+    }
+
+    this.writeRules(library.getRules());
+  }
+
+  /**
+   * Writes a reference to a natives artifact. As natives are typically part of the classifier map,
+   * we'll simply refer to their respective classifier instead of repeating the artifact.
+   */
+  private void writeNatives(@NonNull Map<String, LibraryArtifact> classifiers,
+      @Nullable LibraryArtifact artifact) throws IOException {
+    if (artifact == null) {
+      this.body.writeByte(SnapshotFormat.NATIVES_ABSENT);
+      return;
+    }
+
+    for (Map.Entry<String, LibraryArtifact> entry : classifiers.entrySet()) {
+      if (entry.getValue().equals(artifact)) {
+        this.body.writeByte(SnapshotFormat.NATIVES_CLASSIFIER);
+        this.writeString(entry.getKey());
+        return;
+      }
+    }
+
+    this.body.writeByte(SnapshotFormat.NATIVES_INLINE);
+    this.writeArtifact(artifact);
+  }
+
+  private void writeArtifact(@NonNull LibraryArtifact artifact) throws IOException {
+    this.writeDownload(artifact);
+    this.writeString(artifact.getPath().toString());
+  }
+
+  private void writeNullableDownload(@Nullable Download download) throws IOException {
+    this.body.writeBoolean(download != null);
+
+    if (download != null) {
+      this.writeDownload(download);
+    }
+  }
+
+  private void writeDownload(@NonNull Download download) throws IOException {
+    this.writeHash(download.getSha1());
+    writeVarLong(this.body, download.getSize());
+    this.writeUrl(download.getUrl());
+  }
+
+  private void writeHash(@NonNull String hash) throws IOException {
+    if (SnapshotFormat.isPackable(hash)) {
+      this.body.writeByte(SnapshotFormat.HASH_PACKED);
+
+      for (int i = 0; i < SnapshotFormat.PACKED_HASH_LENGTH; ++i) {
+        this.body.writeByte(Character.digit(hash.charAt(i * 2), 16) << 4
+            | Character.digit(hash.charAt(i * 2 + 1), 16));
+      }
+      return;
+    }
+
+    this.body.writeByte(SnapshotFormat.HASH_LITERAL);
+    this.writeString(hash);
+  }
+
+  private void writeTime(@NonNull OffsetDateTime time) throws IOException {
+    this.body.writeLong(time.toEpochSecond());
+    writeVarInt(this.body, time.getNano());
+    this.body.writeInt(time.getOffset().getTotalSeconds());
+  }
+
+  private void writeUrl(@NonNull URL url) throws IOException {
+    this.writeString(url.toExternalForm());
+  }
+
+  private void writeStrings(@NonNull Collection<String> values) throws IOException {
+    writeVarInt(this.body, values.size());
+
+    for (String value : values) {
+      this.writeString(value);
+    }
+  }
+
+  private void writeString(@NonNull String value) throws IOException {
+    writeVarInt(this.body, this.index(value));
+  }
+
+  /**
+   * Writes a reference to a string which may be null. Null values are indicated by index zero while
+   * all other indices are shifted by one.
+   */
+  private void writeNullableString(@Nullable String value) throws IOException {
+    writeVarInt(this.body, value == null ? 0 : this.index(value) + 1);
+  }
+
+  /**
+   * Retrieves the string table index for a given value and appends it to the table if it has not
+   * been encountered before.
+   */
+  private int index(@NonNull String value) throws IOException {
+    Integer index = this.strings.get(value);
+
+    if (index == null) {
+      index = this.strings.size();
+      this.strings.put(value, index);
+
+      byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+      writeVarInt(this.stringTable, encoded.length);
+      this.stringTable.write(encoded);
+    }
+
+    return index;
+  }
+
+  private static void writeVarInt(@NonNull OutputStream out, int value) throws IOException {
+    writeVarLong(out, value & 0xFFFFFFFFL);
+  }
+
+  private static void writeVarLong(@NonNull OutputStream out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+
+    out.write((int) value);
+  }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.snapshot;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.basinmc.lavatory.fetch.RetryPolicy;
+import org.basinmc.lavatory.version.Version;
+import org.basinmc.lavatory.version.VersionReference;
+
+/**
+ * <p>Caches decoded versions in memory and as binary snapshots on disk.</p>
+ *
+ * <p>Cached versions are identified by their identifier and the modification time advertised by
+ * the version manifest. As long as the manifest advertises the same modification time, versions
+ * are served from the cache without contacting the server. Once a version has been modified, its
+ * previous revision is replaced on disk upon the next retrieval.</p>
+ *
+ * <p>The memory tier retains a limited amount of recently used versions while the disk tier is
+ * unbounded (there is only ever a single revision per version identifier on disk).</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class VersionCache {
+
+  private static final String FILE_EXTENSION = ".snapshot";
+
+  private final Path directory;
+  private final RetryPolicy retryPolicy;
+  private final Map<String, Version> memory;
+
+  private VersionCache(@NonNull Path directory, int capacity, @Nullable RetryPolicy retryPolicy) {
+    this.directory = directory;
+    this.retryPolicy = retryPolicy;
+    this.memory = new LinkedHashMap<String, Version>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Version> eldest) {
+        return this.size() > capacity;
+      }
+    };
+  }
+
+  /**
+   * Creates a new factory for caches which store their snapshots within the specified directory.
+   *
+   * @param directory a cache directory.
+   * @return a factory.
+   */
+  @NonNull
+  public static Builder builder(@NonNull Path directory) {
+    return new Builder(directory);
+  }
+
+  /**
+   * Retrieves the version which is identified by the specified reference from the cache or, if
+   * no up to date copy is cached, from the server.
+   *
+   * @param reference a version reference.
+   * @return a version.
+   * @throws IOException when the version is not cached and retrieving it fails.
+   */
+  @NonNull
+  public Version fetch(@NonNull VersionReference reference) throws IOException {
+    Optional<Version> cached = this.get(reference);
+    if (cached.isPresent()) {
+      return cached.get();
+    }
+
+    Version version;
+    if (this.retryPolicy != null) {
+      version = reference.fetch(this.retryPolicy);
+    } else {
+      version = reference.fetch();
+    }
+
+    this.store(reference, version);
+    return version;
+  }
+
+  /**
+   * Retrieves an up to date copy of the referenced version without contacting the server.
+   *
+   * @param reference a version reference.
+   * @return a version or, if no up to date copy is cached, an empty optional.
+   */
+  @NonNull
+  public Optional<Version> get(@NonNull VersionReference reference) {
+    String key = key(reference);
+
+    synchronized (this.memory) {
+      Version version = this.memory.get(key);
+
+      if (version != null) {
+        return Optional.of(version);
+      }
+    }
+
+    Path path = this.resolve(reference);
+    if (!Files.isRegularFile(path)) {
+      return Optional.empty();
+    }
+
+    Version version;
+    try {
+      version = SnapshotReader.readVersion(path);
+    } catch (IOException | RuntimeException ex) {
+      // corrupted (or outdated) snapshots are simply discarded and retrieved again
+      this.delete(path);
+      return Optional.empty();
+    }
+
+    if (!reference.getId().equals(version.getId())) {
+      return Optional.empty();
+    }
+
+    synchronized (this.memory) {
+      this.memory.put(key, version);
+    }
+
+    return Optional.of(version);
+  }
+
+  /**
+   * Stores a version within the cache and replaces all previous revisions of the same version.
+   *
+   * @param reference the reference from which the version has been retrieved.
+   * @param version a version.
+   * @throws IOException when writing the snapshot fails.
+   */
+  public void store(@NonNull VersionReference reference, @NonNull Version version)
+      throws IOException {
+    Path path = this.resolve(reference);
+    Files.createDirectories(path.getParent());
+
+    Path temporary = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".part");
+    try {
+      SnapshotWriter.write(version, temporary);
+      Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+
+    try (DirectoryStream<Path> stream = Files
+        .newDirectoryStream(path.getParent(), "*" + FILE_EXTENSION)) {
+      for (Path revision : stream) {
+        if (!revision.equals(path)) {
+          this.delete(revision);
+        }
+      }
+    }
+
+    String id = reference.getId();
+    synchronized (this.memory) {
+      this.memory.keySet().removeIf((k) -> id.equals(id(k)));
+      this.memory.put(key(reference), version);
+    }
+  }
+
+  /**
+   * Removes all cached revisions of the specified version.
+   *
+   * @param id a version identifier.
+   * @throws IOException when deleting a snapshot fails.
+   */
+  public void invalidate(@NonNull String id) throws IOException {
+    synchronized (this.memory) {
+      this.memory.keySet().removeIf((k) -> id.equals(id(k)));
+    }
+
+    Path directory = this.directory.resolve(sanitize(id));
+    if (!Files.isDirectory(directory)) {
+      return;
+    }
+
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+      for (Path revision : stream) {
+        Files.deleteIfExists(revision);
+      }
+    }
+    Files.deleteIfExists(directory);
+  }
+
+  /**
+   * Resolves the snapshot location of the referenced revision of a version.
+   */
+  @NonNull
+  private Path resolve(@NonNull VersionReference reference) {
+    return this.directory.resolve(sanitize(reference.getId())).resolve(
+        reference.getModificationTime().toInstant().toEpochMilli() + FILE_EXTENSION);
+  }
+
+  @NonNull
+  private static String key(@NonNull VersionReference reference) {
+    return reference.getId() + "@" + reference.getModificationTime().toInstant().toEpochMilli();
+  }
+
+  /**
+   * Extracts the version identifier from a memory key (identifiers may contain '@' themselves
+   * while modification times never do).
+   */
+  @NonNull
+  private static String id(@NonNull String key) {
+    return key.substring(0, key.lastIndexOf('@'));
+  }
+
+  /**
+   * Escapes all characters which may not be safely used within a file name.
+   *
+   * <p>Each escaped character is replaced by '%' and its four digit hexadecimal code (including
+   * '%' itself) thus guaranteeing that distinct identifiers never share a directory. Leading dots
+   * are escaped as well in order to prevent identifiers such as ".." from resolving outside of
+   * the cache directory.</p>
+   */
+  @NonNull
+  private static String sanitize(@NonNull String id) {
+    if (id.isEmpty()) {
+      return "%";
+    }
+
+    StringBuilder builder = new StringBuilder(id.length());
+    for (int i = 0; i < id.length(); ++i) {
+      char c = id.charAt(i);
+
+      if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-'
+          || c == '_' || (c == '.' && i != 0)) {
+        builder.append(c);
+      } else {
+        builder.append('%').append(String.format("%04X", (int) c));
+      }
+    }
+
+    return builder.toString();
+  }
+
+  private void delete(@NonNull Path path) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException ignore) {
+      // the file will be replaced or deleted upon the next store
+    }
+  }
+
+  /**
+   * Provides a factory for version caches.
+   */
+  public static final class Builder {
+
+    private final Path directory;
+    private int capacity = 64;
+    private RetryPolicy retryPolicy;
+
+    private Builder(@NonNull Path directory) {
+      this.directory = directory;
+    }
+
+    /**
+     * Constructs a new cache using the configuration within this builder.
+     *
+     * @return a cache.
+     */
+    @NonNull
+    public VersionCache build() {
+      return new VersionCache(this.directory, this.capacity, this.retryPolicy);
+    }
+
+    /**
+     * Selects the maximum amount of versions which are retained in memory.
+     *
+     * @param capacity a version count.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withCapacity(int capacity) {
+      if (capacity < 0) {
+        throw new IllegalArgumentException("Illegal capacity: Must not be negative");
+      }
+
+      this.capacity = capacity;
+      return this;
+    }
+
+    /**
+     * Selects a policy according to which failed requests are repeated.
+     *
+     * @param retryPolicy a policy or null to fail on the first error.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withRetryPolicy(@Nullable RetryPolicy retryPolicy) {
+      this.retryPolicy = retryPolicy;
+      return this;
+    }
+  }
+}
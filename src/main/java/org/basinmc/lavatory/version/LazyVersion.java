@@ -0,0 +1,269 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.version;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonFormat.Feature;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.basinmc.lavatory.Mappers;
+import org.basinmc.lavatory.ResolverContext;
+import org.basinmc.lavatory.asset.AssetIndexReference;
+import org.basinmc.lavatory.file.Download;
+import org.basinmc.lavatory.file.LibraryReference;
+import org.basinmc.lavatory.file.LoggerConfiguration;
+
+/**
+ * <p>Represents a version document of which only the header has been decoded.</p>
+ *
+ * <p>The identification, downloads, asset index and logger configuration of the version are
+ * decoded immediately while its arguments and libraries are retained as raw token buffers and are
+ * only decoded when they are first accessed (or when the version is reduced or compared). Callers
+ * which are only interested in the header of a large amount of versions may thus skip the
+ * comparatively expensive decoding of library rule sets and arguments entirely.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class LazyVersion extends Version {
+
+  private final Map<String, Download> downloads;
+  private final Map<String, LoggerConfiguration> loggerConfigurations;
+  private final String legacyArguments;
+
+  private ObjectMapper mapper = Mappers.getDefault();
+  private TokenBuffer arguments;
+  private TokenBuffer libraries;
+  private volatile Version materialized;
+
+  @JsonCreator
+  LazyVersion(
+      @NonNull @JsonProperty(value = "id", required = true) String id,
+      @JsonProperty(value = "minimumLauncherVersion", required = true) int minimumLauncherVersion,
+      @NonNull @JsonProperty(value = "type", required = true) @JsonFormat(with = Feature.ACCEPT_CASE_INSENSITIVE_PROPERTIES) VersionType type,
+      @NonNull @JsonProperty(value = "releaseTime", required = true) OffsetDateTime releaseTime,
+      @NonNull @JsonProperty(value = "time", required = true) OffsetDateTime modificationTime,
+      @NonNull @JsonProperty(value = "mainClass", required = true) String mainClass,
+      @Nullable @JsonProperty("arguments") TokenBuffer arguments,
+      @NonNull @JsonProperty(value = "downloads", required = true) Map<String, Download> downloads,
+      @NonNull @JsonProperty(value = "assets", required = true) String assets,
+      @NonNull @JsonProperty(value = "assetIndex", required = true) AssetIndexReference assetIndex,
+      @NonNull @JsonProperty(value = "libraries", required = true) TokenBuffer libraries,
+      @Nullable @JsonProperty("logging") Map<String, LoggerConfiguration> loggerConfigurations,
+      @Nullable @JsonProperty("minecraftArguments") String legacyArguments) {
+    super(id, minimumLauncherVersion, type, releaseTime, modificationTime, mainClass,
+        Collections.emptyList(), Collections.emptyList(), downloads.get("client"),
+        downloads.get("server"), downloads.get("windows_server"), assets, assetIndex,
+        Collections.emptySet(),
+        loggerConfigurations == null ? null : loggerConfigurations.get("client"));
+    this.downloads = downloads;
+    this.loggerConfigurations = loggerConfigurations;
+    this.legacyArguments = legacyArguments;
+    this.arguments = arguments;
+    this.libraries = libraries;
+  }
+
+  /**
+   * Decodes the header of a version document from the specified input stream.
+   *
+   * @param inputStream an input stream.
+   * @return a lazily decoded version.
+   * @throws IOException when reading from the input stream fails or the data is malformed.
+   */
+  @NonNull
+  public static LazyVersion read(@NonNull InputStream inputStream) throws IOException {
+    return read(inputStream, Mappers.getDefault());
+  }
+
+  /**
+   * Decodes the header of a version document from the specified input stream using a custom
+   * object mapper (which is also used to decode the remaining sections on demand).
+   *
+   * @param inputStream an input stream.
+   * @param mapper an object mapper.
+   * @return a lazily decoded version.
+   * @throws IOException when reading from the input stream fails or the data is malformed.
+   */
+  @NonNull
+  public static LazyVersion read(@NonNull InputStream inputStream, @NonNull ObjectMapper mapper)
+      throws IOException {
+    LazyVersion version = mapper.readValue(inputStream, LazyVersion.class);
+    version.mapper = mapper;
+    return version;
+  }
+
+  /**
+   * Decodes the header of a version document from the specified file.
+   *
+   * @param path a file path.
+   * @return a lazily decoded version.
+   * @throws IOException when reading from the file fails or the data is malformed.
+   */
+  @NonNull
+  public static LazyVersion read(@NonNull Path path) throws IOException {
+    try (InputStream inputStream = Files.newInputStream(path)) {
+      return read(inputStream);
+    }
+  }
+
+  /**
+   * Evaluates whether the arguments and libraries of this version have been decoded.
+   *
+   * @return true if decoded, false otherwise.
+   */
+  public boolean isMaterialized() {
+    return this.materialized != null;
+  }
+
+  /**
+   * Decodes the remaining sections of this version (if necessary) and retrieves the fully decoded
+   * representation.
+   *
+   * @return a fully decoded version.
+   * @throws UncheckedIOException when the retained sections are malformed.
+   */
+  @NonNull
+  public Version materialize() {
+    Version version = this.materialized;
+
+    if (version == null) {
+      synchronized (this) {
+        version = this.materialized;
+
+        if (version == null) {
+          try {
+            Map<String, List<ProgramArgument>> arguments = this
+                .decode(this.arguments, new TypeReference<Map<String, List<ProgramArgument>>>() {
+                });
+            List<LibraryReference> libraries = this
+                .decode(this.libraries, new TypeReference<List<LibraryReference>>() {
+                });
+
+            version = new Version(this.getId(), this.getMinimumLauncherVersion(), this.getType(),
+                this.getReleaseTime(), this.getModificationTime(), this.getMainClass(), arguments,
+                this.downloads, this.getAssets(), this.getAssetIndex(),
+                Version.indexLibraries(libraries),
+                this.loggerConfigurations, this.legacyArguments);
+          } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+          }
+
+          this.materialized = version;
+          this.arguments = null;
+          this.libraries = null;
+        }
+      }
+    }
+
+    return version;
+  }
+
+  @Nullable
+  private <T> T decode(@Nullable TokenBuffer buffer, @NonNull TypeReference<T> type)
+      throws IOException {
+    if (buffer == null) {
+      return null;
+    }
+
+    try (JsonParser parser = buffer.asParser(this.mapper)) {
+      return this.mapper.readValue(parser, type);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public List<ProgramArgument> getGameArguments() {
+    return this.materialize().getGameArguments();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public List<ProgramArgument> getJvmArguments() {
+    return this.materialize().getJvmArguments();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public Optional<LibraryReference> getLibrary(@NonNull String name) {
+    return this.materialize().getLibrary(name);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public Set<LibraryReference> getLibraries() {
+    return this.materialize().getLibraries();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @NonNull
+  @Override
+  public Version reduce(@NonNull ResolverContext ctx) {
+    return this.materialize().reduce(ctx);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || this.getClass() != o.getClass()) {
+      return false;
+    }
+    return this.materialize().equals(((LazyVersion) o).materialize());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int hashCode() {
+    return this.materialize().hashCode();
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.version;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.basinmc.lavatory.file.LibraryArtifact;
+import org.basinmc.lavatory.file.LibraryCoordinate;
+import org.basinmc.lavatory.file.LibraryReference;
+
+/**
+ * <p>Provides an index of the libraries which are referenced by an arbitrary amount of
+ * versions.</p>
+ *
+ * <p>Libraries are indexed by their parsed coordinates (including the coordinates of their
+ * respective classifiers) and may thus be queried for the versions which use them as well as
+ * their artifacts in constant time. Libraries with malformed identifiers are not indexed.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class LibraryIndex {
+
+  private final Map<LibraryCoordinate, Set<String>> versions;
+  private final Map<LibraryCoordinate, Set<LibraryArtifact>> artifacts;
+  private final Map<String, Set<LibraryCoordinate>> modules;
+
+  private LibraryIndex(@NonNull Map<LibraryCoordinate, Set<String>> versions,
+      @NonNull Map<LibraryCoordinate, Set<LibraryArtifact>> artifacts,
+      @NonNull Map<String, Set<LibraryCoordinate>> modules) {
+    this.versions = versions;
+    this.artifacts = artifacts;
+    this.modules = modules;
+  }
+
+  /**
+   * Creates a new empty library index factory.
+   *
+   * @return a factory.
+   */
+  @NonNull
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Retrieves the set of all indexed coordinates.
+   *
+   * @return a set of coordinates.
+   */
+  @NonNull
+  public Set<LibraryCoordinate> getCoordinates() {
+    return Collections.unmodifiableSet(this.versions.keySet());
+  }
+
+  /**
+   * Retrieves all indexed coordinates (of any version or classifier) of a given module.
+   *
+   * @param groupId a group identifier.
+   * @param artifactId an artifact identifier.
+   * @return a set of coordinates.
+   */
+  @NonNull
+  public Set<LibraryCoordinate> getCoordinates(@NonNull String groupId,
+      @NonNull String artifactId) {
+    return this.modules.getOrDefault(groupId + ':' + artifactId, Collections.emptySet());
+  }
+
+  /**
+   * Retrieves the identifiers of all versions which reference the specified library.
+   *
+   * @param coordinate a coordinate.
+   * @return a set of version identifiers.
+   */
+  @NonNull
+  public Set<String> getVersions(@NonNull LibraryCoordinate coordinate) {
+    return this.versions.getOrDefault(coordinate, Collections.emptySet());
+  }
+
+  /**
+   * Retrieves all known artifacts for the specified library (typically a single artifact unless
+   * versions disagree on its checksum or location).
+   *
+   * @param coordinate a coordinate.
+   * @return a set of artifacts.
+   */
+  @NonNull
+  public Set<LibraryArtifact> getArtifacts(@NonNull LibraryCoordinate coordinate) {
+    return this.artifacts.getOrDefault(coordinate, Collections.emptySet());
+  }
+
+  /**
+   * Provides a factory for library indices.
+   */
+  public static final class Builder {
+
+    private final Map<LibraryCoordinate, Set<String>> versions = new HashMap<>();
+    private final Map<LibraryCoordinate, Set<LibraryArtifact>> artifacts = new HashMap<>();
+    private final Map<String, Set<LibraryCoordinate>> modules = new HashMap<>();
+
+    private Builder() {
+    }
+
+    /**
+     * Indexes all libraries of the specified version.
+     *
+     * @param version a version.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder add(@NonNull Version version) {
+      for (LibraryReference library : version.getLibraries()) {
+        LibraryCoordinate coordinate;
+
+        try {
+          coordinate = library.getCoordinate();
+        } catch (IllegalArgumentException ex) {
+          continue;
+        }
+
+        this.add(coordinate, version.getId());
+        library.getDownloads().getArtifact()
+            .ifPresent((a) -> this.artifacts.computeIfAbsent(coordinate, (k) -> new HashSet<>())
+                .add(a));
+
+        library.getDownloads().getClassifiers().forEach((classifier, artifact) -> {
+          LibraryCoordinate classified = coordinate.withClassifier(classifier);
+
+          this.add(classified, version.getId());
+          this.artifacts.computeIfAbsent(classified, (k) -> new HashSet<>()).add(artifact);
+        });
+      }
+
+      return this;
+    }
+
+    private void add(@NonNull LibraryCoordinate coordinate, @NonNull String versionId) {
+      this.versions.computeIfAbsent(coordinate, (k) -> new HashSet<>()).add(versionId);
+      this.modules.computeIfAbsent(coordinate.getModule(), (k) -> new HashSet<>())
+          .add(coordinate);
+    }
+
+    /**
+     * Constructs a new immutable index using the libraries within this builder.
+     *
+     * @return an index.
+     */
+    @NonNull
+    public LibraryIndex build() {
+      return new LibraryIndex(freeze(this.versions), freeze(this.artifacts),
+          freeze(this.modules));
+    }
+
+    @NonNull
+    private static <K, V> Map<K, Set<V>> freeze(@NonNull Map<K, Set<V>> map) {
+      Map<K, Set<V>> copy = new HashMap<>(map.size() * 4 / 3 + 1);
+      map.forEach((k, v) -> copy.put(k, Collections.unmodifiableSet(new HashSet<>(v))));
+      return Collections.unmodifiableMap(copy);
+    }
+  }
+}
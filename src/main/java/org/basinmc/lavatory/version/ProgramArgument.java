@@ -39,7 +39,7 @@ public class ProgramArgument extends AbstractRuleControlledResource {
   private final List<String> value;
 
   @JsonCreator
-  private ProgramArgument(
+  public ProgramArgument(
       @NonNull @JsonProperty(value = "value", required = true) @JsonFormat(with = Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY) List<String> value,
       @NonNull @JsonProperty(value = "rules", required = true) Set<Rule> rules) {
     super(rules);
@@ -20,7 +20,12 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonFormat.Feature;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import java.io.IOException;
@@ -30,6 +35,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -40,6 +46,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import org.basinmc.lavatory.Mappers;
 import org.basinmc.lavatory.ResolverContext;
 import org.basinmc.lavatory.asset.AssetIndexReference;
 import org.basinmc.lavatory.file.Download;
@@ -87,7 +94,7 @@ public class Version implements RuleControlledResourceContainer {
       @Nullable Download serverDownload,
       @Nullable Download windowsServerDownload, String assets,
       @NonNull AssetIndexReference assetIndex,
-      @NonNull Set<LibraryReference> libraries,
+      @NonNull Collection<LibraryReference> libraries,
       @Nullable LoggerConfiguration clientLoggerConfiguration) {
     this.id = id;
     this.minimumLauncherVersion = minimumLauncherVersion;
@@ -102,12 +109,7 @@ public class Version implements RuleControlledResourceContainer {
     this.windowsServerDownload = windowsServerDownload;
     this.assets = assets;
     this.assetIndex = assetIndex;
-    this.libraries = libraries.stream()
-        .collect(Collectors.toMap(
-            LibraryReference::getName,
-            (l) -> l,
-            (a, b) -> a.calculatePriority() >= b.calculatePriority() ? a : b
-        ));
+    this.libraries = indexLibraries(libraries);
     this.clientLoggerConfiguration = clientLoggerConfiguration;
   }
 
@@ -123,7 +125,7 @@ public class Version implements RuleControlledResourceContainer {
       @NonNull @JsonProperty(value = "downloads", required = true) Map<String, Download> downloads,
       @NonNull @JsonProperty(value = "assets", required = true) String assets,
       @NonNull @JsonProperty(value = "assetIndex", required = true) AssetIndexReference assetIndex,
-      @NonNull @JsonProperty(value = "libraries", required = true) Set<LibraryReference> libraries,
+      @NonNull @JsonProperty(value = "libraries", required = true) @JsonDeserialize(using = LibraryDeserializer.class) Map<String, LibraryReference> libraries,
       @Nullable @JsonProperty("logging") Map<String, LoggerConfiguration> loggerConfigurations,
       @Nullable @JsonProperty("minecraftArguments") String legacyArguments) {
     this.id = id;
@@ -134,12 +136,7 @@ public class Version implements RuleControlledResourceContainer {
     this.mainClass = mainClass;
     this.assets = assets;
     this.assetIndex = assetIndex;
-    this.libraries = libraries.stream()
-        .collect(Collectors.toMap(
-            LibraryReference::getName,
-            (l) -> l,
-            (a, b) -> a.calculatePriority() >= b.calculatePriority() ? a : b
-        ));
+    this.libraries = libraries;
     this.clientLoggerConfiguration =
         loggerConfigurations == null ? null : loggerConfigurations.get("client");
 
@@ -169,6 +166,27 @@ public class Version implements RuleControlledResourceContainer {
     this.windowsServerDownload = downloads.get("windows_server");
   }
 
+  /**
+   * Indexes the specified libraries by their respective name. When a library is declared multiple
+   * times, the declaration with the highest priority is retained.
+   *
+   * @param libraries an arbitrary collection of libraries.
+   * @return a map of libraries.
+   */
+  @NonNull
+  static Map<String, LibraryReference> indexLibraries(
+      @NonNull Iterable<LibraryReference> libraries) {
+    Map<String, LibraryReference> index = new HashMap<>();
+    libraries.forEach((l) -> indexLibrary(index, l));
+    return index;
+  }
+
+  private static void indexLibrary(@NonNull Map<String, LibraryReference> index,
+      @NonNull LibraryReference library) {
+    index.merge(library.getName(), library,
+        (a, b) -> a.calculatePriority() >= b.calculatePriority() ? a : b);
+  }
+
   /**
    * Retrieves a globally unique identifier for this version.
    *
@@ -357,8 +375,22 @@ public class Version implements RuleControlledResourceContainer {
    */
   @NonNull
   public static Version read(@NonNull InputStream inputStream) throws IOException {
-    ObjectMapper mapper = new ObjectMapper();
-    mapper.findAndRegisterModules();
+    return Mappers.getDefault().readValue(inputStream, Version.class);
+  }
+
+  /**
+   * Decodes a version manifest from the specified input stream using a custom object mapper (for
+   * instance one which deduplicates values via an intern pool).
+   *
+   * @param inputStream an input stream.
+   * @param mapper an object mapper.
+   * @return a version manifest.
+   * @throws IOException when reading from the input stream fails or the data is malformed.
+   * @see org.basinmc.lavatory.intern.InternPool#createMapper()
+   */
+  @NonNull
+  public static Version read(@NonNull InputStream inputStream, @NonNull ObjectMapper mapper)
+      throws IOException {
     return mapper.readValue(inputStream, Version.class);
   }
 
@@ -385,9 +417,7 @@ public class Version implements RuleControlledResourceContainer {
    */
   @NonNull
   public static Version read(@NonNull Reader reader) throws IOException {
-    ObjectMapper mapper = new ObjectMapper();
-    mapper.findAndRegisterModules();
-    return mapper.readValue(reader, Version.class);
+    return Mappers.getDefault().readValue(reader, Version.class);
   }
 
   /**
@@ -416,7 +446,7 @@ public class Version implements RuleControlledResourceContainer {
         this.assetIndex,
         this.libraries.values().stream()
             .filter((l) -> l.evaluate(ctx))
-            .collect(Collectors.toSet()),
+            .collect(Collectors.toList()),
         this.clientLoggerConfiguration
     );
   }
@@ -462,4 +492,39 @@ public class Version implements RuleControlledResourceContainer {
         this.assets,
         this.assetIndex, this.libraries);
   }
+
+  /**
+   * Provides a custom de-serialization implementation for library declarations which indexes
+   * each library as it is read rather than collecting all declarations into an intermediate set
+   * (which would require every library and its rules to be hashed).
+   */
+  public static class LibraryDeserializer extends
+      JsonDeserializer<Map<String, LibraryReference>> {
+
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    public Map<String, LibraryReference> deserialize(@NonNull JsonParser p,
+        @NonNull DeserializationContext ctxt) throws IOException {
+      if (!p.isExpectedStartArrayToken()) {
+        ctxt.reportInputMismatch(LibraryReference.class,
+            "Illegal library declaration: Expected array");
+      }
+
+      Map<String, LibraryReference> index = new HashMap<>();
+      JsonToken token;
+
+      while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+        if (token == JsonToken.VALUE_NULL) {
+          continue;
+        }
+
+        indexLibrary(index, ctxt.readValue(p, LibraryReference.class));
+      }
+
+      return index;
+    }
+  }
 }
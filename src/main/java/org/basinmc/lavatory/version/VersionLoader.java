@@ -0,0 +1,339 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.version;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.basinmc.lavatory.Manifest;
+import org.basinmc.lavatory.Mappers;
+import org.basinmc.lavatory.fetch.RetryPolicy;
+import org.basinmc.lavatory.file.DigestService;
+import org.basinmc.lavatory.file.Transfer;
+
+/**
+ * <p>Retrieves and decodes large amounts of version documents in parallel.</p>
+ *
+ * <p>All documents are decoded through a single shared object mapper on a bounded pool of worker
+ * threads. Documents may optionally be checked against the checksum which is advertised by newer
+ * revisions of the version manifest before they are decoded.</p>
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public final class VersionLoader implements AutoCloseable {
+
+  private final ExecutorService executor;
+  private final ObjectMapper mapper;
+  private final RetryPolicy retryPolicy;
+  private final boolean verification;
+
+  private VersionLoader(@NonNull ExecutorService executor, @NonNull ObjectMapper mapper,
+      @Nullable RetryPolicy retryPolicy, boolean verification) {
+    this.executor = executor;
+    this.mapper = mapper;
+    this.retryPolicy = retryPolicy;
+    this.verification = verification;
+  }
+
+  /**
+   * Creates a new empty version loader factory.
+   *
+   * @return a factory.
+   */
+  @NonNull
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Retrieves and decodes a single version document.
+   *
+   * @param reference a version reference.
+   * @return a future which completes with the decoded version.
+   */
+  @NonNull
+  public CompletableFuture<Version> load(@NonNull VersionReference reference) {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return this.fetch(reference);
+      } catch (IOException ex) {
+        throw new CompletionException(ex);
+      }
+    }, this.executor);
+  }
+
+  /**
+   * Retrieves and decodes all versions within a manifest.
+   *
+   * @param manifest a manifest.
+   * @param listener a listener which is notified as soon as each version has been loaded.
+   * @return a future which completes once all versions have been processed.
+   */
+  @NonNull
+  public CompletableFuture<Result> loadAll(@NonNull Manifest manifest,
+      @NonNull Listener listener) {
+    return this.loadAll(manifest.getVersions(), listener);
+  }
+
+  /**
+   * Retrieves and decodes all specified versions.
+   *
+   * @param references a collection of version references.
+   * @param listener a listener which is notified as soon as each version has been loaded
+   * (exceptions thrown by the listener are ignored).
+   * @return a future which completes once all versions have been processed.
+   */
+  @NonNull
+  public CompletableFuture<Result> loadAll(@NonNull Collection<VersionReference> references,
+      @NonNull Listener listener) {
+    Result result = new Result();
+    List<CompletableFuture<?>> futures = new ArrayList<>(references.size());
+
+    for (VersionReference reference : references) {
+      futures.add(this.load(reference).handle((version, ex) -> {
+        if (ex == null) {
+          result.versions.put(reference.getId(), version);
+
+          try {
+            listener.onLoaded(reference, version);
+          } catch (RuntimeException ignore) {
+          }
+          return null;
+        }
+
+        Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+        IOException failure = cause instanceof IOException ? (IOException) cause
+            : new IOException("Failed to load version " + reference.getId(), cause);
+
+        result.failures.put(reference.getId(), failure);
+
+        try {
+          listener.onFailed(reference, failure);
+        } catch (RuntimeException ignore) {
+        }
+        return null;
+      }));
+    }
+
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+        .thenApply((v) -> result);
+  }
+
+  @NonNull
+  private Version fetch(@NonNull VersionReference reference) throws IOException {
+    byte[] document;
+
+    if (this.retryPolicy != null) {
+      document = this.retryPolicy.execute(reference.getUrl(), Transfer::readFully);
+    } else {
+      try (InputStream inputStream = reference.getUrl().openStream()) {
+        document = Transfer.readFully(inputStream);
+      }
+    }
+
+    if (this.verification) {
+      Optional<byte[]> checksum = reference.getSha1Bytes();
+
+      if (checksum.isPresent() && !Arrays
+          .equals(checksum.get(), DigestService.digest(ByteBuffer.wrap(document)))) {
+        throw new IOException("Checksum mismatch for version " + reference.getId());
+      }
+    }
+
+    return this.mapper.readValue(document, Version.class);
+  }
+
+  /**
+   * Stops all worker threads.
+   */
+  @Override
+  public void close() {
+    this.executor.shutdownNow();
+  }
+
+  /**
+   * Receives notifications about individual versions as soon as they have been processed.
+   */
+  public interface Listener {
+
+    /**
+     * Handles a successfully loaded version.
+     *
+     * @param reference a version reference.
+     * @param version the decoded version.
+     */
+    default void onLoaded(@NonNull VersionReference reference, @NonNull Version version) {
+    }
+
+    /**
+     * Handles a version which could not be loaded.
+     *
+     * @param reference a version reference.
+     * @param ex an exception.
+     */
+    default void onFailed(@NonNull VersionReference reference, @NonNull IOException ex) {
+    }
+  }
+
+  /**
+   * Provides a factory for version loaders.
+   */
+  public static final class Builder {
+
+    private int threads = 16;
+    private ObjectMapper mapper;
+    private RetryPolicy retryPolicy;
+    private boolean verification = true;
+
+    private Builder() {
+    }
+
+    /**
+     * Constructs a new version loader using the configuration within this builder.
+     *
+     * @return a loader.
+     */
+    @NonNull
+    public VersionLoader build() {
+      AtomicInteger counter = new AtomicInteger();
+      ExecutorService executor = Executors.newFixedThreadPool(this.threads, (r) -> {
+        Thread thread = new Thread(r, "lavatory-version-" + counter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+
+      ObjectMapper mapper = this.mapper;
+      if (mapper == null) {
+        mapper = Mappers.getDefault();
+      }
+
+      return new VersionLoader(executor, mapper, this.retryPolicy, this.verification);
+    }
+
+    /**
+     * Selects the mapper which is used to decode all documents (for instance one which
+     * deduplicates values via an intern pool).
+     *
+     * @param mapper an object mapper or null to use a default mapper.
+     * @return a reference to this builder.
+     * @see org.basinmc.lavatory.intern.InternPool#createMapper()
+     */
+    @NonNull
+    public Builder withMapper(@Nullable ObjectMapper mapper) {
+      this.mapper = mapper;
+      return this;
+    }
+
+    /**
+     * Selects a policy according to which failed requests are repeated.
+     *
+     * @param retryPolicy a policy or null to fail on the first error.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withRetryPolicy(@Nullable RetryPolicy retryPolicy) {
+      this.retryPolicy = retryPolicy;
+      return this;
+    }
+
+    /**
+     * Selects the maximum amount of documents which are retrieved concurrently.
+     *
+     * @param threads a thread count.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withThreads(int threads) {
+      if (threads <= 0) {
+        throw new IllegalArgumentException("Illegal thread count: Must be positive");
+      }
+
+      this.threads = threads;
+      return this;
+    }
+
+    /**
+     * Selects whether documents are checked against the checksum advertised by the manifest
+     * (enabled by default; references without a checksum are never checked).
+     *
+     * @param verification true if documents are to be verified.
+     * @return a reference to this builder.
+     */
+    @NonNull
+    public Builder withVerification(boolean verification) {
+      this.verification = verification;
+      return this;
+    }
+  }
+
+  /**
+   * Provides the outcome of a bulk load.
+   */
+  public static final class Result {
+
+    private final Map<String, Version> versions = new ConcurrentHashMap<>();
+    private final Map<String, IOException> failures = new ConcurrentHashMap<>();
+
+    private Result() {
+    }
+
+    /**
+     * Retrieves all successfully loaded versions.
+     *
+     * @return a map of version identifiers and their respective versions.
+     */
+    @NonNull
+    public Map<String, Version> getVersions() {
+      return Collections.unmodifiableMap(this.versions);
+    }
+
+    /**
+     * Retrieves all versions which could not be loaded.
+     *
+     * @return a map of version identifiers and their respective errors.
+     */
+    @NonNull
+    public Map<String, IOException> getFailures() {
+      return Collections.unmodifiableMap(this.failures);
+    }
+
+    /**
+     * Evaluates whether all versions have been loaded.
+     *
+     * @return true if successful, false otherwise.
+     */
+    public boolean isSuccessful() {
+      return this.failures.isEmpty();
+    }
+  }
+}
@@ -21,11 +21,15 @@ import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonFormat.Feature;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.time.OffsetDateTime;
 import java.util.Objects;
+import java.util.Optional;
+import org.basinmc.lavatory.fetch.RetryPolicy;
+import org.basinmc.lavatory.snapshot.VersionCache;
 
 /**
  * Provides an excerpt of version metadata for a specific game release.
@@ -39,6 +43,16 @@ public final class VersionReference {
   private final OffsetDateTime releaseTime;
   private final OffsetDateTime modificationTime;
   private final URL url;
+  private final String sha1;
+
+  public VersionReference(
+      @NonNull String id,
+      @NonNull VersionType type,
+      @NonNull OffsetDateTime releaseTime,
+      @NonNull OffsetDateTime modificationTime,
+      @NonNull URL url) {
+    this(id, type, releaseTime, modificationTime, url, null);
+  }
 
   @JsonCreator
   public VersionReference(
@@ -46,12 +60,14 @@ public final class VersionReference {
       @NonNull @JsonProperty(value = "type", required = true) @JsonFormat(with = Feature.ACCEPT_CASE_INSENSITIVE_PROPERTIES) VersionType type,
       @NonNull @JsonProperty(value = "releaseTime", required = true) OffsetDateTime releaseTime,
       @NonNull @JsonProperty(value = "time", required = true) OffsetDateTime modificationTime,
-      @NonNull @JsonProperty(value = "url", required = true) URL url) {
+      @NonNull @JsonProperty(value = "url", required = true) URL url,
+      @Nullable @JsonProperty("sha1") String sha1) {
     this.id = id;
     this.url = url;
     this.type = type;
     this.releaseTime = releaseTime;
     this.modificationTime = modificationTime;
+    this.sha1 = sha1;
   }
 
   /**
@@ -68,6 +84,32 @@ public final class VersionReference {
     }
   }
 
+  /**
+   * Retrieves the complete version document from the server while retrying transient failures.
+   *
+   * @param policy a retry policy.
+   * @return a parsed version document.
+   * @throws IOException when all attempts have failed, a non-retryable error is encountered or
+   * when the data is malformed.
+   */
+  @NonNull
+  public Version fetch(@NonNull RetryPolicy policy) throws IOException {
+    return policy.execute(this.url, Version::read);
+  }
+
+  /**
+   * Retrieves the complete version document from the specified cache and only contacts the server
+   * when no up to date copy is cached.
+   *
+   * @param cache a version cache.
+   * @return a parsed version document.
+   * @throws IOException when the version is not cached and retrieving it fails.
+   */
+  @NonNull
+  public Version fetch(@NonNull VersionCache cache) throws IOException {
+    return cache.fetch(this);
+  }
+
   @NonNull
   public String getId() {
     return this.id;
@@ -93,6 +135,42 @@ public final class VersionReference {
     return this.url;
   }
 
+  /**
+   * Retrieves the checksum of the version document (only provided by newer revisions of the
+   * manifest format).
+   *
+   * @return a checksum or, if unknown, an empty optional.
+   */
+  @NonNull
+  public Optional<String> getSha1() {
+    return Optional.ofNullable(this.sha1);
+  }
+
+  /**
+   * Retrieves the actual decoded checksum bytes of the version document.
+   *
+   * @return a checksum or, if unknown, an empty optional.
+   * @throws IllegalStateException when the hash is of an illegal length.
+   */
+  @NonNull
+  public Optional<byte[]> getSha1Bytes() {
+    if (this.sha1 == null) {
+      return Optional.empty();
+    }
+    if (this.sha1.length() % 2 != 0) {
+      throw new IllegalStateException("Illegal hash: Odd number of characters");
+    }
+
+    byte[] bytes = new byte[this.sha1.length() / 2];
+
+    for (int i = 0; i < bytes.length; ++i) {
+      String element = this.sha1.substring(i * 2, i * 2 + 2);
+      bytes[i] = (byte) (Short.parseShort(element, 16) & 0xFF);
+    }
+
+    return Optional.of(bytes);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -109,7 +187,8 @@ public final class VersionReference {
         this.type == that.type &&
         Objects.equals(this.releaseTime, that.releaseTime) &&
         Objects.equals(this.modificationTime, that.modificationTime) &&
-        Objects.equals(this.url, that.url);
+        Objects.equals(this.url, that.url) &&
+        Objects.equals(this.sha1, that.sha1);
   }
 
   /**
@@ -117,6 +196,7 @@ public final class VersionReference {
    */
   @Override
   public int hashCode() {
-    return Objects.hash(this.id, this.type, this.releaseTime, this.modificationTime, this.url);
+    return Objects
+        .hash(this.id, this.type, this.releaseTime, this.modificationTime, this.url, this.sha1);
   }
 }
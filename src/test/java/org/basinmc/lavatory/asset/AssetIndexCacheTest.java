@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.asset;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Evaluates whether asset indices are shared and retrieved only once.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class AssetIndexCacheTest {
+
+  private static final String CHECKSUM = "be699a4139b08ca97b32cfab621270815037fdbd";
+
+  /**
+   * Evaluates whether concurrent requests for the same index are coalesced.
+   */
+  @Test
+  public void testCoalesce() throws Exception {
+    AtomicInteger requests = new AtomicInteger();
+    CountDownLatch latch = new CountDownLatch(1);
+    URL url = new URL(null, "test:/indexes/1.12.json", new URLStreamHandler() {
+      @Override
+      protected URLConnection openConnection(URL u) {
+        requests.incrementAndGet();
+
+        return new URLConnection(u) {
+          @Override
+          public void connect() {
+          }
+
+          @Override
+          public InputStream getInputStream() throws IOException {
+            try {
+              latch.await();
+            } catch (InterruptedException ex) {
+              throw new IOException(ex);
+            }
+
+            return AssetIndexCacheTest.class.getResourceAsStream("/asset_index.json");
+          }
+        };
+      }
+    });
+
+    AssetIndexCache cache = AssetIndexCache.builder().build();
+    AssetIndexReference reference = new AssetIndexReference("1.12", CHECKSUM, 657, url, 0);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    try {
+      List<CompletableFuture<AssetIndex>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; ++i) {
+        futures.add(CompletableFuture.supplyAsync(() -> {
+          try {
+            return cache.fetch(reference);
+          } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+          }
+        }, executor));
+      }
+
+      Thread.sleep(100);
+      latch.countDown();
+
+      AssetIndex index = futures.get(0).get();
+      for (CompletableFuture<AssetIndex> future : futures) {
+        Assert.assertSame(index, future.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    Assert.assertEquals(1, requests.get());
+    Assert.assertEquals(1, cache.size());
+    Assert.assertSame(cache.fetch(reference), cache.get(reference).orElse(null));
+    Assert.assertEquals(1, requests.get());
+  }
+
+  /**
+   * Evaluates whether indices which do not match their reference are rejected.
+   */
+  @Test(expected = IOException.class)
+  public void testMismatch() throws IOException {
+    URL url = this.getClass().getResource("/asset_index.json");
+    AssetIndexCache.builder().build()
+        .fetch(new AssetIndexReference("1.12", CHECKSUM, 656, url, 0));
+  }
+}
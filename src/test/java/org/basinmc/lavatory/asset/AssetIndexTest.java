@@ -18,6 +18,8 @@ package org.basinmc.lavatory.asset;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -51,4 +53,24 @@ public class AssetIndexTest {
           object.getUrl().toExternalForm());
     }
   }
+
+  /**
+   * Evaluates whether the streaming reader decodes the same objects as the regular parser.
+   */
+  @Test
+  public void testStream() throws IOException {
+    AssetIndex index;
+    try (InputStream inputStream = this.getClass().getResourceAsStream("/asset_index.json")) {
+      index = AssetIndex.read(inputStream);
+    }
+
+    Map<String, AssetObject> objects = new HashMap<>();
+    try (AssetIndexReader reader = AssetIndexReader
+        .open(this.getClass().getResourceAsStream("/asset_index.json"))) {
+      reader.forEachRemaining((e) -> objects.put(e.getKey(), e.getValue()));
+      Assert.assertFalse(reader.hasNext());
+    }
+
+    Assert.assertEquals(index.getObjects(), objects);
+  }
 }
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.asset;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Evaluates whether asset packs store, recover and export their objects correctly.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class AssetPackTest {
+
+  private Path root;
+  private Path objects;
+  private AssetIndex index;
+
+  @Before
+  public void setUp() throws Exception {
+    this.root = Files.createTempDirectory("lavatory_test_");
+    this.objects = this.root.resolve("objects");
+
+    Map<String, AssetObject> objects = new HashMap<>();
+    for (String name : new String[]{"alpha", "beta", "gamma"}) {
+      objects.put("minecraft/" + name, this.store(name));
+    }
+    this.index = new AssetIndex(objects);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> stream = Files.walk(this.root)) {
+      stream.sorted(Comparator.reverseOrder())
+          .forEach((p) -> p.toFile().delete());
+    }
+  }
+
+  /**
+   * Evaluates whether packed objects may be read and exported after reopening the pack.
+   */
+  @Test
+  public void testPackAndExport() throws IOException {
+    Path directory = this.root.resolve("pack");
+
+    try (AssetPack pack = AssetPack.open(directory)) {
+      Assert.assertEquals(3, pack.addAll(this.index, this.objects));
+      Assert.assertEquals(0, pack.addAll(this.index, this.objects));
+    }
+
+    try (AssetPack pack = AssetPack.open(directory)) {
+      Assert.assertEquals(3, pack.size());
+
+      for (AssetObject object : this.index.getObjects().values()) {
+        Assert.assertTrue(pack.verify(object));
+      }
+
+      AssetObject beta = this.index.getObjects().get("minecraft/beta");
+      ByteBuffer buffer = pack.read(beta).orElseThrow(AssertionError::new);
+      byte[] contents = new byte[buffer.remaining()];
+      buffer.get(contents);
+      Assert.assertEquals("beta", new String(contents, StandardCharsets.UTF_8));
+
+      Path exported = this.root.resolve("exported");
+      Assert.assertEquals(3, pack.export(this.index, exported));
+      Assert.assertEquals("gamma", new String(Files.readAllBytes(exported.resolve(
+          this.objects.relativize(this.path(this.index.getObjects().get("minecraft/gamma"))))),
+          StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Evaluates whether incomplete trailing records are discarded when a pack is reopened.
+   */
+  @Test
+  public void testRecover() throws IOException {
+    Path directory = this.root.resolve("pack");
+    AssetObject alpha = this.index.getObjects().get("minecraft/alpha");
+    AssetObject beta = this.index.getObjects().get("minecraft/beta");
+
+    try (AssetPack pack = AssetPack.open(directory)) {
+      Assert.assertTrue(pack.add(alpha, this.path(alpha)));
+      Assert.assertFalse(pack.add(alpha, this.path(alpha)));
+    }
+
+    try (FileChannel channel = FileChannel
+        .open(directory.resolve(AssetPack.INDEX_FILE), StandardOpenOption.APPEND)) {
+      channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+    }
+
+    try (AssetPack pack = AssetPack.open(directory)) {
+      Assert.assertEquals(1, pack.size());
+      Assert.assertTrue(pack.verify(alpha));
+      Assert.assertTrue(pack.add(beta, this.path(beta)));
+    }
+
+    try (AssetPack pack = AssetPack.open(directory)) {
+      Assert.assertEquals(2, pack.size());
+      Assert.assertTrue(pack.verify(alpha));
+      Assert.assertTrue(pack.verify(beta));
+    }
+  }
+
+  private AssetObject store(String contents) throws Exception {
+    byte[] data = contents.getBytes(StandardCharsets.UTF_8);
+
+    StringBuilder hash = new StringBuilder();
+    for (byte b : MessageDigest.getInstance("SHA-1").digest(data)) {
+      hash.append(String.format("%02x", b));
+    }
+
+    AssetObject object = new AssetObject(hash.toString(), data.length,
+        new URL("https://example.org/" + hash));
+    Path path = this.path(object);
+    Files.createDirectories(path.getParent());
+    Files.write(path, data);
+    return object;
+  }
+
+  private Path path(AssetObject object) {
+    return this.objects.resolve(object.getSha1().substring(0, 2)).resolve(object.getSha1());
+  }
+}
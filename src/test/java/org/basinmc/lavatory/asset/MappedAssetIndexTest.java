@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.asset;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Evaluates whether mapped asset indices resolve their objects correctly.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class MappedAssetIndexTest {
+
+  /**
+   * Evaluates whether every object of a written index can be looked up again.
+   */
+  @Test
+  public void testLookup() throws IOException {
+    Path target = Files.createTempFile("lavatory_test_", ".idx");
+
+    try (InputStream inputStream = this.getClass().getResourceAsStream("/asset_index.json")) {
+      AssetIndex index = AssetIndex.read(inputStream);
+      MappedAssetIndex.write(index, target);
+
+      MappedAssetIndex mapped = MappedAssetIndex.open(target);
+      Assert.assertEquals(index.getObjects().size(), mapped.size());
+
+      for (Map.Entry<String, AssetObject> entry : index.getObjects().entrySet()) {
+        Assert.assertEquals(entry.getValue(), mapped.getObject(entry.getKey())
+            .orElseThrow(() -> new AssertionError("Expected object \"" + entry.getKey() + "\"")));
+      }
+
+      Assert.assertFalse(mapped.getObject("minecraft/sounds/mob/stray/death3.ogg").isPresent());
+      Assert.assertFalse(mapped.getObject("").isPresent());
+      Assert.assertEquals(index, mapped.toAssetIndex());
+    } finally {
+      Files.deleteIfExists(target);
+    }
+  }
+
+  /**
+   * Evaluates whether corrupted record counts and path ranges are rejected when the index is
+   * opened.
+   */
+  @Test
+  public void testCorrupted() throws IOException {
+    Path target = Files.createTempFile("lavatory_test_", ".idx");
+
+    try (InputStream inputStream = this.getClass().getResourceAsStream("/asset_index.json")) {
+      MappedAssetIndex.write(AssetIndex.read(inputStream), target);
+      byte[] contents = Files.readAllBytes(target);
+
+      // a count which wraps around to a small table size when multiplied in int arithmetic
+      byte[] count = contents.clone();
+      ByteBuffer.wrap(count).putInt(8, 119304647);
+      this.assertRejected(target, count);
+
+      byte[] negative = contents.clone();
+      ByteBuffer.wrap(negative).putInt(8, -1);
+      this.assertRejected(target, negative);
+
+      // record path offset and length which point beyond the end of the blob
+      byte[] offset = contents.clone();
+      ByteBuffer.wrap(offset).putInt(12, Integer.MAX_VALUE);
+      this.assertRejected(target, offset);
+
+      byte[] length = contents.clone();
+      ByteBuffer.wrap(length).putInt(16, contents.length);
+      this.assertRejected(target, length);
+    } finally {
+      Files.deleteIfExists(target);
+    }
+  }
+
+  private void assertRejected(Path target, byte[] contents) throws IOException {
+    Files.write(target, contents);
+
+    try {
+      MappedAssetIndex.open(target);
+      Assert.fail("Expected corrupted index to be rejected");
+    } catch (IOException ignore) {
+    }
+  }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.fetch;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.basinmc.lavatory.asset.AssetObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Evaluates whether the asset installer retrieves missing objects within its window.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class AssetInstallerTest {
+
+  private static final int OBJECT_COUNT = 16;
+  private static final int WINDOW = 3;
+
+  private Path objects;
+  private Path sources;
+
+  @Before
+  public void setUp() throws IOException {
+    this.objects = Files.createTempDirectory("lavatory_test_");
+    this.sources = Files.createTempDirectory("lavatory_test_");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    for (Path root : new Path[]{this.objects, this.sources}) {
+      try (Stream<Path> stream = Files.walk(root)) {
+        stream.sorted(Comparator.reverseOrder())
+            .forEach((p) -> p.toFile().delete());
+      }
+    }
+  }
+
+  /**
+   * Evaluates whether objects are fetched, skipped and failed as expected while never pulling
+   * more entries than permitted by the window.
+   */
+  @Test
+  public void testInstall() throws Exception {
+    List<Map.Entry<String, AssetObject>> entries = new ArrayList<>();
+    for (int i = 0; i < OBJECT_COUNT; ++i) {
+      entries.add(new SimpleImmutableEntry<>("object" + i, this.object("object" + i)));
+    }
+
+    // an object which is already present and an object which is missing from the server
+    AssetObject present = entries.get(0).getValue();
+    Files.createDirectories(AssetInstaller.resolve(this.objects, present).getParent());
+    Files.copy(this.sources.resolve("object0"), AssetInstaller.resolve(this.objects, present));
+    AssetObject missing = entries.get(1).getValue();
+    Files.delete(this.sources.resolve("object1"));
+
+    AtomicInteger pulled = new AtomicInteger();
+    AtomicInteger completed = new AtomicInteger();
+    AtomicInteger maximum = new AtomicInteger();
+    Iterator<Map.Entry<String, AssetObject>> it = entries.iterator();
+    Iterator<Map.Entry<String, AssetObject>> source =
+        new Iterator<Map.Entry<String, AssetObject>>() {
+          @Override
+          public boolean hasNext() {
+            return it.hasNext();
+          }
+
+          @Override
+          public Map.Entry<String, AssetObject> next() {
+            int outstanding = pulled.incrementAndGet() - completed.get();
+            maximum.accumulateAndGet(outstanding, Math::max);
+            return it.next();
+          }
+        };
+
+    RecordingListener listener = new RecordingListener(completed);
+    AssetInstaller.Result result;
+    try (FetchExecutor executor = FetchExecutor.builder().build()) {
+      result = AssetInstaller.builder(executor, this.objects)
+          .withWindow(WINDOW)
+          .withListener(listener)
+          .build()
+          .install(source);
+    }
+
+    Assert.assertEquals(OBJECT_COUNT - 2, result.getFetched());
+    Assert.assertEquals(1, result.getSkipped());
+    Assert.assertEquals(1, result.getFailed());
+    Assert.assertFalse(result.isSuccessful());
+    Assert.assertEquals((OBJECT_COUNT - 2) * (long) present.getSize(),
+        result.getTransferredBytes());
+    Assert.assertTrue("Pulled " + maximum.get() + " entries ahead", maximum.get() <= WINDOW);
+
+    Assert.assertEquals(Collections.singletonList("skipped:object0"), listener.filter("skipped"));
+    Assert.assertEquals(Collections.singletonList("failed:object1"), listener.filter("failed"));
+    Assert.assertEquals(OBJECT_COUNT - 2, listener.filter("fetched").size());
+    Assert.assertEquals(OBJECT_COUNT, listener.events.size());
+
+    for (Map.Entry<String, AssetObject> entry : entries) {
+      if (entry.getValue() != missing) {
+        Assert.assertTrue(entry.getValue()
+            .verify(AssetInstaller.resolve(this.objects, entry.getValue())));
+      }
+    }
+  }
+
+  /**
+   * Evaluates whether existing objects are only replaced when verification is enabled and they
+   * do not match their checksum.
+   */
+  @Test
+  public void testVerification() throws Exception {
+    AssetObject object = this.object("corrupted");
+    Path target = AssetInstaller.resolve(this.objects, object);
+    Files.createDirectories(target.getParent());
+    Files.write(target, new byte[(int) object.getSize()]);
+
+    try (FetchExecutor executor = FetchExecutor.builder().build()) {
+      AssetInstaller.Result result = AssetInstaller.builder(executor, this.objects).build()
+          .install(this.source(object));
+      Assert.assertEquals(1, result.getSkipped());
+      Assert.assertFalse(object.verify(target));
+
+      result = AssetInstaller.builder(executor, this.objects)
+          .withVerification(true)
+          .build()
+          .install(this.source(object));
+      Assert.assertEquals(1, result.getFetched());
+      Assert.assertTrue(object.verify(target));
+    }
+  }
+
+  /**
+   * Evaluates whether failing listeners neither alter the outcome of an object nor prevent
+   * subsequently registered listeners from being notified.
+   */
+  @Test
+  public void testFailingListener() throws Exception {
+    AssetObject object = this.object("object");
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+    AssetInstaller.Result result;
+    try (FetchExecutor executor = FetchExecutor.builder().build()) {
+      result = AssetInstaller.builder(executor, this.objects)
+          .withListener(new AssetInstaller.Listener() {
+            @Override
+            public void onFetched(@NonNull String name, @NonNull AssetObject object,
+                @NonNull Path target) {
+              order.add("first");
+              throw new IllegalStateException("Listener failure");
+            }
+          })
+          .withListener(new AssetInstaller.Listener() {
+            @Override
+            public void onFetched(@NonNull String name, @NonNull AssetObject object,
+                @NonNull Path target) {
+              order.add("second");
+            }
+          })
+          .build()
+          .install(this.source(object));
+    }
+
+    Assert.assertEquals(1, result.getFetched());
+    Assert.assertEquals(0, result.getFailed());
+    Assert.assertEquals(Arrays.asList("first", "second"), order);
+  }
+
+  /**
+   * Evaluates whether objects which are referenced by multiple names share a single transfer.
+   */
+  @Test
+  public void testCoalesce() throws Exception {
+    AssetObject source = this.object("shared");
+    AtomicInteger requests = new AtomicInteger();
+    CountDownLatch latch = new CountDownLatch(1);
+    AssetObject object = new AssetObject(source.getSha1(), source.getSize(),
+        new URL(null, "test:/shared", new URLStreamHandler() {
+          @Override
+          protected URLConnection openConnection(URL u) throws IOException {
+            requests.incrementAndGet();
+
+            try {
+              latch.await();
+            } catch (InterruptedException ex) {
+              throw new IOException(ex);
+            }
+
+            return source.getUrl().openConnection();
+          }
+        }));
+
+    // the transfer is held back until both names have been submitted
+    Iterator<Map.Entry<String, AssetObject>> it = Arrays.<Map.Entry<String, AssetObject>>asList(
+        new SimpleImmutableEntry<>("first", object),
+        new SimpleImmutableEntry<>("second", object)).iterator();
+    Iterator<Map.Entry<String, AssetObject>> entries =
+        new Iterator<Map.Entry<String, AssetObject>>() {
+          @Override
+          public boolean hasNext() {
+            boolean next = it.hasNext();
+            if (!next) {
+              latch.countDown();
+            }
+            return next;
+          }
+
+          @Override
+          public Map.Entry<String, AssetObject> next() {
+            return it.next();
+          }
+        };
+
+    AssetInstaller.Result result;
+    try (FetchExecutor executor = FetchExecutor.builder().build()) {
+      result = AssetInstaller.builder(executor, this.objects)
+          .build()
+          .install(entries);
+    }
+
+    Assert.assertEquals(1, requests.get());
+    Assert.assertEquals(1, result.getFetched());
+    Assert.assertEquals(1, result.getSkipped());
+    Assert.assertTrue(object.verify(AssetInstaller.resolve(this.objects, object)));
+  }
+
+  private Iterator<Map.Entry<String, AssetObject>> source(AssetObject object) {
+    return Collections.<Map.Entry<String, AssetObject>>singletonList(
+        new SimpleImmutableEntry<>("object", object)).iterator();
+  }
+
+  /**
+   * Creates a distinct source file and an object which refers to it.
+   */
+  private AssetObject object(String name) throws Exception {
+    byte[] contents = new byte[256];
+    Arrays.fill(contents, (byte) name.hashCode());
+    contents[0] = (byte) name.length();
+    Path source = this.sources.resolve(name);
+    Files.write(source, contents);
+
+    StringBuilder hash = new StringBuilder();
+    for (byte b : MessageDigest.getInstance("SHA-1").digest(contents)) {
+      hash.append(String.format("%02x", b));
+    }
+
+    return new AssetObject(hash.toString(), contents.length, source.toUri().toURL());
+  }
+
+  /**
+   * Records every notification along with the name of its object.
+   */
+  private static final class RecordingListener implements AssetInstaller.Listener {
+
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger completed;
+
+    private RecordingListener(@NonNull AtomicInteger completed) {
+      this.completed = completed;
+    }
+
+    @Override
+    public void onFetched(@NonNull String name, @NonNull AssetObject object,
+        @NonNull Path target) {
+      this.record("fetched", name);
+    }
+
+    @Override
+    public void onSkipped(@NonNull String name, @NonNull AssetObject object,
+        @NonNull Path target) {
+      this.record("skipped", name);
+    }
+
+    @Override
+    public void onFailed(@NonNull String name, @NonNull AssetObject object,
+        @NonNull IOException ex) {
+      this.record("failed", name);
+    }
+
+    private void record(@NonNull String type, @NonNull String name) {
+      this.events.add(type + ":" + name);
+      this.completed.incrementAndGet();
+    }
+
+    @NonNull
+    private List<String> filter(@NonNull String type) {
+      synchronized (this.events) {
+        List<String> filtered = new ArrayList<>();
+        for (String event : this.events) {
+          if (event.startsWith(type + ":")) {
+            filtered.add(event);
+          }
+        }
+        return filtered;
+      }
+    }
+  }
+}
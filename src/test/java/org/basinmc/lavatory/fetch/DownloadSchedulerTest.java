@@ -0,0 +1,226 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.fetch;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.basinmc.lavatory.fetch.DownloadScheduler.Priority;
+import org.basinmc.lavatory.fetch.DownloadScheduler.Session;
+import org.basinmc.lavatory.file.Download;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Evaluates whether the download scheduler honors priorities, fairness and its rate limit.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class DownloadSchedulerTest {
+
+  private static final int FILE_SIZE = 2048;
+  private static final int RATE = 16384;
+
+  private Path root;
+  private Path sources;
+
+  @Before
+  public void setUp() throws Exception {
+    this.root = Files.createTempDirectory("lavatory_test_");
+    this.sources = Files.createTempDirectory("lavatory_test_");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    for (Path root : new Path[]{this.root, this.sources}) {
+      try (Stream<Path> stream = Files.walk(root)) {
+        stream.sorted(Comparator.reverseOrder())
+            .forEach((p) -> p.toFile().delete());
+      }
+    }
+  }
+
+  /**
+   * Evaluates whether higher priorities are dispatched first, sessions are served in turns and
+   * the combined transfer rate is limited.
+   */
+  @Test
+  public void testSchedule() throws Exception {
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    List<CompletableFuture<?>> futures = new ArrayList<>();
+
+    try (FetchExecutor executor = FetchExecutor.builder().build()) {
+      DownloadScheduler scheduler = DownloadScheduler.builder(executor)
+          .withConcurrency(1)
+          .withRateLimit(RATE, 0)
+          .build();
+
+      Session a = scheduler.openSession("a");
+      Session b = scheduler.openSession("b");
+
+      long start = System.nanoTime();
+      futures.add(this.submit(a, "a0", Priority.BULK, order));
+      futures.add(this.submit(a, "a1", Priority.BULK, order));
+      futures.add(this.submit(a, "a2", Priority.BULK, order));
+      futures.add(this.submit(b, "b0", Priority.BULK, order));
+      futures.add(this.submit(b, "b1", Priority.LAUNCH, order));
+
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+          .get(30, TimeUnit.SECONDS);
+      long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+      Assert.assertEquals(Arrays.asList("a0", "b1", "a1", "b0", "a2"), order);
+      Assert.assertTrue("Transfer completed after " + elapsed + " ms",
+          elapsed >= (5 * FILE_SIZE - FILE_SIZE) * 1000L / RATE);
+    }
+
+    try (Stream<Path> stream = Files.list(this.root)) {
+      Assert.assertEquals(5, stream.count());
+    }
+  }
+
+  /**
+   * Evaluates whether concurrent requests for the same file share a single transfer.
+   */
+  @Test
+  public void testCoalesce() throws Exception {
+    Download source = this.download("shared");
+    AtomicInteger requests = new AtomicInteger();
+    CountDownLatch latch = new CountDownLatch(1);
+    Download download = new Download(source.getSha1(), source.getSize(),
+        new URL(null, "test:/shared", new URLStreamHandler() {
+          @Override
+          protected URLConnection openConnection(URL u) throws IOException {
+            requests.incrementAndGet();
+            URLConnection connection = source.getUrl().openConnection();
+
+            try {
+              latch.await();
+            } catch (InterruptedException ex) {
+              throw new IOException(ex);
+            }
+
+            return connection;
+          }
+        }));
+
+    try (FetchExecutor executor = FetchExecutor.builder().build()) {
+      DownloadScheduler scheduler = DownloadScheduler.builder(executor).build();
+      Session a = scheduler.openSession("a");
+      Session b = scheduler.openSession("b");
+
+      CompletableFuture<Path> first = a.submit(download, this.root.resolve("a"), Priority.BULK);
+      CompletableFuture<Path> second = b.submit(download, this.root.resolve("b"), Priority.BULK);
+      CompletableFuture<Path> third = b.submit(download, this.root.resolve("a"), Priority.BULK);
+      latch.countDown();
+
+      CompletableFuture.allOf(first, second, third).get(30, TimeUnit.SECONDS);
+      Assert.assertEquals(1, requests.get());
+      Assert.assertTrue(download.verify(this.root.resolve("a")));
+      Assert.assertTrue(download.verify(this.root.resolve("b")));
+
+      b.submit(download, this.root.resolve("c"), Priority.BULK).get(30, TimeUnit.SECONDS);
+      Assert.assertEquals(2, requests.get());
+    }
+  }
+
+  /**
+   * Evaluates whether a queued transfer is promoted when a request of a higher priority joins it.
+   */
+  @Test
+  public void testPromote() throws Exception {
+    Download source = this.download("blocker");
+    CountDownLatch latch = new CountDownLatch(1);
+    Download blocker = new Download(source.getSha1(), source.getSize(),
+        new URL(null, "test:/blocker", new URLStreamHandler() {
+          @Override
+          protected URLConnection openConnection(URL u) throws IOException {
+            try {
+              latch.await();
+            } catch (InterruptedException ex) {
+              throw new IOException(ex);
+            }
+
+            return source.getUrl().openConnection();
+          }
+        }));
+
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    try (FetchExecutor executor = FetchExecutor.builder().build()) {
+      DownloadScheduler scheduler = DownloadScheduler.builder(executor)
+          .withConcurrency(1)
+          .build();
+      Session a = scheduler.openSession("a");
+      Session b = scheduler.openSession("b");
+
+      // occupies the only slot until both remaining files have been queued
+      CompletableFuture<Path> first = a
+          .submit(blocker, this.root.resolve("blocker"), Priority.BULK);
+      CompletableFuture<?> bulk = this.submit(a, "bulk", Priority.BULK, order);
+      Download shared = this.download("shared");
+      CompletableFuture<?> queued = a.submit(shared, this.root.resolve("shared"), Priority.BULK)
+          .whenComplete((p, ex) -> order.add("shared"));
+      CompletableFuture<Path> launch = b
+          .submit(shared, this.root.resolve("launch"), Priority.LAUNCH);
+      latch.countDown();
+
+      CompletableFuture.allOf(first, bulk, queued, launch).get(30, TimeUnit.SECONDS);
+      Assert.assertEquals(Arrays.asList("shared", "bulk"), order);
+      Assert.assertTrue(shared.verify(this.root.resolve("launch")));
+    }
+  }
+
+  private CompletableFuture<Path> submit(Session session, String name, Priority priority,
+      List<String> order) throws Exception {
+    return session.submit(this.download(name), this.root.resolve(name), priority)
+        .whenComplete((p, ex) -> order.add(name));
+  }
+
+  /**
+   * Creates a distinct source file (as identical files would share their transfers).
+   */
+  private Download download(String name) throws Exception {
+    byte[] contents = new byte[FILE_SIZE];
+    Arrays.fill(contents, (byte) name.hashCode());
+    contents[0] = (byte) name.length();
+    Path source = this.sources.resolve(name + ".bin");
+    Files.write(source, contents);
+
+    StringBuilder hash = new StringBuilder();
+    for (byte b : MessageDigest.getInstance("SHA-1").digest(contents)) {
+      hash.append(String.format("%02x", b));
+    }
+
+    return new Download(hash.toString(), FILE_SIZE, source.toUri().toURL());
+  }
+}
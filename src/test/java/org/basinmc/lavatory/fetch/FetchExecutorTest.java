@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.fetch;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Evaluates whether the fetch executor honors its per-host connection limits.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class FetchExecutorTest {
+
+  /**
+   * Evaluates whether no more than the configured amount of tasks access a host concurrently.
+   */
+  @Test
+  public void testHostConcurrency() throws Exception {
+    for (boolean virtual : new boolean[]{false, true}) {
+      AtomicInteger active = new AtomicInteger();
+      AtomicInteger peak = new AtomicInteger();
+
+      try (FetchExecutor executor = FetchExecutor.builder()
+          .withHostConcurrency(2)
+          .withPlatformThreads(8)
+          .withVirtualThreads(virtual)
+          .build()) {
+        Assert.assertEquals(virtual && FetchExecutor.isVirtualThreadSupported(),
+            executor.isVirtual());
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 16; ++i) {
+          futures.add(executor.submit(new URL("https://libraries.minecraft.net/" + i), () -> {
+            int current = active.incrementAndGet();
+            peak.accumulateAndGet(current, Math::max);
+            Thread.sleep(5);
+            active.decrementAndGet();
+            return current;
+          }));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+            .get(10, TimeUnit.SECONDS);
+      }
+
+      Assert.assertTrue(peak.get() <= 2);
+      Assert.assertTrue(peak.get() >= 1);
+    }
+  }
+
+  /**
+   * Evaluates whether tasks for a saturated host do not hold up tasks for other hosts when only a
+   * limited amount of platform threads is available.
+   */
+  @Test
+  public void testHostIsolation() throws Exception {
+    CountDownLatch latch = new CountDownLatch(1);
+
+    try (FetchExecutor executor = FetchExecutor.builder()
+        .withHostConcurrency(1)
+        .withPlatformThreads(2)
+        .withVirtualThreads(false)
+        .build()) {
+      List<CompletableFuture<Boolean>> blocked = new ArrayList<>();
+      for (int i = 0; i < 4; ++i) {
+        blocked.add(executor.submit(new URL("https://libraries.minecraft.net/" + i),
+            () -> latch.await(10, TimeUnit.SECONDS)));
+      }
+
+      Assert.assertEquals("other", executor
+          .submit(new URL("https://resources.download.minecraft.net/"), () -> "other")
+          .get(5, TimeUnit.SECONDS));
+
+      latch.countDown();
+      CompletableFuture.allOf(blocked.toArray(new CompletableFuture[0]))
+          .get(10, TimeUnit.SECONDS);
+    }
+  }
+
+  /**
+   * Evaluates whether tasks which are still queued when the executor is closed are completed
+   * exceptionally.
+   */
+  @Test
+  public void testClose() throws Exception {
+    CountDownLatch latch = new CountDownLatch(1);
+    CompletableFuture<Boolean> queued;
+
+    try (FetchExecutor executor = FetchExecutor.builder()
+        .withHostConcurrency(1)
+        .withVirtualThreads(false)
+        .build()) {
+      executor.submit(new URL("https://libraries.minecraft.net/0"),
+          () -> latch.await(10, TimeUnit.SECONDS));
+      queued = executor.submit(new URL("https://libraries.minecraft.net/1"), () -> true);
+    }
+
+    latch.countDown();
+    Assert.assertTrue(queued.isCompletedExceptionally());
+  }
+}
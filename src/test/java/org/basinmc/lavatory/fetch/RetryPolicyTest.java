@@ -0,0 +1,184 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.fetch;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.basinmc.lavatory.file.Download;
+import org.basinmc.lavatory.mirror.MirrorLayout;
+import org.basinmc.lavatory.mirror.MirrorServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Evaluates whether retry policies classify errors and fail over to mirrors.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class RetryPolicyTest {
+
+  private static final String CONTENT = "mirrored";
+  private static final String SHA1 = "e109e851123276ce6d6fd73474e76156b72ced23";
+
+  private Path root;
+  private MirrorServer server;
+
+  @Before
+  public void setUp() throws IOException {
+    this.root = Files.createTempDirectory("lavatory_test_");
+    this.server = MirrorServer.start(new MirrorLayout(this.root),
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    this.server.close();
+
+    try (Stream<Path> stream = Files.walk(this.root)) {
+      stream.sorted(Comparator.reverseOrder())
+          .forEach((p) -> p.toFile().delete());
+    }
+  }
+
+  /**
+   * Evaluates whether errors are correctly classified.
+   */
+  @Test
+  public void testClassification() throws IOException {
+    URL url = new URL("https://example.org/");
+
+    Assert.assertTrue(RetryPolicy.isRetryable(new ConnectException()));
+    Assert.assertTrue(RetryPolicy.isRetryable(new SocketTimeoutException()));
+    Assert.assertTrue(RetryPolicy.isRetryable(new HttpStatusException(url, 503)));
+    Assert.assertTrue(RetryPolicy.isRetryable(new HttpStatusException(url, 429)));
+    Assert.assertFalse(RetryPolicy.isRetryable(new HttpStatusException(url, 404)));
+    Assert.assertFalse(RetryPolicy.isRetryable(new IOException()));
+    Assert.assertTrue(RetryPolicy.isRetryable(new EOFException()));
+  }
+
+  /**
+   * Evaluates whether responses which end before the announced size are repeated.
+   */
+  @Test
+  public void testTruncated() throws IOException {
+    byte[] content = CONTENT.getBytes(StandardCharsets.UTF_8);
+    AtomicInteger attempts = new AtomicInteger();
+    URL origin = new URL(null, "test:/files/test.txt", new URLStreamHandler() {
+      @Override
+      protected URLConnection openConnection(URL u) {
+        int attempt = attempts.incrementAndGet();
+
+        return new URLConnection(u) {
+          @Override
+          public void connect() {
+          }
+
+          @Override
+          public InputStream getInputStream() {
+            return new ByteArrayInputStream(content, 0, attempt == 1 ? 3 : content.length);
+          }
+        };
+      }
+    });
+
+    RetryPolicy policy = RetryPolicy.builder()
+        .withBackoff(Duration.ZERO, 1)
+        .withMaxAttempts(2)
+        .build();
+
+    Download download = new Download(SHA1, CONTENT.length(), origin);
+    Path target = this.root.resolve("target.txt");
+    download.fetch(target, policy);
+    Assert.assertTrue(download.verify(target));
+    Assert.assertEquals(2, attempts.get());
+  }
+
+  /**
+   * Evaluates whether an unreachable origin fails over to the configured mirror.
+   */
+  @Test
+  public void testFailover() throws IOException {
+    int port;
+    try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      port = socket.getLocalPort();
+    }
+
+    URL origin = new URL("http://127.0.0.1:" + port + "/files/test.txt");
+    Path mirrored = this.root.resolve("127.0.0.1/files/test.txt");
+    Files.createDirectories(mirrored.getParent());
+    Files.write(mirrored, CONTENT.getBytes(StandardCharsets.UTF_8));
+
+    RetryPolicy policy = RetryPolicy.builder()
+        .withBackoff(Duration.ZERO, 1)
+        .withMirror(this.server.getBaseUrl())
+        .build();
+
+    Download download = new Download(SHA1, CONTENT.length(), origin);
+    Path target = this.root.resolve("target.txt");
+    download.fetch(target, policy);
+    Assert.assertTrue(download.verify(target));
+
+    try {
+      policy.execute(new URL(this.server.getBaseUrl(), "/missing"), (in) -> null);
+      Assert.fail("Expected missing file to fail");
+    } catch (HttpStatusException ex) {
+      Assert.assertEquals(404, ex.getStatusCode());
+    }
+  }
+
+  /**
+   * Evaluates whether a resource which is missing from one location is retrieved from the next
+   * location without consuming an attempt.
+   */
+  @Test
+  public void testNotFoundFailover() throws IOException {
+    URL base = this.server.getBaseUrl();
+    URL origin = new URL(base, "/files/test.txt");
+    Path mirrored = this.root.resolve(base.getHost() + "/files/test.txt");
+    Files.createDirectories(mirrored.getParent());
+    Files.write(mirrored, CONTENT.getBytes(StandardCharsets.UTF_8));
+
+    RetryPolicy policy = RetryPolicy.builder()
+        .withMaxAttempts(1)
+        .withMirror(base)
+        .build();
+
+    Download download = new Download(SHA1, CONTENT.length(), origin);
+    Path target = this.root.resolve("target.txt");
+    download.fetch(target, policy);
+    Assert.assertTrue(download.verify(target));
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.file;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Evaluates whether bulk verification detects mismatching files.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class DigestServiceTest {
+
+  // sha1 of "asset"
+  private static final String CHECKSUM = "05fac94380a70241f23780e7aef62b190894238f";
+
+  private Path root;
+
+  @Before
+  public void setUp() throws IOException {
+    this.root = Files.createTempDirectory("lavatory_test_");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> stream = Files.walk(this.root)) {
+      stream.sorted(Comparator.reverseOrder())
+          .forEach((p) -> p.toFile().delete());
+    }
+  }
+
+  /**
+   * Evaluates whether matching, mismatching and missing files are reported correctly.
+   */
+  @Test
+  public void testVerify() throws Exception {
+    URL url = new URL("https://example.org");
+    Map<Path, Download> files = new HashMap<>();
+
+    for (int i = 0; i < 10; ++i) {
+      Path path = this.root.resolve("asset" + i);
+      Files.write(path, (i == 7 ? "assex" : "asset").getBytes(StandardCharsets.UTF_8));
+      files.put(path, new Download(CHECKSUM, 5, url));
+    }
+    files.put(this.root.resolve("missing"), new Download(CHECKSUM, 5, url));
+
+    try (DigestService service = DigestService.builder()
+        .withThreads(2)
+        .build()) {
+      DigestService.Result result = service.verify(files).get();
+
+      Assert.assertEquals(9, result.getVerified());
+      Assert.assertEquals(1, result.getMismatches().size());
+      Assert.assertTrue(result.getMismatches().contains(this.root.resolve("asset7")));
+      Assert.assertEquals(1, result.getFailures().size());
+      Assert.assertFalse(result.isSuccessful());
+
+      Assert.assertEquals(11, service.getMetrics().getFiles());
+      Assert.assertEquals(50, service.getMetrics().getBytes());
+    }
+  }
+}
@@ -16,6 +16,8 @@
  */
 package org.basinmc.lavatory.file;
 
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
@@ -26,6 +28,7 @@ import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.Random;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -88,4 +91,36 @@ public class DownloadTest {
       Files.deleteIfExists(target);
     }
   }
+
+  /**
+   * Evaluates whether files are fetched completely when they span multiple buffers and whether
+   * short transfers are reported.
+   */
+  @Test
+  public void testFetch() throws IOException {
+    Path source = Files.createTempFile("lavatory_test_", ".tmp");
+    Path target = Files.createTempFile("lavatory_test_", ".tmp");
+
+    try {
+      byte[] contents = new byte[Transfer.BUFFER_SIZE * 2 + 17];
+      new Random(42).nextBytes(contents);
+      Files.write(source, contents);
+
+      new Download("0", contents.length, source.toUri().toURL()).fetch(target);
+      Assert.assertArrayEquals(contents, Files.readAllBytes(target));
+
+      try {
+        Transfer.copy(new ByteArrayInputStream(contents, 0, 42), target, 1024);
+        Assert.fail("Expected short transfer to fail");
+      } catch (EOFException ignore) {
+      }
+      Assert.assertEquals(42, Files.size(target));
+
+      long length = Transfer.copy(new ByteArrayInputStream(contents, 0, 42), target, -1);
+      Assert.assertEquals(42, length);
+    } finally {
+      Files.deleteIfExists(source);
+      Files.deleteIfExists(target);
+    }
+  }
 }
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.install;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.stream.Stream;
+import org.basinmc.lavatory.file.Download;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Evaluates whether the install collector removes unreferenced libraries and assets only.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class InstallCollectorTest {
+
+  private static final String LIVE = "0123456789abcdef0123456789abcdef01234567";
+  private static final String SHARED = "1123456789abcdef0123456789abcdef01234567";
+  private static final String DEAD = "2123456789abcdef0123456789abcdef01234567";
+
+  private Path root;
+
+  @Before
+  public void setUp() throws IOException {
+    this.root = Files.createTempDirectory("lavatory_test_");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> stream = Files.walk(this.root)) {
+      stream.sorted(Comparator.reverseOrder())
+          .forEach((p) -> p.toFile().delete());
+    }
+  }
+
+  /**
+   * Evaluates whether unmarked files are reported, deleted and their directories compacted.
+   */
+  @Test
+  public void testCollect() throws Exception {
+    Path library = Paths.get("libraries", "a", "live.jar");
+    Path object = Paths.get("assets", "objects", "01", LIVE);
+    InstallPlan plan = new InstallPlan("test", Arrays.asList(
+        new InstallEntry(InstallPhase.CLIENT, library, this.download(LIVE)),
+        new InstallEntry(InstallPhase.ASSETS, object, this.download(LIVE)),
+        new InstallEntry(InstallPhase.CLIENT, Paths.get("libraries", "b", "shared.jar"),
+            this.download(SHARED))));
+
+    this.create(library, true);
+    this.create(object, true);
+    Path shared = this.create(Paths.get("assets", "objects", "11", SHARED), true);
+    Path deadLibrary = this.create(Paths.get("libraries", "c", "dead.jar"), true);
+    Path deadObject = this.create(Paths.get("assets", "objects", "21", DEAD), true);
+    Path recent = this.create(Paths.get("libraries", "d", "recent.jar"), false);
+    Path version = this.create(Paths.get("versions", "old", "old.jar"), true);
+
+    InstallCollector.Mark mark = InstallCollector.builder(this.root).build()
+        .mark(Collections.singletonList(plan));
+    Assert.assertTrue(mark.isRetained(library));
+    Assert.assertTrue(mark.isRetained(shared));
+    Assert.assertFalse(mark.isRetained(deadLibrary));
+
+    InstallCollector.Result result = InstallCollector.builder(this.root)
+        .withDryRun(true)
+        .withGracePeriod(Duration.ofMinutes(5))
+        .build()
+        .sweep(mark);
+    Assert.assertTrue(result.isDryRun());
+    Assert.assertEquals(new HashSet<>(Arrays.asList(deadLibrary, deadObject)),
+        new HashSet<>(result.getDeleted()));
+    Assert.assertEquals(8, result.getReclaimedBytes());
+    Assert.assertTrue(Files.exists(deadLibrary));
+
+    result = InstallCollector.builder(this.root)
+        .withGracePeriod(Duration.ofMinutes(5))
+        .build()
+        .sweep(mark);
+    Assert.assertFalse(result.isDryRun());
+    Assert.assertEquals(2, result.getDeleted().size());
+    Assert.assertTrue(result.getFailures().isEmpty());
+
+    Assert.assertTrue(Files.exists(this.root.resolve(library)));
+    Assert.assertTrue(Files.exists(this.root.resolve(object)));
+    Assert.assertTrue(Files.exists(shared));
+    Assert.assertTrue(Files.exists(recent));
+    Assert.assertTrue(Files.exists(version));
+    Assert.assertFalse(Files.exists(deadLibrary));
+    Assert.assertFalse(Files.exists(deadObject));
+    Assert.assertFalse(Files.exists(deadObject.getParent()));
+  }
+
+  /**
+   * Evaluates whether marked files are retained when the launcher directory is given relative to
+   * the working directory.
+   */
+  @Test
+  public void testRelativeRoot() throws Exception {
+    Path library = Paths.get("libraries", "a", "live.jar");
+    Path object = Paths.get("assets", "objects", "01", LIVE);
+    InstallPlan plan = new InstallPlan("test", Arrays.asList(
+        new InstallEntry(InstallPhase.CLIENT, library, this.download(LIVE)),
+        new InstallEntry(InstallPhase.ASSETS, object, this.download(LIVE))));
+
+    this.create(library, true);
+    this.create(object, true);
+    Path deadLibrary = this.create(Paths.get("libraries", "c", "dead.jar"), true);
+
+    Path relative = Paths.get("").toAbsolutePath().relativize(this.root);
+    Assert.assertFalse(relative.isAbsolute());
+
+    InstallCollector collector = InstallCollector.builder(relative)
+        .withGracePeriod(Duration.ofMinutes(5))
+        .build();
+    InstallCollector.Result result = collector.sweep(
+        collector.mark(Collections.singletonList(plan)));
+
+    Assert.assertEquals(1, result.getDeleted().size());
+    Assert.assertTrue(Files.exists(this.root.resolve(library)));
+    Assert.assertTrue(Files.exists(this.root.resolve(object)));
+    Assert.assertFalse(Files.exists(deadLibrary));
+  }
+
+  private Download download(String sha1) throws IOException {
+    return new Download(sha1, 4, new URL("https://example.org/" + sha1));
+  }
+
+  private Path create(Path relative, boolean expired) throws IOException {
+    Path path = this.root.resolve(relative);
+    Files.createDirectories(path.getParent());
+    Files.write(path, new byte[4]);
+
+    if (expired) {
+      Files.setLastModifiedTime(path, FileTime.from(Instant.now().minus(Duration.ofDays(1))));
+    }
+
+    return path;
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.install;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.basinmc.lavatory.file.Download;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Evaluates whether deltas between installation plans are computed correctly.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class InstallDeltaTest {
+
+  /**
+   * Evaluates whether entries are classified by their path and checksum.
+   */
+  @Test
+  public void testCompute() throws MalformedURLException {
+    InstallPlan source = new InstallPlan("1.0", Arrays.asList(
+        entry(InstallPhase.CLIENT, "versions/1.0/1.0.jar", "aa", 10, "a"),
+        entry(InstallPhase.CLIENT, "libraries/kept.jar", "bb", 20, "a"),
+        entry(InstallPhase.CLIENT, "libraries/changed.jar", "cc", 30, "a"),
+        entry(InstallPhase.ASSETS, "assets/objects/dd/dd", "dd", 40, "a")
+    ));
+    InstallPlan target = new InstallPlan("1.1", Arrays.asList(
+        entry(InstallPhase.CLIENT, "versions/1.1/1.1.jar", "ee", 50, "a"),
+        entry(InstallPhase.CLIENT, "libraries/kept.jar", "BB", 20, "b"),
+        entry(InstallPhase.CLIENT, "libraries/changed.jar", "ff", 31, "a"),
+        entry(InstallPhase.ASSETS, "assets/objects/dd/dd", "dd", 40, "a")
+    ));
+
+    InstallDelta delta = InstallDelta.compute(source, target);
+    Assert.assertFalse(delta.isEmpty());
+    Assert.assertEquals(2, delta.getAdded().size());
+    Assert.assertEquals(Paths.get("versions/1.1/1.1.jar"), delta.getAdded().get(0).getPath());
+    Assert.assertEquals(Paths.get("libraries/changed.jar"), delta.getAdded().get(1).getPath());
+    Assert.assertEquals(1, delta.getRemoved().size());
+    Assert.assertEquals(Paths.get("versions/1.0/1.0.jar"), delta.getRemoved().get(0).getPath());
+    Assert.assertEquals(2, delta.getKept().size());
+    Assert.assertEquals(81, delta.getTransferSize());
+
+    InstallPlan plan = delta.toPlan();
+    Assert.assertEquals("1.1", plan.getVersionId());
+    Assert.assertEquals(delta.getAdded(), plan.getEntries());
+
+    Assert.assertTrue(delta.getCopied().isEmpty());
+    Assert.assertTrue(InstallDelta.compute(target, target).isEmpty());
+  }
+
+  /**
+   * Evaluates whether relocated files are matched by their checksum, whether removed entries are
+   * reported in plan order and whether copies are applied to the launcher directory.
+   */
+  @Test
+  public void testCopy() throws IOException {
+    InstallPlan source = new InstallPlan("1.0", Arrays.asList(
+        entry(InstallPhase.CLIENT, "libraries/c.jar", "cc", 4, "a"),
+        entry(InstallPhase.CLIENT, "libraries/b.jar", "bb", 4, "a"),
+        entry(InstallPhase.CLIENT, "libraries/a/1.0/a.jar", "aa", 4, "a"),
+        entry(InstallPhase.CLIENT, "libraries/kept.jar", "dd", 4, "a")
+    ));
+    InstallPlan target = new InstallPlan("1.1", Arrays.asList(
+        entry(InstallPhase.CLIENT, "libraries/a/1.1/a.jar", "AA", 4, "b"),
+        entry(InstallPhase.CLIENT, "libraries/kept.jar", "dd", 4, "a"),
+        entry(InstallPhase.CLIENT, "libraries/kept-copy.jar", "dd", 4, "a"),
+        entry(InstallPhase.CLIENT, "libraries/b.jar", "bb", 5, "a")
+    ));
+
+    InstallDelta delta = InstallDelta.compute(source, target);
+    Assert.assertEquals(1, delta.getAdded().size());
+    Assert.assertEquals(Paths.get("libraries/b.jar"), delta.getAdded().get(0).getPath());
+    Assert.assertEquals(2, delta.getRemoved().size());
+    Assert.assertEquals(Paths.get("libraries/c.jar"), delta.getRemoved().get(0).getPath());
+    Assert.assertEquals(Paths.get("libraries/a/1.0/a.jar"),
+        delta.getRemoved().get(1).getPath());
+    Assert.assertEquals(5, delta.getTransferSize());
+
+    Assert.assertEquals(2, delta.getCopied().size());
+    Assert.assertEquals(Paths.get("libraries/a/1.0/a.jar"),
+        delta.getCopied().get(0).getSource().getPath());
+    Assert.assertEquals(Paths.get("libraries/a/1.1/a.jar"),
+        delta.getCopied().get(0).getTarget().getPath());
+    Assert.assertEquals(Paths.get("libraries/kept.jar"),
+        delta.getCopied().get(1).getSource().getPath());
+    Assert.assertEquals(Paths.get("libraries/kept-copy.jar"),
+        delta.getCopied().get(1).getTarget().getPath());
+
+    Path root = Files.createTempDirectory("lavatory_test_");
+
+    try {
+      for (InstallEntry entry : source.getEntries()) {
+        Path path = root.resolve(entry.getPath());
+        Files.createDirectories(path.getParent());
+        Files.write(path, entry.getDownload().getSha1().getBytes(StandardCharsets.UTF_8));
+      }
+
+      Assert.assertEquals(2, delta.copy(root));
+      Assert.assertEquals(2, delta.prune(root));
+      Assert.assertArrayEquals("aa".getBytes(StandardCharsets.UTF_8),
+          Files.readAllBytes(root.resolve("libraries/a/1.1/a.jar")));
+      Assert.assertArrayEquals("dd".getBytes(StandardCharsets.UTF_8),
+          Files.readAllBytes(root.resolve("libraries/kept-copy.jar")));
+      Assert.assertTrue(Files.exists(root.resolve("libraries/kept.jar")));
+      Assert.assertFalse(Files.exists(root.resolve("libraries/a/1.0/a.jar")));
+    } finally {
+      try (Stream<Path> stream = Files.walk(root)) {
+        stream.sorted(Comparator.reverseOrder())
+            .forEach((p) -> p.toFile().delete());
+      }
+    }
+  }
+
+  private static InstallEntry entry(InstallPhase phase, String path, String sha1, long size,
+      String host) throws MalformedURLException {
+    return new InstallEntry(phase, Paths.get(path),
+        new Download(sha1, size, new URL("https://" + host + ".example.org/" + path)));
+  }
+}
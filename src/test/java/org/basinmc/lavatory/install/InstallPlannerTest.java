@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.install;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.List;
+import org.basinmc.lavatory.ResolverContext;
+import org.basinmc.lavatory.asset.AssetIndex;
+import org.basinmc.lavatory.install.InstallPlanner.AssetOrder;
+import org.basinmc.lavatory.rule.system.OperatingSystem;
+import org.basinmc.lavatory.version.Version;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Evaluates whether installation plans are ordered and laid out as expected.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class InstallPlannerTest {
+
+  private Version version;
+  private AssetIndex assetIndex;
+
+  @Before
+  public void setUp() throws IOException {
+    try (InputStream inputStream = this.getClass()
+        .getResourceAsStream("/version_modern_release.json")) {
+      this.version = Version.read(inputStream);
+    }
+    try (InputStream inputStream = this.getClass().getResourceAsStream("/asset_index.json")) {
+      this.assetIndex = AssetIndex.read(inputStream);
+    }
+  }
+
+  /**
+   * Evaluates whether files are grouped into their respective phases.
+   */
+  @Test
+  public void testPhases() {
+    ResolverContext ctx = ResolverContext.builder()
+        .withOperatingSystem(OperatingSystem.LINUX)
+        .build();
+    InstallPlan plan = InstallPlanner.builder().build().plan(this.version, ctx, this.assetIndex);
+
+    Assert.assertEquals("1.12.2", plan.getVersionId());
+    Assert.assertEquals(Paths.get("versions", "1.12.2", "1.12.2.jar"),
+        plan.getEntries(InstallPhase.CLIENT).get(0).getPath());
+    Assert.assertFalse(plan.getEntries(InstallPhase.NATIVES).isEmpty());
+    plan.getEntries(InstallPhase.NATIVES).forEach((e) -> Assert
+        .assertTrue(e.getPath().toString(), e.getPath().toString().contains("natives-linux")));
+
+    List<InstallEntry> entries = plan.getEntries();
+    for (int i = 1; i < entries.size(); ++i) {
+      Assert.assertTrue(
+          entries.get(i - 1).getPhase().compareTo(entries.get(i).getPhase()) <= 0);
+    }
+
+    List<InstallEntry> assets = plan.getEntries(InstallPhase.ASSETS);
+    Assert.assertEquals(6, assets.size());
+    Assert.assertEquals(Paths.get("assets", "indexes", "1.12.json"), assets.get(0).getPath());
+    Assert.assertEquals(7268, assets.get(1).getDownload().getSize());
+    Assert.assertEquals(220330, assets.get(5).getDownload().getSize());
+  }
+
+  /**
+   * Evaluates whether assets may be ordered by their category.
+   */
+  @Test
+  public void testAssetCategories() {
+    ResolverContext ctx = ResolverContext.builder()
+        .withOperatingSystem(OperatingSystem.WINDOWS)
+        .build();
+    InstallPlan plan = InstallPlanner.builder()
+        .withAssetOrder(AssetOrder.CATEGORY)
+        .build()
+        .plan(this.version, ctx, this.assetIndex);
+
+    plan.getEntries(InstallPhase.NATIVES).forEach((e) -> Assert
+        .assertTrue(e.getPath().toString(), e.getPath().toString().contains("natives-windows")));
+
+    List<InstallEntry> assets = plan.getEntries(InstallPhase.ASSETS);
+    Assert.assertEquals(35617, assets.get(1).getDownload().getSize());
+    Assert.assertEquals(220330, assets.get(2).getDownload().getSize());
+  }
+}
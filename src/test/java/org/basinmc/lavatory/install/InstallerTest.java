@@ -0,0 +1,183 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.install;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.basinmc.lavatory.fetch.DownloadScheduler;
+import org.basinmc.lavatory.fetch.FetchExecutor;
+import org.basinmc.lavatory.file.Download;
+import org.basinmc.lavatory.install.Installer.Installation;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Evaluates whether installations signal their launchability before all phases have completed.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class InstallerTest {
+
+  private Path root;
+  private Path sources;
+
+  @Before
+  public void setUp() throws IOException {
+    this.root = Files.createTempDirectory("lavatory_test_");
+    this.sources = Files.createTempDirectory("lavatory_test_");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    for (Path root : new Path[]{this.root, this.sources}) {
+      try (Stream<Path> stream = Files.walk(root)) {
+        stream.sorted(Comparator.reverseOrder())
+            .forEach((p) -> p.toFile().delete());
+      }
+    }
+  }
+
+  /**
+   * Evaluates whether the launchable signal completes once all critical phases have been
+   * installed while the remaining phases are still in progress.
+   */
+  @Test
+  public void testLaunchable() throws Exception {
+    CountDownLatch latch = new CountDownLatch(1);
+    InstallPlan plan = new InstallPlan("test", Arrays.asList(
+        new InstallEntry(InstallPhase.CLIENT, Paths.get("versions", "test", "test.jar"),
+            this.download("client")),
+        new InstallEntry(InstallPhase.CLIENT, Paths.get("libraries", "a", "a.jar"),
+            this.download("library")),
+        new InstallEntry(InstallPhase.NATIVES, Paths.get("libraries", "b", "b.jar"),
+            this.download("natives")),
+        new InstallEntry(InstallPhase.LOGGING, Paths.get("assets", "log_configs", "log.xml"),
+            this.gated(this.download("logging"), latch)),
+        new InstallEntry(InstallPhase.ASSETS, Paths.get("assets", "objects", "ab", "object"),
+            this.gated(this.download("asset"), latch))));
+
+    try (FetchExecutor executor = FetchExecutor.builder().build()) {
+      Installation installation = Installer.builder(DownloadScheduler.builder(executor).build())
+          .build()
+          .install(plan, this.root);
+
+      try {
+        installation.getLaunchable().get(30, TimeUnit.SECONDS);
+        Assert.assertTrue(installation.getPhase(InstallPhase.CLIENT).isDone());
+        Assert.assertTrue(installation.getPhase(InstallPhase.NATIVES).isDone());
+        Assert.assertFalse(installation.getPhase(InstallPhase.LOGGING).isDone());
+        Assert.assertFalse(installation.getPhase(InstallPhase.ASSETS).isDone());
+        Assert.assertFalse(installation.getCompletion().isDone());
+      } finally {
+        latch.countDown();
+      }
+
+      installation.getCompletion().get(30, TimeUnit.SECONDS);
+    }
+
+    for (InstallEntry entry : plan.getEntries()) {
+      Assert.assertTrue(entry.getDownload().verify(this.root.resolve(entry.getPath())));
+    }
+  }
+
+  /**
+   * Evaluates whether failures are reported through the phase in which they occurred without
+   * affecting unrelated phases.
+   */
+  @Test
+  public void testFailure() throws Exception {
+    Download missing = this.download("missing");
+    Files.delete(this.sources.resolve("missing"));
+
+    InstallPlan plan = new InstallPlan("test", Arrays.asList(
+        new InstallEntry(InstallPhase.NATIVES, Paths.get("libraries", "b", "b.jar"), missing),
+        new InstallEntry(InstallPhase.ASSETS, Paths.get("assets", "objects", "ab", "object"),
+            this.download("asset"))));
+
+    try (FetchExecutor executor = FetchExecutor.builder().build()) {
+      Installation installation = Installer.builder(DownloadScheduler.builder(executor).build())
+          .build()
+          .install(plan, this.root);
+
+      installation.getPhase(InstallPhase.ASSETS).get(30, TimeUnit.SECONDS);
+      installation.getPhase(InstallPhase.CLIENT).get(30, TimeUnit.SECONDS);
+
+      for (Future<?> future : Arrays.asList(
+          installation.getPhase(InstallPhase.NATIVES), installation.getLaunchable(),
+          installation.getCompletion())) {
+        try {
+          future.get(30, TimeUnit.SECONDS);
+          Assert.fail("Expected missing file to fail the installation");
+        } catch (ExecutionException ex) {
+          Assert.assertTrue(String.valueOf(ex.getCause()), ex.getCause() instanceof IOException);
+        }
+      }
+    }
+  }
+
+  /**
+   * Creates a distinct source file and a download which refers to it.
+   */
+  private Download download(String name) throws Exception {
+    byte[] contents = new byte[512];
+    Arrays.fill(contents, (byte) name.hashCode());
+    contents[0] = (byte) name.length();
+    Path source = this.sources.resolve(name);
+    Files.write(source, contents);
+
+    StringBuilder hash = new StringBuilder();
+    for (byte b : MessageDigest.getInstance("SHA-1").digest(contents)) {
+      hash.append(String.format("%02x", b));
+    }
+
+    return new Download(hash.toString(), contents.length, source.toUri().toURL());
+  }
+
+  /**
+   * Creates a download which is held back until the specified latch is released.
+   */
+  private Download gated(Download download, CountDownLatch latch) throws Exception {
+    return new Download(download.getSha1(), download.getSize(),
+        new URL(null, "test:/" + download.getSha1(), new URLStreamHandler() {
+          @Override
+          protected URLConnection openConnection(URL u) throws IOException {
+            try {
+              latch.await();
+            } catch (InterruptedException ex) {
+              throw new IOException(ex);
+            }
+
+            return download.getUrl().openConnection();
+          }
+        }));
+  }
+}
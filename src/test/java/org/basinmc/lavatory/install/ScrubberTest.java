@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.install;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.basinmc.lavatory.file.Download;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Evaluates whether corrupted files are quarantined and repaired.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class ScrubberTest {
+
+  private Path origin;
+  private Path root;
+
+  @Before
+  public void setUp() throws IOException {
+    this.origin = Files.createTempDirectory("lavatory_test_");
+    this.root = Files.createTempDirectory("lavatory_test_");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    for (Path root : new Path[]{this.origin, this.root}) {
+      try (Stream<Path> stream = Files.walk(root)) {
+        stream.sorted(Comparator.reverseOrder())
+            .forEach((p) -> p.toFile().delete());
+      }
+    }
+  }
+
+  /**
+   * Evaluates whether intact files are kept while corrupted and missing files are retrieved
+   * again.
+   */
+  @Test
+  public void testScrub() throws Exception {
+    InstallEntry intact = this.entry("intact.jar", "intact");
+    InstallEntry corrupt = this.entry("corrupt.jar", "corrupt");
+    InstallEntry missing = this.entry("missing.jar", "missing");
+    InstallPlan plan = new InstallPlan("test", Arrays.asList(intact, corrupt, missing));
+
+    this.install(intact, "intact");
+    this.install(corrupt, "corrupted");
+
+    Scrubber.Result result = Scrubber.builder()
+        .withRateLimit(1024)
+        .build()
+        .scrub(plan, this.root);
+
+    Assert.assertTrue(result.getFailures().toString(), result.isHealthy());
+    Assert.assertEquals(1, result.getVerified());
+    Assert.assertEquals(1, result.getCorrupted());
+    Assert.assertEquals(1, result.getMissing());
+    Assert.assertEquals(2, result.getRepaired());
+
+    Assert.assertEquals("corrupt", read(this.root.resolve(corrupt.getPath())));
+    Assert.assertEquals("missing", read(this.root.resolve(missing.getPath())));
+    Assert.assertEquals("corrupted",
+        read(this.root.resolve(".quarantine").resolve(corrupt.getPath())));
+
+    result = Scrubber.builder().build().scrub(plan, this.root);
+    Assert.assertEquals(3, result.getVerified());
+    Assert.assertEquals(0, result.getRepaired());
+  }
+
+  /**
+   * Evaluates whether corrupted files are only reported when repairs are disabled.
+   */
+  @Test
+  public void testReportOnly() throws Exception {
+    InstallEntry corrupt = this.entry("corrupt.jar", "corrupt");
+    this.install(corrupt, "corrupted");
+
+    Scrubber.Result result = Scrubber.builder()
+        .withRepair(false)
+        .build()
+        .scrub(new InstallPlan("test", Arrays.asList(corrupt)), this.root);
+
+    Assert.assertFalse(result.isHealthy());
+    Assert.assertEquals(1, result.getCorrupted());
+    Assert.assertEquals(0, result.getRepaired());
+    Assert.assertFalse(Files.exists(this.root.resolve(corrupt.getPath())));
+  }
+
+  private InstallEntry entry(String name, String contents)
+      throws IOException, NoSuchAlgorithmException {
+    byte[] data = contents.getBytes(StandardCharsets.UTF_8);
+    Path source = this.origin.resolve(name);
+    Files.write(source, data);
+
+    StringBuilder hash = new StringBuilder();
+    for (byte b : MessageDigest.getInstance("SHA-1").digest(data)) {
+      hash.append(String.format("%02x", b));
+    }
+
+    return new InstallEntry(InstallPhase.CLIENT, Paths.get("libraries", name),
+        new Download(hash.toString(), data.length, source.toUri().toURL()));
+  }
+
+  private void install(InstallEntry entry, String contents) throws IOException {
+    Path target = this.root.resolve(entry.getPath());
+    Files.createDirectories(target.getParent());
+    Files.write(target, contents.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String read(Path path) throws IOException {
+    return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+  }
+}
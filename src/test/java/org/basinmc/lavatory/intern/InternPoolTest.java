@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.intern;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import org.basinmc.lavatory.file.LibraryReference;
+import org.basinmc.lavatory.version.Version;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Evaluates whether the intern pool deduplicates values across versions.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class InternPoolTest {
+
+  /**
+   * Evaluates whether equal values are replaced with their canonical instance.
+   */
+  @Test
+  public void testIntern() {
+    InternPool pool = new InternPool(4);
+    String value = new String("org.lwjgl:lwjgl:3.1.2");
+
+    Assert.assertEquals(4, pool.getCapacity());
+    Assert.assertSame(value, pool.intern(value));
+    Assert.assertSame(value, pool.intern(new String(value)));
+    Assert.assertNull(pool.intern(null));
+  }
+
+  /**
+   * Evaluates whether identical libraries and strings are shared between decoded versions.
+   */
+  @Test
+  public void testVersions() throws IOException {
+    ObjectMapper mapper = new InternPool().createMapper();
+
+    Version release = this.read("/version_modern_release.json", mapper);
+    Version snapshot = this.read("/version_modern_snapshot.json", mapper);
+
+    Assert.assertSame(release.getMainClass(), snapshot.getMainClass());
+
+    int shared = 0;
+    for (LibraryReference library : release.getLibraries()) {
+      LibraryReference other = snapshot.getLibrary(library.getName()).orElse(null);
+
+      if (library.equals(other)) {
+        Assert.assertSame(library, other);
+        ++shared;
+      }
+    }
+
+    Assert.assertTrue(shared > 0);
+  }
+
+  private Version read(String resource, ObjectMapper mapper) throws IOException {
+    try (InputStream inputStream = this.getClass().getResourceAsStream(resource)) {
+      return Version.read(inputStream, mapper);
+    }
+  }
+}
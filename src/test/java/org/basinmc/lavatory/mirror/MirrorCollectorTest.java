@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.mirror;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.basinmc.lavatory.file.Download;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Evaluates whether the collector removes unreferenced files only.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class MirrorCollectorTest {
+
+  private Path root;
+  private MirrorLayout layout;
+
+  @Before
+  public void setUp() throws IOException {
+    this.root = Files.createTempDirectory("lavatory_test_");
+    this.layout = new MirrorLayout(this.root);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> stream = Files.walk(this.root)) {
+      stream.sorted(Comparator.reverseOrder())
+          .forEach((p) -> p.toFile().delete());
+    }
+  }
+
+  /**
+   * Evaluates whether unmarked files are reported, deleted and their directories compacted.
+   */
+  @Test
+  public void testCollect() throws Exception {
+    Download live = new Download("00", 4, new URL("https://libraries.minecraft.net/a/live.jar"));
+    Path livePath = this.create(live.getUrl(), true);
+    Path deadPath = this.create(new URL("https://libraries.minecraft.net/b/dead.jar"), true);
+    Path recentPath = this.create(new URL("https://libraries.minecraft.net/c/recent.jar"), false);
+
+    MirrorCollector.Mark mark = MirrorCollector.builder(this.layout).build()
+        .mark()
+        .retain(live);
+    Assert.assertTrue(mark.isRetained(live.getUrl()));
+
+    MirrorCollector.Result result = MirrorCollector.builder(this.layout)
+        .withDryRun(true)
+        .withGracePeriod(Duration.ofMinutes(5))
+        .build()
+        .sweep(mark);
+    Assert.assertTrue(result.isDryRun());
+    Assert.assertEquals(Collections.singletonList(deadPath), result.getDeleted());
+    Assert.assertEquals(4, result.getReclaimedBytes());
+    Assert.assertTrue(Files.exists(deadPath));
+
+    result = MirrorCollector.builder(this.layout)
+        .withGracePeriod(Duration.ofMinutes(5))
+        .build()
+        .sweep(mark);
+    Assert.assertFalse(result.isDryRun());
+    Assert.assertEquals(Collections.singletonList(deadPath), result.getDeleted());
+    Assert.assertTrue(result.getFailures().isEmpty());
+
+    Assert.assertTrue(Files.exists(livePath));
+    Assert.assertTrue(Files.exists(recentPath));
+    Assert.assertFalse(Files.exists(deadPath));
+    Assert.assertFalse(Files.exists(deadPath.getParent()));
+  }
+
+  private Path create(URL url, boolean expired) throws IOException {
+    Path path = this.layout.resolve(url);
+    Files.createDirectories(path.getParent());
+    Files.write(path, new byte[4]);
+
+    if (expired) {
+      Files.setLastModifiedTime(path, FileTime.from(Instant.now().minus(Duration.ofDays(1))));
+    }
+
+    return path;
+  }
+}
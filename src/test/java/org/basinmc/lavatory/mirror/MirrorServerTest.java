@@ -0,0 +1,222 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.mirror;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Evaluates whether the mirror server serves files in the expected layout.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class MirrorServerTest {
+
+  private static final String CONTENT = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+  private Path root;
+  private MirrorServer server;
+
+  @Before
+  public void setUp() throws IOException {
+    this.root = Files.createTempDirectory("lavatory_test_");
+
+    Path file = this.root.resolve("resources.download.minecraft.net/d4/d48940");
+    Files.createDirectories(file.getParent());
+    Files.write(file, CONTENT.getBytes(StandardCharsets.UTF_8));
+
+    this.server = MirrorServer.start(new MirrorLayout(this.root),
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    this.server.close();
+
+    try (Stream<Path> stream = Files.walk(this.root)) {
+      stream.sorted(Comparator.reverseOrder())
+          .forEach((p) -> p.toFile().delete());
+    }
+  }
+
+  /**
+   * Evaluates whether original URLs are served from their respective mirror location.
+   */
+  @Test
+  public void testServe() throws IOException {
+    URL url = MirrorLayout.rewrite(this.server.getBaseUrl(),
+        new URL("https://resources.download.minecraft.net/d4/d48940"));
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+
+    Assert.assertEquals(200, connection.getResponseCode());
+    Assert.assertEquals(CONTENT.length(), connection.getContentLengthLong());
+    Assert.assertEquals(CONTENT, read(connection));
+  }
+
+  /**
+   * Evaluates whether range requests are answered with the requested excerpt.
+   */
+  @Test
+  public void testRange() throws IOException {
+    URL url = new URL(this.server.getBaseUrl(), "/resources.download.minecraft.net/d4/d48940");
+
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestProperty("Range", "bytes=10-15");
+    Assert.assertEquals(206, connection.getResponseCode());
+    Assert.assertEquals("bytes 10-15/" + CONTENT.length(),
+        connection.getHeaderField("Content-Range"));
+    Assert.assertEquals(CONTENT.substring(10, 16), read(connection));
+
+    connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestProperty("Range", "bytes=-4");
+    Assert.assertEquals(206, connection.getResponseCode());
+    Assert.assertEquals(CONTENT.substring(CONTENT.length() - 4), read(connection));
+
+    connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestProperty("Range", "bytes=100-");
+    Assert.assertEquals(416, connection.getResponseCode());
+  }
+
+  /**
+   * Evaluates whether missing files and paths outside of the mirror root are rejected.
+   */
+  @Test
+  public void testNotFound() throws IOException {
+    URL base = this.server.getBaseUrl();
+
+    HttpURLConnection connection = (HttpURLConnection) new URL(base,
+        "/resources.download.minecraft.net/d4/d48941").openConnection();
+    Assert.assertEquals(404, connection.getResponseCode());
+
+    connection = (HttpURLConnection) new URL(base, "/%2e%2e/%2e%2e/etc/passwd").openConnection();
+    Assert.assertEquals(404, connection.getResponseCode());
+  }
+
+  /**
+   * Evaluates whether symbolic links which point outside of the mirror root are not followed.
+   */
+  @Test
+  public void testSymbolicLink() throws IOException {
+    Path outside = Files.createTempFile("lavatory_test_", ".txt");
+
+    try {
+      Files.createSymbolicLink(this.root.resolve("resources.download.minecraft.net/d4/outside"),
+          outside);
+      Files.createSymbolicLink(this.root.resolve("resources.download.minecraft.net/d4/inside"),
+          this.root.resolve("resources.download.minecraft.net/d4/d48940"));
+    } catch (UnsupportedOperationException | IOException ex) {
+      Files.delete(outside);
+      Assume.assumeNoException(ex);
+    }
+
+    try {
+      URL base = this.server.getBaseUrl();
+      HttpURLConnection connection = (HttpURLConnection) new URL(base,
+          "/resources.download.minecraft.net/d4/outside").openConnection();
+      Assert.assertEquals(404, connection.getResponseCode());
+
+      connection = (HttpURLConnection) new URL(base,
+          "/resources.download.minecraft.net/d4/inside").openConnection();
+      Assert.assertEquals(200, connection.getResponseCode());
+      Assert.assertEquals(CONTENT, read(connection));
+    } finally {
+      Files.delete(outside);
+    }
+  }
+
+  /**
+   * Evaluates whether request paths which cannot be represented on the local file system are
+   * rejected instead of terminating the connection.
+   */
+  @Test
+  public void testIllegalPath() throws IOException {
+    try (Socket socket = new Socket()) {
+      socket.connect(this.server.getAddress());
+      socket.setSoTimeout(5000);
+
+      OutputStream outputStream = socket.getOutputStream();
+      outputStream.write("GET /%00 HTTP/1.1\r\nHost: localhost\r\n\r\n"
+          .getBytes(StandardCharsets.US_ASCII));
+      outputStream.flush();
+
+      ByteArrayOutputStream response = new ByteArrayOutputStream();
+      InputStream inputStream = socket.getInputStream();
+      int value;
+      while ((value = inputStream.read()) != -1 && value != '\r') {
+        response.write(value);
+      }
+
+      Assert.assertEquals("HTTP/1.1 400 Bad Request",
+          new String(response.toByteArray(), StandardCharsets.US_ASCII));
+    }
+  }
+
+  /**
+   * Evaluates whether idle connections are closed and thus do not prevent other clients from
+   * being served.
+   */
+  @Test
+  public void testIdleTimeout() throws IOException {
+    try (MirrorServer server = MirrorServer.start(new MirrorLayout(this.root),
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1, Duration.ofMillis(200));
+        Socket idle = new Socket()) {
+      idle.connect(server.getAddress());
+      idle.setSoTimeout(5000);
+
+      URL url = new URL(server.getBaseUrl(), "/resources.download.minecraft.net/d4/d48940");
+      HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+      connection.setReadTimeout(5000);
+      connection.setRequestProperty("Connection", "close");
+      Assert.assertEquals(200, connection.getResponseCode());
+      Assert.assertEquals(CONTENT, read(connection));
+
+      Assert.assertEquals(-1, idle.getInputStream().read());
+    }
+  }
+
+  private static String read(HttpURLConnection connection) throws IOException {
+    try (InputStream inputStream = connection.getInputStream()) {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      byte[] buffer = new byte[256];
+      int length;
+
+      while ((length = inputStream.read(buffer)) != -1) {
+        outputStream.write(buffer, 0, length);
+      }
+
+      return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+}
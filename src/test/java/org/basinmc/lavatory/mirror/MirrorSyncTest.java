@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.mirror;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.basinmc.lavatory.Manifest;
+import org.basinmc.lavatory.version.VersionReference;
+import org.basinmc.lavatory.version.VersionType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Evaluates whether mirror synchronization retrieves all files of a version exactly once.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class MirrorSyncTest {
+
+  private Path origin;
+  private Path mirror;
+  private MirrorServer server;
+
+  @Before
+  public void setUp() throws IOException {
+    this.origin = Files.createTempDirectory("lavatory_test_");
+    this.mirror = Files.createTempDirectory("lavatory_test_");
+    this.server = MirrorServer.start(new MirrorLayout(this.origin),
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    this.server.close();
+
+    for (Path root : new Path[]{this.origin, this.mirror}) {
+      try (Stream<Path> stream = Files.walk(root)) {
+        stream.sorted(Comparator.reverseOrder())
+            .forEach((p) -> p.toFile().delete());
+      }
+    }
+  }
+
+  /**
+   * Evaluates whether a version and its dependencies are mirrored and skipped on subsequent runs.
+   */
+  @Test
+  public void testSynchronize() throws Exception {
+    String base = this.server.getBaseUrl().toExternalForm() + "origin";
+
+    byte[] client = "client".getBytes(StandardCharsets.UTF_8);
+    byte[] library = "library".getBytes(StandardCharsets.UTF_8);
+    byte[] assetIndex = "{\"objects\":{}}".getBytes(StandardCharsets.UTF_8);
+    this.publish("client.jar", client);
+    this.publish("library.jar", library);
+    this.publish("copy.jar", library);
+    this.publish("index.json", assetIndex);
+
+    String version = "{"
+        + "\"id\":\"test\",\"minimumLauncherVersion\":21,\"type\":\"release\","
+        + "\"releaseTime\":\"2018-03-01T14:15:10+00:00\",\"time\":\"2018-03-01T14:16:41+00:00\","
+        + "\"mainClass\":\"Main\",\"assets\":\"test\",\"minecraftArguments\":\"--demo\","
+        + "\"assetIndex\":{\"id\":\"test\"," + describe(base + "/index.json", assetIndex)
+        + ",\"totalSize\":0},"
+        + "\"downloads\":{\"client\":{" + describe(base + "/client.jar", client) + "}},"
+        + "\"libraries\":["
+        + "{\"name\":\"a:b:1\",\"downloads\":{\"artifact\":{\"path\":\"a/b.jar\","
+        + describe(base + "/library.jar", library) + "}}},"
+        + "{\"name\":\"a:c:1\",\"downloads\":{\"artifact\":{\"path\":\"a/c.jar\","
+        + describe(base + "/library.jar", library) + "}}},"
+        + "{\"name\":\"a:d:1\",\"downloads\":{\"artifact\":{\"path\":\"a/d.jar\","
+        + describe(base + "/copy.jar", library) + "}}}"
+        + "]}";
+    this.publish("test.json", version.getBytes(StandardCharsets.UTF_8));
+
+    OffsetDateTime time = OffsetDateTime.parse("2018-03-01T14:16:41+00:00");
+    VersionReference reference = new VersionReference("test", VersionType.RELEASE, time, time,
+        new URL(base + "/test.json"));
+    Manifest manifest = new Manifest(reference, reference,
+        Collections.singletonMap("test", reference));
+
+    MirrorLayout layout = new MirrorLayout(this.mirror);
+    MirrorSync sync = MirrorSync.builder(layout)
+        .withVerification(true)
+        .build();
+
+    MirrorSync.Result result = sync.synchronize(manifest);
+    Assert.assertTrue(result.getFailures().toString(), result.isSuccessful());
+    Assert.assertEquals(5, result.getFetched());
+    Assert.assertEquals(0, result.getSkipped());
+    Assert.assertTrue(Files.isRegularFile(layout.resolve(new URL(base + "/library.jar"))));
+    Assert.assertTrue(Files.isRegularFile(layout.resolve(new URL(base + "/copy.jar"))));
+
+    result = sync.synchronize(manifest);
+    Assert.assertTrue(result.getFailures().toString(), result.isSuccessful());
+    Assert.assertEquals(0, result.getFetched());
+    Assert.assertEquals(5, result.getSkipped());
+  }
+
+  private void publish(String name, byte[] contents) throws IOException {
+    Path target = this.origin.resolve("origin").resolve(name);
+    Files.createDirectories(target.getParent());
+    Files.write(target, contents);
+  }
+
+  private static String describe(String url, byte[] contents) throws NoSuchAlgorithmException {
+    StringBuilder hash = new StringBuilder();
+    for (byte b : MessageDigest.getInstance("SHA-1").digest(contents)) {
+      hash.append(String.format("%02x", b));
+    }
+
+    return "\"url\":\"" + url + "\",\"sha1\":\"" + hash + "\",\"size\":" + contents.length;
+  }
+}
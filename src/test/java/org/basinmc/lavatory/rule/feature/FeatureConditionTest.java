@@ -0,0 +1,61 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.rule.feature;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.basinmc.lavatory.ResolverContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Evaluates whether feature conditions match their respective contexts.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class FeatureConditionTest {
+
+  /**
+   * Evaluates whether both enabled and disabled features are honored.
+   */
+  @Test
+  public void testEvaluate() {
+    ResolverContext ctx = ResolverContext.builder()
+        .enableFeature(Feature.CUSTOM_RESOLUTION)
+        .build();
+
+    Assert.assertEquals(Feature.CUSTOM_RESOLUTION.getMask(), ctx.getFeatureMask());
+    Assert.assertTrue(ctx.isFeatureEnabled(Feature.CUSTOM_RESOLUTION));
+    Assert.assertFalse(ctx.isFeatureEnabled(Feature.DEMO_USER));
+
+    Map<String, Boolean> values = new HashMap<>();
+    values.put("has_custom_resolution", true);
+    Assert.assertTrue(new FeatureCondition(values).evaluate(ctx));
+
+    values.put("is_demo_user", false);
+    Assert.assertTrue(new FeatureCondition(values).evaluate(ctx));
+
+    values.put("is_demo_user", true);
+    Assert.assertFalse(new FeatureCondition(values).evaluate(ctx));
+
+    values.remove("has_custom_resolution");
+    Assert.assertFalse(new FeatureCondition(values).evaluate(ctx));
+    Assert.assertTrue(new FeatureCondition(values).evaluate(ResolverContext.builder()
+        .enableFeature(Feature.DEMO_USER)
+        .build()));
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.rule.system;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import org.basinmc.lavatory.ResolverContext;
+import org.basinmc.lavatory.rule.feature.Feature;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Evaluates whether operating system conditions match their respective contexts.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class OperatingSystemConditionTest {
+
+  /**
+   * Evaluates whether system and version constraints are evaluated consistently when version
+   * results are cached by the context.
+   */
+  @Test
+  public void testEvaluate() {
+    ResolverContext ctx = ResolverContext.builder()
+        .withOperatingSystem(OperatingSystem.MAC_OS)
+        .withOperatingSystemVersion("10.5.8")
+        .build();
+
+    OperatingSystemCondition leopard = new OperatingSystemCondition("osx",
+        Pattern.compile("^10\\.5\\.\\d$"));
+    OperatingSystemCondition yosemite = new OperatingSystemCondition("osx",
+        Pattern.compile("^10\\.10\\.\\d$"));
+    OperatingSystemCondition windows = new OperatingSystemCondition("windows", null);
+
+    for (int i = 0; i < 2; ++i) {
+      Assert.assertTrue(leopard.evaluate(ctx));
+      Assert.assertFalse(yosemite.evaluate(ctx));
+      Assert.assertFalse(windows.evaluate(ctx));
+    }
+
+    Assert.assertTrue(new OperatingSystemCondition(null, Pattern.compile("^10\\.5\\.\\d$"))
+        .evaluate(ctx));
+    Assert.assertFalse(new OperatingSystemCondition(null,
+        Pattern.compile("^10\\.5\\.\\D$")).evaluate(ctx));
+    Assert.assertFalse(new OperatingSystemCondition(null,
+        Pattern.compile("^10\\.5\\.\\d$", Pattern.LITERAL)).evaluate(ctx));
+  }
+
+  /**
+   * Evaluates whether a version pattern is only matched once per context.
+   */
+  @Test
+  public void testVersionCached() {
+    CountingContext first = new CountingContext("10.5.8");
+    CountingContext second = new CountingContext("10.10.1");
+    OperatingSystemCondition condition = new OperatingSystemCondition("osx",
+        Pattern.compile("^10\\.5\\.\\d$"));
+
+    for (int i = 0; i < 16; ++i) {
+      Assert.assertTrue(condition.evaluate(first));
+    }
+    Assert.assertEquals(1, first.evaluations.get());
+
+    Assert.assertFalse(condition.evaluate(second));
+    Assert.assertFalse(condition.evaluate(second));
+    Assert.assertEquals(1, second.evaluations.get());
+  }
+
+  /**
+   * Counts the version evaluations which are requested by a condition.
+   */
+  private static final class CountingContext implements ResolverContext {
+
+    private final String version;
+    private final AtomicInteger evaluations = new AtomicInteger();
+
+    private CountingContext(@NonNull String version) {
+      this.version = version;
+    }
+
+    @NonNull
+    @Override
+    public OperatingSystem getOperatingSystem() {
+      return OperatingSystem.MAC_OS;
+    }
+
+    @NonNull
+    @Override
+    public String getOperatingSystemVersion() {
+      return this.version;
+    }
+
+    @Override
+    public boolean matchesOperatingSystemVersion(@NonNull Pattern pattern) {
+      this.evaluations.incrementAndGet();
+      return ResolverContext.super.matchesOperatingSystemVersion(pattern);
+    }
+
+    @Override
+    public boolean isFeatureEnabled(@NonNull Feature feature) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.snapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.basinmc.lavatory.Manifest;
+import org.basinmc.lavatory.ResolverContext;
+import org.basinmc.lavatory.asset.AssetIndex;
+import org.basinmc.lavatory.file.LibraryReference;
+import org.basinmc.lavatory.rule.system.OperatingSystem;
+import org.basinmc.lavatory.version.ProgramArgument;
+import org.basinmc.lavatory.version.Version;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Evaluates whether objects survive a round trip through the binary snapshot format.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class SnapshotTest {
+
+  /**
+   * Evaluates whether manifests are encoded and decoded correctly.
+   */
+  @Test
+  public void testManifest() throws IOException {
+    try (InputStream inputStream = this.getClass()
+        .getResourceAsStream("/version_manifest.valid.json")) {
+      Manifest manifest = Manifest.read(inputStream);
+
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      SnapshotWriter.write(manifest, outputStream);
+
+      Assert.assertEquals(manifest, SnapshotReader
+          .readManifest(new ByteArrayInputStream(outputStream.toByteArray())));
+    }
+  }
+
+  /**
+   * Evaluates whether asset indices are encoded and decoded correctly.
+   */
+  @Test
+  public void testAssetIndex() throws IOException {
+    try (InputStream inputStream = this.getClass().getResourceAsStream("/asset_index.json")) {
+      AssetIndex index = AssetIndex.read(inputStream);
+
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      SnapshotWriter.write(index, outputStream);
+
+      Assert.assertEquals(index, SnapshotReader
+          .readAssetIndex(new ByteArrayInputStream(outputStream.toByteArray())));
+    }
+  }
+
+  /**
+   * Evaluates whether versions (including their rules) are encoded and decoded correctly.
+   */
+  @Test
+  public void testVersion() throws IOException {
+    try (InputStream inputStream = this.getClass()
+        .getResourceAsStream("/version_modern_snapshot.json")) {
+      Version expected = Version.read(inputStream);
+
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      SnapshotWriter.write(expected, outputStream);
+      Version actual = SnapshotReader
+          .readVersion(new ByteArrayInputStream(outputStream.toByteArray()));
+
+      Assert.assertEquals(expected.getId(), actual.getId());
+      Assert.assertEquals(expected.getType(), actual.getType());
+      Assert.assertEquals(expected.getReleaseTime(), actual.getReleaseTime());
+      Assert.assertEquals(expected.getModificationTime(), actual.getModificationTime());
+      Assert.assertEquals(expected.getMainClass(), actual.getMainClass());
+      Assert.assertEquals(expected.getClientDownload(), actual.getClientDownload());
+      Assert.assertEquals(expected.getServerDownload(), actual.getServerDownload());
+      Assert.assertEquals(expected.getAssetIndex(), actual.getAssetIndex());
+      Assert.assertEquals(expected.getClientLoggerConfiguration(),
+          actual.getClientLoggerConfiguration());
+      Assert.assertEquals(flatten(expected.getGameArguments()),
+          flatten(actual.getGameArguments()));
+      Assert.assertEquals(flatten(expected.getJvmArguments()), flatten(actual.getJvmArguments()));
+
+      LibraryReference library = actual.getLibrary("org.lwjgl:lwjgl:3.1.2")
+          .orElseThrow(() -> new AssertionError("Expected library \"org.lwjgl:lwjgl:3.1.2\""));
+      Assert.assertEquals(expected.getLibrary("org.lwjgl:lwjgl:3.1.2").get().getDownloads(),
+          library.getDownloads());
+      Assert.assertTrue(library.getLinuxNativesArtifact().isPresent());
+
+      ResolverContext ctx = ResolverContext.builder()
+          .withOperatingSystem(OperatingSystem.WINDOWS)
+          .withOperatingSystemVersion("10.0")
+          .build();
+      Version reducedExpected = expected.reduce(ctx);
+      Version reducedActual = actual.reduce(ctx);
+
+      Assert.assertEquals(reducedExpected.getLibraries().size(),
+          reducedActual.getLibraries().size());
+      Assert.assertEquals(flatten(reducedExpected.getJvmArguments()),
+          flatten(reducedActual.getJvmArguments()));
+    }
+  }
+
+  /**
+   * Evaluates whether snapshots of a different type are rejected.
+   */
+  @Test(expected = IOException.class)
+  public void testTypeMismatch() throws IOException {
+    try (InputStream inputStream = this.getClass().getResourceAsStream("/asset_index.json")) {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      SnapshotWriter.write(AssetIndex.read(inputStream), outputStream);
+
+      SnapshotReader.readManifest(new ByteArrayInputStream(outputStream.toByteArray()));
+    }
+  }
+
+  /**
+   * Evaluates whether corrupted snapshots are consistently rejected with an IOException.
+   */
+  @Test
+  public void testCorrupted() throws IOException {
+    byte[] snapshot;
+    try (InputStream inputStream = this.getClass()
+        .getResourceAsStream("/version_modern_snapshot.json")) {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      SnapshotWriter.write(Version.read(inputStream), outputStream);
+      snapshot = outputStream.toByteArray();
+    }
+
+    for (int i = 7; i < snapshot.length; ++i) {
+      for (int value : new int[]{0x00, 0x7F, 0xFF}) {
+        byte[] corrupted = snapshot.clone();
+        corrupted[i] = (byte) value;
+
+        try {
+          SnapshotReader.readVersion(new ByteArrayInputStream(corrupted));
+        } catch (IOException ignore) {
+        }
+      }
+    }
+
+    // a string table which claims to contain far more strings than the file could ever hold
+    byte[] header = Arrays.copyOf(snapshot, 11);
+    header[7] = (byte) 0xFF;
+    header[8] = (byte) 0xFF;
+    header[9] = (byte) 0xFF;
+    header[10] = (byte) 0x7F;
+
+    Path file = Files.createTempFile("lavatory_test_", ".snapshot");
+    try {
+      Files.write(file, header);
+      SnapshotReader.readVersion(file);
+      Assert.fail("Expected corrupted snapshot to be rejected");
+    } catch (IOException ex) {
+      Assert.assertTrue(ex.getMessage(), ex.getMessage().contains("exceeds remaining input"));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private static List<String> flatten(List<ProgramArgument> arguments) {
+    return arguments.stream()
+        .flatMap((a) -> a.getValue().stream())
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.snapshot;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.basinmc.lavatory.version.Version;
+import org.basinmc.lavatory.version.VersionReference;
+import org.basinmc.lavatory.version.VersionType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Evaluates whether cached versions are only retrieved again when they have been modified.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class VersionCacheTest {
+
+  private static final OffsetDateTime TIME = OffsetDateTime.parse("2018-03-01T14:16:41+00:00");
+
+  private Path root;
+
+  @Before
+  public void setUp() throws IOException {
+    this.root = Files.createTempDirectory("lavatory_test_");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> stream = Files.walk(this.root)) {
+      stream.sorted(Comparator.reverseOrder())
+          .forEach((p) -> p.toFile().delete());
+    }
+  }
+
+  /**
+   * Evaluates whether unchanged versions are served from memory and disk.
+   */
+  @Test
+  public void testFetch() throws IOException {
+    URL document = this.getClass().getResource("/version_modern_release.json");
+    URL missing = this.root.resolve("missing.json").toUri().toURL();
+
+    VersionCache cache = VersionCache.builder(this.root).build();
+    Version version = new VersionReference("1.12.2", VersionType.RELEASE, TIME, TIME, document)
+        .fetch(cache);
+    Assert.assertSame(version, cache.fetch(
+        new VersionReference("1.12.2", VersionType.RELEASE, TIME, TIME, missing)));
+
+    // a fresh cache has to fall back to the snapshot on disk instead of the (missing) document
+    cache = VersionCache.builder(this.root).withCapacity(0).build();
+    Version cached = cache.fetch(
+        new VersionReference("1.12.2", VersionType.RELEASE, TIME, TIME, missing));
+    Assert.assertEquals(version.getId(), cached.getId());
+    Assert.assertEquals(version.getClientDownload(), cached.getClientDownload());
+
+    // modified versions are retrieved again and replace their previous revision
+    OffsetDateTime modified = TIME.plusDays(1);
+    try {
+      cache.fetch(new VersionReference("1.12.2", VersionType.RELEASE, TIME, modified, missing));
+      Assert.fail("Expected modified version to be retrieved from the server");
+    } catch (IOException ignore) {
+    }
+
+    cache.fetch(new VersionReference("1.12.2", VersionType.RELEASE, TIME, modified, document));
+    try (Stream<Path> stream = Files.list(this.root.resolve("1.12.2"))) {
+      Assert.assertEquals(1, stream.count());
+    }
+
+    cache.invalidate("1.12.2");
+    Assert.assertFalse(cache.get(
+        new VersionReference("1.12.2", VersionType.RELEASE, TIME, modified, document))
+        .isPresent());
+  }
+
+  /**
+   * Evaluates whether identifiers which only differ in special characters do not replace each
+   * other's snapshots.
+   */
+  @Test
+  public void testDistinctIdentifiers() throws IOException {
+    URL document = this.getClass().getResource("/version_modern_release.json");
+    Version version = new VersionReference("1.12.2", VersionType.RELEASE, TIME, TIME, document)
+        .fetch();
+
+    VersionCache cache = VersionCache.builder(this.root).build();
+    String[] ids = {"1.12 pre", "1.12_pre", "1.12%pre", "..", ""};
+    for (String id : ids) {
+      cache.store(new VersionReference(id, VersionType.RELEASE, TIME, TIME, document), version);
+    }
+
+    try (Stream<Path> stream = Files.walk(this.root)) {
+      Assert.assertEquals(ids.length, stream.filter(Files::isRegularFile)
+          .filter((p) -> p.getParent().getParent().equals(this.root))
+          .count());
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.version;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.stream.Collectors;
+import org.basinmc.lavatory.ResolverContext;
+import org.basinmc.lavatory.file.LibraryReference;
+import org.basinmc.lavatory.rule.system.OperatingSystem;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Evaluates whether lazily decoded versions match their eagerly decoded counterparts.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class LazyVersionTest {
+
+  /**
+   * Evaluates whether headers are available without decoding the remaining sections.
+   */
+  @Test
+  public void testLazy() throws IOException {
+    for (String resource : new String[]{"/version_modern_release.json",
+        "/version_modern_snapshot.json", "/version_old_alpha.json"}) {
+      Version eager;
+      LazyVersion lazy;
+
+      try (InputStream inputStream = this.getClass().getResourceAsStream(resource)) {
+        eager = Version.read(inputStream);
+      }
+      try (InputStream inputStream = this.getClass().getResourceAsStream(resource)) {
+        lazy = LazyVersion.read(inputStream);
+      }
+
+      Assert.assertEquals(eager.getId(), lazy.getId());
+      Assert.assertEquals(eager.getMainClass(), lazy.getMainClass());
+      Assert.assertEquals(eager.getClientDownload(), lazy.getClientDownload());
+      Assert.assertEquals(eager.getAssetIndex(), lazy.getAssetIndex());
+      Assert.assertEquals(eager.getClientLoggerConfiguration(),
+          lazy.getClientLoggerConfiguration());
+      Assert.assertFalse(lazy.isMaterialized());
+
+      // libraries with version constrained rules never compare equal as patterns do not implement
+      // equality and thus we'll compare their names instead
+      Assert.assertEquals(
+          eager.getLibraries().stream().map(LibraryReference::getName).collect(Collectors.toSet()),
+          lazy.getLibraries().stream().map(LibraryReference::getName).collect(Collectors.toSet()));
+      Assert.assertTrue(lazy.isMaterialized());
+      Assert.assertEquals(eager.getGameArguments().size(), lazy.getGameArguments().size());
+      Assert.assertEquals(eager.getJvmArguments().size(), lazy.getJvmArguments().size());
+
+      ResolverContext ctx = ResolverContext.builder()
+          .withOperatingSystem(OperatingSystem.LINUX)
+          .build();
+      Assert.assertEquals(eager.reduce(ctx).getLibraries().size(),
+          lazy.reduce(ctx).getLibraries().size());
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.version;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import org.basinmc.lavatory.file.LibraryCoordinate;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Evaluates whether libraries are correctly indexed across versions.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class LibraryIndexTest {
+
+  /**
+   * Evaluates whether coordinates are parsed correctly.
+   */
+  @Test
+  public void testParse() {
+    LibraryCoordinate coordinate = LibraryCoordinate.parse("org.lwjgl:lwjgl:3.1.6:natives-linux");
+    Assert.assertEquals("org.lwjgl", coordinate.getGroupId());
+    Assert.assertEquals("lwjgl", coordinate.getArtifactId());
+    Assert.assertEquals("3.1.6", coordinate.getVersion());
+    Assert.assertEquals("natives-linux", coordinate.getClassifier().orElse(null));
+    Assert.assertFalse(coordinate.getExtension().isPresent());
+    Assert.assertEquals("org.lwjgl:lwjgl:3.1.6:natives-linux", coordinate.toString());
+
+    coordinate = LibraryCoordinate.parse("com.mojang:patchy:1.1@zip");
+    Assert.assertFalse(coordinate.getClassifier().isPresent());
+    Assert.assertEquals("zip", coordinate.getExtension().orElse(null));
+
+    for (String illegal : new String[]{"a:b", "a::c", "a:b:c:d:e", "a:b:c@"}) {
+      try {
+        LibraryCoordinate.parse(illegal);
+        Assert.fail("Expected " + illegal + " to be rejected");
+      } catch (IllegalArgumentException ignore) {
+      }
+    }
+  }
+
+  /**
+   * Evaluates whether versions and artifacts are associated with their libraries.
+   */
+  @Test
+  public void testIndex() throws IOException {
+    LibraryIndex index = LibraryIndex.builder()
+        .add(this.read("/version_modern_release.json"))
+        .add(this.read("/version_modern_snapshot.json"))
+        .build();
+
+    Assert.assertEquals(new HashSet<>(Arrays.asList("1.12.2", "18w09a")),
+        index.getVersions(LibraryCoordinate.parse("com.mojang:patchy:1.1")));
+    Assert.assertEquals(1,
+        index.getArtifacts(LibraryCoordinate.parse("com.mojang:patchy:1.1")).size());
+
+    LibraryCoordinate natives = LibraryCoordinate
+        .parse("org.lwjgl.lwjgl:lwjgl-platform:2.9.4-nightly-20150209:natives-linux");
+    Assert.assertEquals(new HashSet<>(Arrays.asList("1.12.2")), index.getVersions(natives));
+    Assert.assertTrue(index.getCoordinates("org.lwjgl.lwjgl", "lwjgl-platform").contains(natives));
+    Assert.assertTrue(index.getVersions(LibraryCoordinate.parse("a:b:c")).isEmpty());
+  }
+
+  private Version read(String resource) throws IOException {
+    try (InputStream inputStream = this.getClass().getResourceAsStream(resource)) {
+      return Version.read(inputStream);
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 Johannes Donath <johannesd@torchmind.com>
+ * and other copyright owners as documented in the project's IP log.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.basinmc.lavatory.version;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Evaluates whether versions are loaded and verified in bulk.
+ *
+ * @author <a href="mailto:johannesd@torchmind.com">Johannes Donath</a>
+ */
+public class VersionLoaderTest {
+
+  /**
+   * Evaluates whether all versions are reported and checksum mismatches are rejected.
+   */
+  @Test
+  public void testLoadAll() throws Exception {
+    URL release = this.getClass().getResource("/version_modern_release.json");
+    URL snapshot = this.getClass().getResource("/version_modern_snapshot.json");
+    OffsetDateTime time = OffsetDateTime.parse("2018-03-01T14:16:41+00:00");
+
+    VersionReference a = new VersionReference("1.12.2", VersionType.RELEASE, time, time, release,
+        sha1(release));
+    VersionReference b = new VersionReference("18w11a", VersionType.SNAPSHOT, time, time,
+        snapshot, sha1(release));
+    VersionReference c = new VersionReference("18w10a", VersionType.SNAPSHOT, time, time,
+        snapshot);
+
+    Set<String> loaded = ConcurrentHashMap.newKeySet();
+    Set<String> failed = ConcurrentHashMap.newKeySet();
+
+    try (VersionLoader loader = VersionLoader.builder().withThreads(2).build()) {
+      VersionLoader.Result result = loader.loadAll(Arrays.asList(a, b, c),
+          new VersionLoader.Listener() {
+            @Override
+            public void onLoaded(VersionReference reference, Version version) {
+              loaded.add(reference.getId());
+            }
+
+            @Override
+            public void onFailed(VersionReference reference, IOException ex) {
+              failed.add(reference.getId());
+            }
+          }).get();
+
+      Assert.assertFalse(result.isSuccessful());
+      Assert.assertEquals(result.getVersions().keySet(), loaded);
+      Assert.assertEquals(Collections.singleton("18w11a"), failed);
+      Assert.assertEquals("1.12.2", result.getVersions().get("1.12.2").getId());
+      Assert.assertTrue(result.getVersions().containsKey("18w10a"));
+    }
+
+    try (VersionLoader loader = VersionLoader.builder().withVerification(false).build()) {
+      Assert.assertNotNull(loader.load(b).get());
+    }
+  }
+
+  /**
+   * Evaluates whether exceptions thrown by a listener do not affect the result of a bulk load.
+   */
+  @Test
+  public void testFailingListener() throws Exception {
+    URL release = this.getClass().getResource("/version_modern_release.json");
+    OffsetDateTime time = OffsetDateTime.parse("2018-03-01T14:16:41+00:00");
+
+    VersionReference a = new VersionReference("1.12.2", VersionType.RELEASE, time, time, release,
+        sha1(release));
+    VersionReference b = new VersionReference("18w11a", VersionType.SNAPSHOT, time, time,
+        release, "0000000000000000000000000000000000000000");
+
+    try (VersionLoader loader = VersionLoader.builder().withThreads(2).build()) {
+      VersionLoader.Result result = loader.loadAll(Arrays.asList(a, b),
+          new VersionLoader.Listener() {
+            @Override
+            public void onLoaded(VersionReference reference, Version version) {
+              throw new IllegalStateException("Listener failure");
+            }
+
+            @Override
+            public void onFailed(VersionReference reference, IOException ex) {
+              throw new IllegalStateException("Listener failure");
+            }
+          }).get();
+
+      Assert.assertEquals(Collections.singleton("1.12.2"), result.getVersions().keySet());
+      Assert.assertEquals(Collections.singleton("18w11a"), result.getFailures().keySet());
+    }
+  }
+
+  private static String sha1(URL url) throws Exception {
+    StringBuilder hash = new StringBuilder();
+    for (byte b : MessageDigest.getInstance("SHA-1")
+        .digest(Files.readAllBytes(Paths.get(url.toURI())))) {
+      hash.append(String.format("%02x", b));
+    }
+
+    return hash.toString();
+  }
+}
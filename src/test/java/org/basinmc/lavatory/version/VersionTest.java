@@ -18,6 +18,7 @@ package org.basinmc.lavatory.version;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -366,4 +367,34 @@ public class VersionTest {
           });
     }
   }
+
+  /**
+   * Evaluates whether duplicate library declarations are merged in favor of the declaration with
+   * the highest priority.
+   */
+  @Test
+  public void testDuplicateLibraries() throws IOException {
+    String artifact = "\"artifact\":{\"path\":\"a/b.jar\",\"url\":\"https://example.org/a/b.jar\","
+        + "\"sha1\":\"0000000000000000000000000000000000000000\",\"size\":0}";
+    String json = "{"
+        + "\"id\":\"test\",\"minimumLauncherVersion\":21,\"type\":\"release\","
+        + "\"releaseTime\":\"2018-03-01T14:15:10+00:00\",\"time\":\"2018-03-01T14:16:41+00:00\","
+        + "\"mainClass\":\"Main\",\"assets\":\"test\",\"downloads\":{},"
+        + "\"assetIndex\":{\"id\":\"test\",\"url\":\"https://example.org/index.json\","
+        + "\"sha1\":\"0000000000000000000000000000000000000000\",\"size\":0,\"totalSize\":0},"
+        + "\"libraries\":["
+        + "{\"name\":\"a:b:1\",\"downloads\":{" + artifact + "},\"extract\":{}},"
+        + "{\"name\":\"a:b:1\",\"downloads\":{" + artifact + "}},"
+        + "null,"
+        + "{\"name\":\"a:c:1\",\"downloads\":{" + artifact + "}}"
+        + "]}";
+
+    Version version = Version.read(new StringReader(json));
+
+    Assert.assertEquals(2, version.getLibraries().size());
+    LibraryReference library = version.getLibrary("a:b:1")
+        .orElseThrow(() -> new AssertionError("Expected library \"a:b:1\""));
+    Assert.assertEquals(2, library.calculatePriority());
+    Assert.assertTrue(version.getLibrary("a:c:1").isPresent());
+  }
 }